@@ -2,6 +2,9 @@ package contextvh;
 
 import contextvh.actions.ActionContainer;
 import contextvh.actions.CustomAction;
+import contextvh.util.BuildableArea;
+import contextvh.util.LandZoneOverlay;
+import contextvh.util.MapUtils;
 import eis.eis2java.exception.TranslationException;
 import eis.iilang.Action;
 import eis.iilang.Percept;
@@ -48,6 +51,16 @@ public class ContextEntity extends tygronenv.TygronEntityImpl {
 		return new ContextEntityEventHandler(this, slotCon.getConnectionID(), this);
 	}
 
+	@Override
+	public void close() {
+		if (slotConnection != null) {
+			LandZoneOverlay.remove(slotConnection.getConnectionID());
+			MapUtils.clearCache(slotConnection.getConnectionID());
+			BuildableArea.clear(slotConnection.getConnectionID());
+		}
+		super.close();
+	}
+
 	/**
 	 * Returns the saved TSlotConnection.
 	 * @return The saved TSlotConnection.
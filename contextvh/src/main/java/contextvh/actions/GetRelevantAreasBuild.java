@@ -10,8 +10,8 @@ import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Polygon;
 
 import contextvh.ContextEntity;
+import contextvh.util.BuildableArea;
 import contextvh.util.CoordinateUtils;
-import contextvh.util.MapUtils;
 import eis.eis2java.exception.TranslationException;
 import eis.iilang.Identifier;
 import eis.iilang.Parameter;
@@ -97,22 +97,11 @@ public class GetRelevantAreasBuild implements RelevantAreasAction {
 	 * @return The multiPolygon that can be built on.
 	 */
 	protected MultiPolygon getUsableArea(final ContextEntity caller, final ParameterList parameters) {
-		// Get a MultiPolygon of all lands combined.
 		Integer connectionID = caller.getSlotConnection().getConnectionID();
 
+		// All lands without water, reserved land and buildings, only changed parts are computed again.
 		final Integer stakeholderID = caller.getStakeholder().getID();
-		MultiPolygon constructableLand = MapUtils.getStakeholderLands(connectionID, stakeholderID);
-
-		// Remove all pieces of land that cannot be build on (water).
-		constructableLand = MapUtils.removeWater(connectionID, constructableLand);
-
-		// Remove all pieces of reserved land.
-		constructableLand = MapUtils.removeReservedLand(connectionID, constructableLand);
-
-		// Remove all pieces of occupied land.
-		constructableLand = MapUtils.removeBuildings(connectionID, constructableLand);
-
-		return constructableLand;
+		return BuildableArea.get(connectionID, stakeholderID);
 	}
 
 	/**
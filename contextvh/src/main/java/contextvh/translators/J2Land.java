@@ -1,5 +1,6 @@
 package contextvh.translators;
 
+import contextvh.util.LandZoneOverlay;
 import eis.eis2java.exception.TranslationException;
 import eis.eis2java.translation.Java2Parameter;
 import eis.eis2java.translation.Translator;
@@ -9,9 +10,7 @@ import eis.iilang.Parameter;
 import eis.iilang.ParameterList;
 import nl.tytech.core.client.event.EventManager;
 import nl.tytech.core.net.serializable.MapLink;
-import nl.tytech.core.structure.ItemMap;
 import nl.tytech.data.engine.item.Land;
-import nl.tytech.data.engine.item.Zone;
 
 /**
  * Translate {@link Land} into land(id, ownerID, multiPolygon, zoneList, area).
@@ -26,12 +25,9 @@ public class J2Land implements Java2Parameter<Land> {
 	public Parameter[] translate(final Land b) throws TranslationException {
 
 		ParameterList pl = new ParameterList();
-		ItemMap<Zone> zones = EventManager.getItemMap(MapLink.ZONES);
-		if (zones != null) {
-			for (Zone zone : zones) {
-				if (zone.getMultiPolygon().intersects(b.getMultiPolygon())) {
-					pl.add(new Numeral(zone.getID()));
-				}
+		if (EventManager.getItemMap(MapLink.ZONES) != null) {
+			for (Integer zoneID : LandZoneOverlay.getZoneIDs(EventManager.getActiveConnectionID(), b)) {
+				pl.add(new Numeral(zoneID));
 			}
 		}
 
@@ -0,0 +1,228 @@
+package contextvh.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Building;
+import nl.tytech.data.engine.item.Land;
+import nl.tytech.data.engine.item.Setting;
+import nl.tytech.data.engine.item.Terrain;
+import nl.tytech.util.JTSUtils;
+
+/**
+ * The area a stakeholder can build on: its lands minus water, reserved land and buildings. The area
+ * is cached and when lands, water terrains, buildings or the reserved land change only the envelopes
+ * of the changed items are computed again, instead of the complete area.
+ * @author Max Groenenboom
+ */
+public final class BuildableArea {
+
+	/**
+	 * Version and envelope of an item the area depends on.
+	 */
+	private static final class Source {
+
+		/**
+		 * Version of the item.
+		 */
+		private final int version;
+
+		/**
+		 * Envelope of the geometry of the item, null when it has no geometry.
+		 */
+		private final Envelope envelope;
+
+		/**
+		 * Record an item.
+		 * @param item The item.
+		 * @param geometry The geometry of the item.
+		 */
+		private Source(final Item item, final Geometry geometry) {
+			this.version = item.getVersion();
+			if (geometry == null || geometry.isEmpty()) {
+				this.envelope = null;
+			} else {
+				this.envelope = geometry.getEnvelopeInternal();
+			}
+		}
+	}
+
+	/**
+	 * Above this amount of changed items the area is computed again completely.
+	 */
+	private static final int MAX_PATCHES = 64;
+
+	/**
+	 * Buildable area by connection and stakeholder.
+	 */
+	private static final Map<List<Integer>, BuildableArea> AREAS = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the area the stakeholder can build on.
+	 * @param connectionID The id of the connection.
+	 * @param stakeholderID The ID of the stakeholder.
+	 * @return The buildable area.
+	 */
+	public static MultiPolygon get(final Integer connectionID, final Integer stakeholderID) {
+		return AREAS.computeIfAbsent(Arrays.asList(connectionID, stakeholderID),
+				key -> new BuildableArea(connectionID, stakeholderID)).get();
+	}
+
+	/**
+	 * Forget the areas of a connection, e.g. when it is closed.
+	 * @param connectionID The id of the connection.
+	 */
+	public static void clear(final Integer connectionID) {
+		AREAS.keySet().removeIf(key -> connectionID.equals(key.get(0)));
+	}
+
+	/**
+	 * The id of the connection.
+	 */
+	private final Integer connection;
+
+	/**
+	 * The ID of the stakeholder.
+	 */
+	private final Integer stakeholder;
+
+	/**
+	 * Item map of each source that was last compared.
+	 */
+	private final Map<MapLink, ItemMap<?>> maps = new EnumMap<>(MapLink.class);
+
+	/**
+	 * Recorded items by ID for each source map.
+	 */
+	private final Map<MapLink, Map<Integer, Source>> sources = new EnumMap<>(MapLink.class);
+
+	/**
+	 * The cached area, null when not computed yet.
+	 */
+	private MultiPolygon area = null;
+
+	/**
+	 * Create an empty buildable area.
+	 * @param connectionID The id of the connection.
+	 * @param stakeholderID The ID of the stakeholder.
+	 */
+	private BuildableArea(final Integer connectionID, final Integer stakeholderID) {
+		this.connection = connectionID;
+		this.stakeholder = stakeholderID;
+	}
+
+	/**
+	 * Add the envelope of the source to the changed envelopes.
+	 * @param changed The changed envelopes.
+	 * @param source The source, can be null.
+	 */
+	private static void addEnvelope(final List<Envelope> changed, final Source source) {
+		if (source != null && source.envelope != null) {
+			changed.add(source.envelope);
+		}
+	}
+
+	/**
+	 * Remove water, reserved land and buildings from the land.
+	 * @param land The land.
+	 * @return The part of the land that can be built on.
+	 */
+	private MultiPolygon compute(final MultiPolygon land) {
+		MultiPolygon result = MapUtils.removeWater(connection, land);
+		result = MapUtils.removeReservedLand(connection, result);
+		return MapUtils.removeBuildings(connection, result);
+	}
+
+	/**
+	 * Returns the cached area, after patching it for the items that changed.
+	 * @return The buildable area.
+	 */
+	private synchronized MultiPolygon get() {
+		final List<Envelope> changed = new ArrayList<>();
+		update(MapLink.LANDS, item -> stakeholder.equals(((Land) item).getOwnerID()),
+				item -> ((Land) item).getMultiPolygon(), changed);
+		update(MapLink.TERRAINS, item -> ((Terrain) item).getType().isWater(),
+				item -> ((Terrain) item).getMultiPolygon(MapUtils.DEFAULT_MAPTYPE), changed);
+		update(MapLink.BUILDINGS, item -> true,
+				item -> ((Building) item).getMultiPolygon(MapUtils.DEFAULT_MAPTYPE), changed);
+		update(MapLink.SETTINGS, item -> ((Setting) item).getType() == Setting.Type.RESERVED_LAND,
+				item -> ((Setting) item).getMultiPolygon(), changed);
+
+		final MultiPolygon lands = MapUtils.getStakeholderLands(connection, stakeholder);
+		if (area == null || changed.size() > MAX_PATCHES) {
+			area = compute(lands);
+			return area;
+		}
+		if (changed.isEmpty()) {
+			return area;
+		}
+
+		// only compute the changed envelopes again
+		final List<Geometry> squares = new ArrayList<>();
+		for (Envelope envelope : changed) {
+			squares.add(JTSUtils.createSquare(envelope));
+		}
+		final MultiPolygon region = JTSUtils.unionCascaded(squares);
+		final MultiPolygon patch = compute(JTSUtils.intersection(lands, region));
+		area = JTSUtils.union(JTSUtils.difference(area, region), patch);
+		return area;
+	}
+
+	/**
+	 * Compare the items of a source map with the recorded items, when the map was updated.
+	 * @param mapLink The source map.
+	 * @param filter Selects the items the area depends on.
+	 * @param geometry The geometry of an item.
+	 * @param changed Receives the old and new envelopes of the changed items.
+	 */
+	private void update(final MapLink mapLink, final Predicate<Item> filter, final Function<Item, Geometry> geometry,
+			final List<Envelope> changed) {
+		final ItemMap<Item> map = EventManager.getItemMap(connection, mapLink);
+		if (map == null || map == maps.get(mapLink)) {
+			return;
+		}
+		maps.put(mapLink, map);
+
+		final Map<Integer, Source> recorded = sources.computeIfAbsent(mapLink, key -> new HashMap<>());
+		final Set<Integer> current = new HashSet<>();
+		for (Item item : map) {
+			if (!filter.test(item)) {
+				continue;
+			}
+			current.add(item.getID());
+			final Source old = recorded.get(item.getID());
+			if (old == null || old.version != item.getVersion()) {
+				final Source source = new Source(item, geometry.apply(item));
+				recorded.put(item.getID(), source);
+				addEnvelope(changed, old);
+				addEnvelope(changed, source);
+			}
+		}
+		for (Iterator<Entry<Integer, Source>> iterator = recorded.entrySet().iterator(); iterator.hasNext();) {
+			final Entry<Integer, Source> entry = iterator.next();
+			if (!current.contains(entry.getKey())) {
+				iterator.remove();
+				addEnvelope(changed, entry.getValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package contextvh.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.SpatialIndex;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.engine.item.Land;
+import nl.tytech.data.engine.item.Zone;
+
+/**
+ * Keeps track of the zones that intersect each land of a connection. The relation is only computed
+ * again for lands and zones of which the version changed, so a land percept costs a lookup per land
+ * instead of an intersection test with every zone. Lands that are no longer in the map are forgotten.
+ * @author Max Groenenboom
+ */
+public final class LandZoneOverlay {
+
+	/**
+	 * Prepared geometry of a zone.
+	 */
+	private static final class ZoneEntry {
+
+		/**
+		 * Version of the zone when it was prepared.
+		 */
+		private final int version;
+
+		/**
+		 * Envelope of the zone.
+		 */
+		private final Envelope envelope;
+
+		/**
+		 * Prepared MultiPolygon of the zone.
+		 */
+		private final PreparedGeometry prepared;
+
+		/**
+		 * Prepare the zone.
+		 * @param zone The zone.
+		 */
+		private ZoneEntry(final Zone zone) {
+			this.version = zone.getVersion();
+			this.envelope = zone.getMultiPolygon().getEnvelopeInternal();
+			this.prepared = PreparedGeometryFactory.prepare(zone.getMultiPolygon());
+		}
+	}
+
+	/**
+	 * Zones of a land.
+	 */
+	private static final class LandEntry {
+
+		/**
+		 * Version of the land when the zones were computed.
+		 */
+		private final int version;
+
+		/**
+		 * MultiPolygon of the land.
+		 */
+		private final MultiPolygon multiPolygon;
+
+		/**
+		 * Sorted ID's of the zones that intersect the land.
+		 */
+		private final List<Integer> zoneIDs = new ArrayList<>();
+
+		/**
+		 * Create an entry without zones.
+		 * @param land The land.
+		 */
+		private LandEntry(final Land land) {
+			this.version = land.getVersion();
+			this.multiPolygon = land.getMultiPolygon();
+		}
+	}
+
+	/**
+	 * Overlay per connection.
+	 */
+	private static final Map<Integer, LandZoneOverlay> OVERLAYS = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the ID's of the zones that intersect the land.
+	 * @param connectionID The id of the connection.
+	 * @param land The land.
+	 * @return The sorted zone ID's.
+	 */
+	public static List<Integer> getZoneIDs(final Integer connectionID, final Land land) {
+		return OVERLAYS.computeIfAbsent(connectionID, LandZoneOverlay::new).getZoneIDs(land);
+	}
+
+	/**
+	 * Forget the overlay of a connection, e.g. when it is closed.
+	 * @param connectionID The id of the connection.
+	 */
+	public static void remove(final Integer connectionID) {
+		OVERLAYS.remove(connectionID);
+	}
+
+	/**
+	 * Returns the amount of lands of which the zones are kept.
+	 * @param connectionID The id of the connection.
+	 * @return The amount of lands, 0 when there is no overlay.
+	 */
+	static int getLandCount(final Integer connectionID) {
+		final LandZoneOverlay overlay = OVERLAYS.get(connectionID);
+		if (overlay == null) {
+			return 0;
+		}
+		synchronized (overlay) {
+			return overlay.lands.size();
+		}
+	}
+
+	/**
+	 * The id of the connection.
+	 */
+	private final Integer connection;
+
+	/**
+	 * Prepared zones by ID.
+	 */
+	private final Map<Integer, ZoneEntry> zones = new HashMap<>();
+
+	/**
+	 * Zones per land ID.
+	 */
+	private final Map<Integer, LandEntry> lands = new HashMap<>();
+
+	/**
+	 * Map of the zones that was last compared.
+	 */
+	private ItemMap<Zone> zoneMap = null;
+
+	/**
+	 * Map of the lands that was last compared.
+	 */
+	private ItemMap<Land> landMap = null;
+
+	/**
+	 * Create an empty overlay.
+	 * @param connectionID The id of the connection.
+	 */
+	private LandZoneOverlay(final Integer connectionID) {
+		this.connection = connectionID;
+	}
+
+	/**
+	 * Add the given zones to the land when they intersect it.
+	 * @param entry The land entry.
+	 * @param zoneIDs The ID's of the zones to test.
+	 */
+	private void addIntersecting(final LandEntry entry, final Iterable<Integer> zoneIDs) {
+		final Envelope envelope = entry.multiPolygon.getEnvelopeInternal();
+		for (Integer zoneID : zoneIDs) {
+			final ZoneEntry zone = zones.get(zoneID);
+			if (zone != null && zone.envelope.intersects(envelope)
+					&& zone.prepared.intersects(entry.multiPolygon)) {
+				entry.zoneIDs.add(zoneID);
+			}
+		}
+		Collections.sort(entry.zoneIDs);
+	}
+
+	/**
+	 * Returns the ID's of the zones that intersect the land.
+	 * @param land The land.
+	 * @return The sorted zone ID's.
+	 */
+	private synchronized List<Integer> getZoneIDs(final Land land) {
+		updateLands();
+		updateZones();
+		LandEntry entry = lands.get(land.getID());
+		if (entry == null || entry.version != land.getVersion()) {
+			entry = new LandEntry(land);
+			final List<Integer> candidates = new ArrayList<>();
+			final SpatialIndex<Zone> index = EventManager.getSpatialIndex(connection, MapLink.ZONES);
+			if (index != null) {
+				for (Zone zone : index.query(entry.multiPolygon.getEnvelopeInternal())) {
+					candidates.add(zone.getID());
+				}
+			}
+			addIntersecting(entry, candidates);
+			lands.put(land.getID(), entry);
+		}
+		return Collections.unmodifiableList(entry.zoneIDs);
+	}
+
+	/**
+	 * Forget the lands that were removed from the map since the last call.
+	 */
+	private void updateLands() {
+		final ItemMap<Land> currentMap = EventManager.getItemMap(connection, MapLink.LANDS);
+		if (currentMap == landMap) {
+			return;
+		}
+		landMap = currentMap;
+		if (currentMap == null) {
+			lands.clear();
+			return;
+		}
+		lands.keySet().removeIf(landID -> currentMap.get(landID) == null);
+	}
+
+	/**
+	 * Prepare the zones that changed since the last call and update the lands for them.
+	 */
+	private void updateZones() {
+		final ItemMap<Zone> currentMap = EventManager.getItemMap(connection, MapLink.ZONES);
+		if (currentMap == zoneMap) {
+			return;
+		}
+		zoneMap = currentMap;
+
+		final Set<Integer> changed = new HashSet<>();
+		final Set<Integer> current = new HashSet<>();
+		if (currentMap != null) {
+			for (Zone zone : currentMap) {
+				current.add(zone.getID());
+				final ZoneEntry zoneEntry = zones.get(zone.getID());
+				if (zoneEntry == null || zoneEntry.version != zone.getVersion()) {
+					zones.put(zone.getID(), new ZoneEntry(zone));
+					changed.add(zone.getID());
+				}
+			}
+		}
+		for (Iterator<Integer> iterator = zones.keySet().iterator(); iterator.hasNext();) {
+			final Integer zoneID = iterator.next();
+			if (!current.contains(zoneID)) {
+				iterator.remove();
+				changed.add(zoneID);
+			}
+		}
+		if (changed.isEmpty()) {
+			return;
+		}
+		for (LandEntry entry : lands.values()) {
+			entry.zoneIDs.removeAll(changed);
+			addIntersecting(entry, changed);
+		}
+	}
+}
@@ -1,14 +1,18 @@
 package contextvh.util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.MultiPolygon;
-import com.vividsolutions.jts.geom.prep.PreparedGeometry;
-import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 
 import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.SpatialIndex;
 import nl.tytech.core.net.serializable.MapLink;
 import nl.tytech.core.structure.ItemMap;
 import nl.tytech.data.engine.item.Building;
@@ -33,6 +37,42 @@ public final class MapUtils {
 
 	protected static final MapType DEFAULT_MAPTYPE = MapType.MAQUETTE;
 
+	/**
+	 * Union of items with the versions of the items it was made from.
+	 */
+	private static final class CachedUnion {
+
+		/**
+		 * Versions of the contributing items by ID.
+		 */
+		private final Map<Integer, Integer> versions;
+
+		/**
+		 * The union of the items.
+		 */
+		private final MultiPolygon union;
+
+		/**
+		 * Create a cached union.
+		 * @param itemVersions Versions of the contributing items by ID.
+		 * @param itemUnion The union of the items.
+		 */
+		private CachedUnion(final Map<Integer, Integer> itemVersions, final MultiPolygon itemUnion) {
+			this.versions = itemVersions;
+			this.union = itemUnion;
+		}
+	}
+
+	/**
+	 * Maximum amount of cached unions, the cache is cleared when it is full.
+	 */
+	private static final int MAX_CACHED_UNIONS = 256;
+
+	/**
+	 * Cached unions by connection, map and selection (stakeholder or zone ID's).
+	 */
+	private static final Map<List<Object>, CachedUnion> UNION_CACHE = new ConcurrentHashMap<>();
+
 	/**
 	 * Returns a Geometry of all zones with its ID in ids combined, if an empty list or no ids are given,
 	 * a Geometry containing all zones will be returned.
@@ -43,13 +83,17 @@ public final class MapUtils {
 	public static Geometry getZonesCombined(final Integer connectionID, final List<Integer> ids) {
 		final boolean getAll = ids.size() == 0;
 		final ItemMap<Zone> zones = EventManager.getItemMap(connectionID, MapLink.ZONES);
-		Geometry result = JTSUtils.EMPTY;
+		final Map<Integer, Integer> versions = new HashMap<>();
+		final List<Geometry> geometries = new ArrayList<>();
 		for (Zone zone : zones) {
 			if (getAll || ids.contains(zone.getID())) {
-				result = result.union(zone.getMultiPolygon());
+				versions.put(zone.getID(), zone.getVersion());
+				geometries.add(zone.getMultiPolygon());
 			}
 		}
-		return result;
+		final List<Integer> zoneIDs = new ArrayList<>(ids);
+		Collections.sort(zoneIDs);
+		return getUnion(Arrays.asList(connectionID, MapLink.ZONES, zoneIDs), versions, geometries);
 	}
 
 	/**
@@ -71,14 +115,46 @@ public final class MapUtils {
 	 * @return The resulting Geometry.
 	 */
 	public static MultiPolygon getStakeholderLands(final Integer connectionID, final Integer stakeholderID) {
-		MultiPolygon result = JTSUtils.EMPTY;
 		final ItemMap<Land> lands = EventManager.getItemMap(connectionID, MapLink.LANDS);
+		final Map<Integer, Integer> versions = new HashMap<>();
+		final List<Geometry> geometries = new ArrayList<>();
 		for (Land land : lands) {
-			if (land.getOwnerID() == stakeholderID) {
-				result = JTSUtils.union(result, land.getMultiPolygon());
+			if (stakeholderID.equals(land.getOwnerID())) {
+				versions.put(land.getID(), land.getVersion());
+				geometries.add(land.getMultiPolygon());
 			}
 		}
-		return result;
+		return getUnion(Arrays.asList(connectionID, MapLink.LANDS, stakeholderID), versions, geometries);
+	}
+
+	/**
+	 * Returns the cascaded union of the geometries, or the cached union when it was made
+	 * from the same items with the same versions.
+	 * @param key The key of the union in the cache.
+	 * @param versions The versions of the contributing items by ID.
+	 * @param geometries The geometries of the contributing items.
+	 * @return The union.
+	 */
+	private static MultiPolygon getUnion(final List<Object> key, final Map<Integer, Integer> versions,
+			final List<Geometry> geometries) {
+		final CachedUnion cached = UNION_CACHE.get(key);
+		if (cached != null && cached.versions.equals(versions)) {
+			return cached.union;
+		}
+		if (UNION_CACHE.size() >= MAX_CACHED_UNIONS) {
+			UNION_CACHE.clear();
+		}
+		final MultiPolygon union = JTSUtils.unionCascaded(geometries);
+		UNION_CACHE.put(key, new CachedUnion(versions, union));
+		return union;
+	}
+
+	/**
+	 * Forget the cached unions of a connection, e.g. when it is closed.
+	 * @param connectionID The id of the connection.
+	 */
+	public static void clearCache(final Integer connectionID) {
+		UNION_CACHE.keySet().removeIf(key -> connectionID.equals(key.get(0)));
 	}
 
 	/**
@@ -110,14 +186,14 @@ public final class MapUtils {
 	 */
 	private static MultiPolygon removeWaterOrLand(final Integer connectionID,
 			final MultiPolygon mp, final boolean removeWater) {
-		final ItemMap<Terrain> terrains = EventManager.getItemMap(connectionID, MapLink.TERRAINS);
-		MultiPolygon mpResult = mp;
-		for (Terrain terrain : terrains) {
+		final SpatialIndex<Terrain> terrains = EventManager.getSpatialIndex(connectionID, MapLink.TERRAINS);
+		final List<Geometry> removes = new ArrayList<>();
+		for (Terrain terrain : terrains.query(mp.getEnvelopeInternal())) {
 			if (terrain.getType().isWater() == removeWater) {
-				mpResult = JTSUtils.difference(mpResult, terrain.getMultiPolygon(DEFAULT_MAPTYPE));
+				removes.add(terrain.getMultiPolygon(DEFAULT_MAPTYPE));
 			}
 		}
-		return mpResult;
+		return JTSUtils.differenceAll(mp, removes);
 	}
 
 	/**
@@ -145,15 +221,11 @@ public final class MapUtils {
 	 * @return A multipolygon with all buildings removed.
 	 */
 	public static MultiPolygon removeBuildings(final Integer connectionID, final MultiPolygon mp) {
-		final ItemMap<Building> buildings = EventManager.getItemMap(connectionID, MapLink.BUILDINGS);
-		MultiPolygon constructableLand = mp;
-		final PreparedGeometry prepped = PreparedGeometryFactory.prepare(constructableLand);
-		for (Building building : buildings) {
-			final MultiPolygon buildingMP = building.getMultiPolygon(DEFAULT_MAPTYPE);
-			if (prepped.intersects(buildingMP)) {
-				constructableLand = JTSUtils.difference(constructableLand, buildingMP);
-			}
+		final SpatialIndex<Building> buildings = EventManager.getSpatialIndex(connectionID, MapLink.BUILDINGS);
+		final List<Geometry> removes = new ArrayList<>();
+		for (Building building : buildings.query(mp.getEnvelopeInternal())) {
+			removes.add(building.getMultiPolygon(DEFAULT_MAPTYPE));
 		}
-		return constructableLand;
+		return JTSUtils.differenceAll(mp, removes);
 	}
 }
@@ -0,0 +1,198 @@
+package contextvh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import contextvh.ContextEnv;
+import eis.exceptions.ManagementException;
+import eis.iilang.Identifier;
+import eis.iilang.Parameter;
+import eis.iilang.ParameterList;
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.SlotConnection;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.engine.event.ParticipantEventType;
+import nl.tytech.data.engine.item.Function;
+import nl.tytech.data.engine.item.Zone;
+import nl.tytech.data.engine.serializable.Category;
+import nl.tytech.util.JTSUtils;
+import tygronenv.MyEnvListener;
+
+/**
+ * Test for the BuildableArea: the cached area, also after it is patched for a changed building, must
+ * be the area computed completely from the lands of the stakeholder.
+ * @author Max Groenenboom
+ */
+public class BuildableAreaTest {
+
+	private static final String STAKEHOLDERS = "stakeholders";
+	private static final String MUNICIPALITY = "MUNICIPALITY";
+	private static final String PROJECT = "project";
+	private static final Identifier PROJECTNAME = new Identifier("testutilsmap");
+
+	private static final int MUNICIPALITY_ID = 0;
+
+	private static final int ZONE_ONLY_GRASS = 1;
+
+	/**
+	 * Size in meters of the planned building.
+	 */
+	private static final double BUILDING_SIZE = 10;
+
+	/**
+	 * Allowed difference in area of geometries computed in a different order.
+	 */
+	private static final double DELTA = 1e-6;
+
+	/**
+	 * Max time in ms to wait for an update.
+	 */
+	private static final long UPDATE_TIMEOUT = 10000;
+
+	private static final long POLL_INTERVAL = 100;
+
+	private ContextEnv env;
+
+	private Integer connectionID;
+
+	/**
+	 * Set up the environment.
+	 */
+	@Before
+	public void before() {
+		env = new ContextEnv();
+	}
+
+	/**
+	 * Kill the environment.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@After
+	public void after() throws ManagementException, InterruptedException {
+		env.kill();
+	}
+
+	/**
+	 * Test if the first area is the complete computation and if it is reused while nothing changes.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testFirstAreaMatchesRebuild() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final MultiPolygon area = BuildableArea.get(connectionID, MUNICIPALITY_ID);
+		assertSameArea(rebuild(), area);
+		assertSame(area, BuildableArea.get(connectionID, MUNICIPALITY_ID));
+	}
+
+	/**
+	 * Test if the area that is patched for a new building is the complete computation.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testPatchedAreaMatchesRebuild() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final MultiPolygon before = BuildableArea.get(connectionID, MUNICIPALITY_ID);
+
+		final Envelope zoneEnvelope = EventManager.<Zone>getItemMap(connectionID, MapLink.ZONES)
+				.get(ZONE_ONLY_GRASS).getMultiPolygon().getEnvelopeInternal();
+		final Envelope buildingEnvelope = new Envelope(zoneEnvelope.centre());
+		buildingEnvelope.expandBy(BUILDING_SIZE / 2);
+		final MultiPolygon contour = JTSUtils.createMP(JTSUtils.createSquare(buildingEnvelope));
+
+		final SlotConnection connection = env.getEntity(MUNICIPALITY).getSlotConnection();
+		final Integer buildingID = connection.fireServerEvent(true,
+				ParticipantEventType.BUILDING_PLAN_CONSTRUCTION, MUNICIPALITY_ID, findRoadFunction(), 1,
+				contour);
+		assertNotNull(buildingID);
+		waitForItem(MapLink.BUILDINGS, buildingID);
+
+		final MultiPolygon patched = BuildableArea.get(connectionID, MUNICIPALITY_ID);
+		assertSameArea(rebuild(), patched);
+		assertTrue(patched.getArea() <= before.getArea() + DELTA);
+	}
+
+	/**
+	 * Computes the buildable area of the municipality completely.
+	 * @return The buildable area.
+	 */
+	private MultiPolygon rebuild() {
+		MultiPolygon result = MapUtils.getStakeholderLands(connectionID, MUNICIPALITY_ID);
+		result = MapUtils.removeWater(connectionID, result);
+		result = MapUtils.removeReservedLand(connectionID, result);
+		return MapUtils.removeBuildings(connectionID, result);
+	}
+
+	/**
+	 * Asserts that both geometries cover the same area.
+	 * @param expected The expected geometry.
+	 * @param actual The actual geometry.
+	 */
+	private static void assertSameArea(final MultiPolygon expected, final MultiPolygon actual) {
+		assertEquals(expected.getArea(), actual.getArea(), DELTA);
+		assertEquals(0, expected.symDifference(actual).getArea(), DELTA);
+	}
+
+	/**
+	 * Returns the ID of a road function.
+	 * @return The function ID.
+	 */
+	private Integer findRoadFunction() {
+		final ItemMap<Function> functions = EventManager.getItemMap(connectionID, MapLink.FUNCTIONS);
+		for (Function function : functions) {
+			if (function.getCategories().contains(Category.ROAD)) {
+				return function.getID();
+			}
+		}
+		throw new AssertionError("No road function in the project.");
+	}
+
+	/**
+	 * Wait until the item is in the map of the connection.
+	 * @param mapLink The map.
+	 * @param id The ID of the item.
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	private void waitForItem(final MapLink mapLink, final Integer id) throws InterruptedException {
+		final long end = System.currentTimeMillis() + UPDATE_TIMEOUT;
+		while (EventManager.getItemMap(connectionID, mapLink).get(id) == null) {
+			assertTrue("Item " + id + " not received in " + mapLink, System.currentTimeMillis() < end);
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+
+	/**
+	 * Init env and ask for municipality as stakeholder.
+	 *
+	 * @throws ManagementException Managements exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	private void joinAsMunicipality() throws ManagementException, InterruptedException {
+		MyEnvListener listener = new MyEnvListener();
+		env.attachEnvironmentListener(listener);
+
+		Map<String, Parameter> parameters = new HashMap<String, Parameter>();
+		parameters.put(PROJECT, PROJECTNAME);
+		parameters.put(STAKEHOLDERS, new ParameterList(new Identifier(MUNICIPALITY)));
+		// any slot so not specified.
+		env.init(parameters);
+		connectionID = env.getEntity(MUNICIPALITY).getSlotConnection().getConnectionID();
+
+		assertEquals(MUNICIPALITY, listener.waitForEntity());
+	}
+}
@@ -0,0 +1,118 @@
+package contextvh.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import nl.tytech.util.JTSUtils;
+
+/**
+ * Compares subtracting many squares from a base with one differenceAll and with one difference per
+ * square, like MapUtils did before, and prints the time of both. Run with mvn test -Pbenchmark.
+ * @author Max Groenenboom
+ */
+public class JTSUtilsBenchmark {
+
+	/**
+	 * Allowed difference in area of geometries computed in a different order.
+	 */
+	private static final double DELTA = 1e-6;
+
+	/**
+	 * Size of the squares.
+	 */
+	private static final double SIZE = 10;
+
+	/**
+	 * Size of the base the squares are subtracted from.
+	 */
+	private static final int BASE_SIZE = 500;
+
+	/**
+	 * Amounts of squares subtracted from the base.
+	 */
+	private static final int[] REMOVES = {10, 100, 1000, 2000};
+
+	/**
+	 * Timed runs of each amount.
+	 */
+	private static final int ROUNDS = 5;
+
+	/**
+	 * Runs of each amount before timing.
+	 */
+	private static final int WARMUP = 2;
+
+	/**
+	 * Nanoseconds in a millisecond.
+	 */
+	private static final double NANOS_PER_MS = 1e6;
+
+	/**
+	 * Creates squares at random places, partly outside the base and overlapping each other.
+	 * @param amount The amount of squares.
+	 * @return The squares.
+	 */
+	private static List<MultiPolygon> createRemoves(final int amount) {
+		final Random random = new Random(amount);
+		final List<MultiPolygon> removes = new ArrayList<>();
+		for (int i = 0; i < amount; i++) {
+			final double x = random.nextDouble() * BASE_SIZE * 2 - BASE_SIZE / 2;
+			final double y = random.nextDouble() * BASE_SIZE * 2 - BASE_SIZE / 2;
+			removes.add(JTSUtils.createSquare(x, y, SIZE, SIZE));
+		}
+		return removes;
+	}
+
+	/**
+	 * Subtracts the squares one at a time.
+	 * @param base The base.
+	 * @param removes The squares.
+	 * @return The rest of the base.
+	 */
+	private static MultiPolygon differenceEach(final MultiPolygon base, final List<MultiPolygon> removes) {
+		MultiPolygon result = base;
+		for (MultiPolygon remove : removes) {
+			result = JTSUtils.difference(result, remove);
+		}
+		return result;
+	}
+
+	/**
+	 * Time subtracting the squares both ways for each amount and print it.
+	 */
+	@Test
+	public void differenceAllAgainstEach() {
+		final MultiPolygon base = JTSUtils.createSquare(0, 0, BASE_SIZE, BASE_SIZE);
+		for (int amount : REMOVES) {
+			final List<MultiPolygon> removes = createRemoves(amount);
+			assertEquals(differenceEach(base, removes).getArea(),
+					JTSUtils.differenceAll(base, removes).getArea(), DELTA);
+			for (int i = 0; i < WARMUP; i++) {
+				differenceEach(base, removes);
+				JTSUtils.differenceAll(base, removes);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				differenceEach(base, removes);
+			}
+			final double eachMillis = (System.nanoTime() - start) / NANOS_PER_MS / ROUNDS;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				JTSUtils.differenceAll(base, removes);
+			}
+			final double allMillis = (System.nanoTime() - start) / NANOS_PER_MS / ROUNDS;
+
+			System.out.println(String.format("%d squares: difference each %.2f ms, differenceAll %.2f ms",
+					amount, eachMillis, allMillis));
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package contextvh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import nl.tytech.util.JTSUtils;
+
+/**
+ * Test for the JTSUtils operations that combine many geometries at once: they must give the same
+ * geometry as the plain operations applied one geometry at a time.
+ * @author Max Groenenboom
+ */
+public class JTSUtilsTest {
+
+	/**
+	 * Allowed difference in area of geometries computed in a different order.
+	 */
+	private static final double DELTA = 1e-6;
+
+	private static final double SIZE = 10;
+
+	/**
+	 * Squares overlap their neighbours by this part of their size.
+	 */
+	private static final double OVERLAP = 0.25;
+
+	/**
+	 * Grid size of which the union is computed sequentially.
+	 */
+	private static final int SMALL_GRID = 8;
+
+	/**
+	 * Grid size of which the union is computed in parallel (more than 256 squares).
+	 */
+	private static final int LARGE_GRID = 20;
+
+	/**
+	 * Size of the base the squares are subtracted from.
+	 */
+	private static final int BASE_SIZE = 100;
+
+	/**
+	 * Amount of squares subtracted from the base.
+	 */
+	private static final int REMOVES = 200;
+
+	/**
+	 * Test if the cascaded union of a small grid of overlapping squares is the pairwise union.
+	 */
+	@Test
+	public void testUnionCascadedMatchesUnion() {
+		final List<MultiPolygon> squares = createGrid(SMALL_GRID);
+		assertSameGeometry(pairwiseUnion(squares), JTSUtils.unionCascaded(squares));
+	}
+
+	/**
+	 * Test if the cascaded union of a grid large enough to run in parallel is the pairwise union.
+	 */
+	@Test
+	public void testUnionCascadedParallelMatchesUnion() {
+		final List<MultiPolygon> squares = createGrid(LARGE_GRID);
+		final MultiPolygon union = JTSUtils.unionCascaded(squares);
+		assertSameGeometry(pairwiseUnion(squares), union);
+
+		final double side = LARGE_GRID * SIZE * (1 - OVERLAP) + SIZE * OVERLAP;
+		assertEquals(side * side, union.getArea(), DELTA);
+	}
+
+	/**
+	 * Test if disjoint squares stay separate polygons in the cascaded union.
+	 */
+	@Test
+	public void testUnionCascadedDisjoint() {
+		final MultiPolygon left = JTSUtils.createSquare(0, 0, SIZE, SIZE);
+		final MultiPolygon right = JTSUtils.createSquare(SIZE * 3, 0, SIZE, SIZE);
+		final MultiPolygon union = JTSUtils.unionCascaded(Arrays.asList(left, right));
+		assertEquals(2, union.getNumGeometries());
+		assertEquals(2 * SIZE * SIZE, union.getArea(), DELTA);
+	}
+
+	/**
+	 * Test if the cascaded union of nothing or of empty geometries is empty.
+	 */
+	@Test
+	public void testUnionCascadedEmpty() {
+		assertTrue(JTSUtils.unionCascaded(Collections.<Geometry>emptyList()).isEmpty());
+		assertTrue(JTSUtils.unionCascaded(Arrays.asList(JTSUtils.EMPTY, JTSUtils.EMPTY)).isEmpty());
+	}
+
+	/**
+	 * Test if subtracting many squares at once is subtracting them one at a time, with squares that
+	 * overlap each other, squares partly outside the base and squares outside the base.
+	 */
+	@Test
+	public void testDifferenceAllMatchesDifference() {
+		final MultiPolygon base = JTSUtils.createSquare(0, 0, BASE_SIZE, BASE_SIZE);
+		final Random random = new Random(BASE_SIZE);
+		final List<MultiPolygon> removes = new ArrayList<>();
+		for (int i = 0; i < REMOVES; i++) {
+			final double x = random.nextDouble() * BASE_SIZE * 2 - BASE_SIZE / 2;
+			final double y = random.nextDouble() * BASE_SIZE * 2 - BASE_SIZE / 2;
+			removes.add(JTSUtils.createSquare(x, y, SIZE, SIZE));
+		}
+
+		MultiPolygon expected = base;
+		for (MultiPolygon remove : removes) {
+			expected = JTSUtils.difference(expected, remove);
+		}
+		assertSameGeometry(expected, JTSUtils.differenceAll(base, removes));
+	}
+
+	/**
+	 * Test if the base stays the same when nothing intersects it and empty geometries are skipped.
+	 */
+	@Test
+	public void testDifferenceAllOutside() {
+		final MultiPolygon base = JTSUtils.createSquare(0, 0, SIZE, SIZE);
+		final MultiPolygon outside = JTSUtils.createSquare(SIZE * 2, 0, SIZE, SIZE);
+		assertSameGeometry(base, JTSUtils.differenceAll(base, Arrays.asList(outside, JTSUtils.EMPTY)));
+		assertSameGeometry(base, JTSUtils.differenceAll(base, Collections.<Geometry>emptyList()));
+	}
+
+	/**
+	 * Test if the result is empty when the base is covered or empty.
+	 */
+	@Test
+	public void testDifferenceAllEmpty() {
+		final MultiPolygon base = JTSUtils.createSquare(0, 0, SIZE, SIZE);
+		final MultiPolygon left = JTSUtils.createSquare(-1, -1, SIZE / 2 + 1, SIZE + 2);
+		final MultiPolygon right = JTSUtils.createSquare(SIZE / 2, -1, SIZE / 2 + 1, SIZE + 2);
+		assertTrue(JTSUtils.differenceAll(base, Arrays.asList(left, right)).isEmpty());
+		assertTrue(JTSUtils.differenceAll(JTSUtils.EMPTY, Arrays.asList(left)).isEmpty());
+	}
+
+	/**
+	 * Creates a grid of squares that overlap their neighbours.
+	 * @param size The amount of squares in each direction.
+	 * @return The squares.
+	 */
+	private static List<MultiPolygon> createGrid(final int size) {
+		final List<MultiPolygon> squares = new ArrayList<>();
+		final double step = SIZE * (1 - OVERLAP);
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				squares.add(JTSUtils.createSquare(x * step, y * step, SIZE, SIZE));
+			}
+		}
+		// the cascaded union sorts the polygons itself
+		Collections.shuffle(squares, new Random(size));
+		return squares;
+	}
+
+	/**
+	 * Union of the geometries by adding them one at a time.
+	 * @param geometries The geometries.
+	 * @return The union.
+	 */
+	private static MultiPolygon pairwiseUnion(final List<? extends Geometry> geometries) {
+		MultiPolygon union = JTSUtils.EMPTY;
+		for (Geometry geometry : geometries) {
+			union = JTSUtils.union(union, JTSUtils.createMP(geometry));
+		}
+		return union;
+	}
+
+	/**
+	 * Asserts that both geometries cover the same area.
+	 * @param expected The expected geometry.
+	 * @param actual The actual geometry.
+	 */
+	private static void assertSameGeometry(final Geometry expected, final Geometry actual) {
+		assertEquals(expected.getArea(), actual.getArea(), DELTA);
+		assertEquals(0, expected.symDifference(actual).getArea(), DELTA);
+	}
+}
@@ -0,0 +1,186 @@
+package contextvh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.SpatialIndex;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Land;
+import nl.tytech.data.engine.item.Zone;
+import nl.tytech.util.JTSUtils;
+
+/**
+ * Test for the LandZoneOverlay: the zones of a land must follow the zone map and lands that are
+ * removed from the land map must be forgotten.
+ * @author Max Groenenboom
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({EventManager.class, Item.class, Land.class, Zone.class, SpatialIndex.class})
+public class LandZoneOverlayTest {
+
+	private static final Integer CONNECTION = 0;
+
+	private static final Integer LAND_WEST = 1;
+	private static final Integer LAND_EAST = 2;
+
+	private static final Integer ZONE_WEST = 10;
+	private static final Integer ZONE_EAST = 11;
+
+	private static final double SIZE = 100;
+
+	private Land landWest;
+	private Land landEast;
+	private Zone zoneWest;
+	private Zone zoneEast;
+
+	/**
+	 * Two lands and two zones next to each other, each land lies in one zone.
+	 */
+	@Before
+	public void init() {
+		landWest = mockLand(LAND_WEST, square(0, 0));
+		landEast = mockLand(LAND_EAST, square(SIZE * 2, 0));
+		zoneWest = mockZone(ZONE_WEST, 1, square(0, 0));
+		zoneEast = mockZone(ZONE_EAST, 1, square(SIZE * 2, 0));
+
+		PowerMockito.mockStatic(EventManager.class);
+		setLands(landWest, landEast);
+		setZones(zoneWest, zoneEast);
+	}
+
+	/**
+	 * Forget the overlay of the test connection.
+	 */
+	@After
+	public void after() {
+		LandZoneOverlay.remove(CONNECTION);
+	}
+
+	/**
+	 * Test if each land gets the zone it lies in.
+	 */
+	@Test
+	public void testZonesOfLand() {
+		assertEquals(Arrays.asList(ZONE_WEST), LandZoneOverlay.getZoneIDs(CONNECTION, landWest));
+		assertEquals(Arrays.asList(ZONE_EAST), LandZoneOverlay.getZoneIDs(CONNECTION, landEast));
+	}
+
+	/**
+	 * Test if a zone that is moved is removed from the land it left and added to the land it entered.
+	 */
+	@Test
+	public void testChangedZone() {
+		LandZoneOverlay.getZoneIDs(CONNECTION, landWest);
+		LandZoneOverlay.getZoneIDs(CONNECTION, landEast);
+
+		final Zone movedZone = mockZone(ZONE_WEST, 2, square(SIZE * 2, 0));
+		setZones(movedZone, zoneEast);
+		assertEquals(Collections.emptyList(), LandZoneOverlay.getZoneIDs(CONNECTION, landWest));
+		assertEquals(Arrays.asList(ZONE_WEST, ZONE_EAST), LandZoneOverlay.getZoneIDs(CONNECTION, landEast));
+	}
+
+	/**
+	 * Test if a land that is removed from the land map is forgotten.
+	 */
+	@Test
+	public void testRemovedLandIsForgotten() {
+		LandZoneOverlay.getZoneIDs(CONNECTION, landWest);
+		LandZoneOverlay.getZoneIDs(CONNECTION, landEast);
+		assertEquals(2, LandZoneOverlay.getLandCount(CONNECTION));
+
+		setLands(landWest);
+		assertEquals(Arrays.asList(ZONE_WEST), LandZoneOverlay.getZoneIDs(CONNECTION, landWest));
+		assertEquals(1, LandZoneOverlay.getLandCount(CONNECTION));
+	}
+
+	/**
+	 * Creates a square.
+	 * @param x The minimum x.
+	 * @param y The minimum y.
+	 * @return The square as MultiPolygon.
+	 */
+	private static MultiPolygon square(final double x, final double y) {
+		return JTSUtils.createMP(JTSUtils.createSquare(new Envelope(x, x + SIZE, y, y + SIZE)));
+	}
+
+	/**
+	 * Mocks a land.
+	 * @param id The ID of the land.
+	 * @param mp The MultiPolygon of the land.
+	 * @return The land.
+	 */
+	private static Land mockLand(final Integer id, final MultiPolygon mp) {
+		final Land land = PowerMockito.mock(Land.class);
+		when(land.getID()).thenReturn(id);
+		when(land.getVersion()).thenReturn(1);
+		when(land.getMultiPolygon()).thenReturn(mp);
+		return land;
+	}
+
+	/**
+	 * Mocks a zone.
+	 * @param id The ID of the zone.
+	 * @param version The version of the zone.
+	 * @param mp The MultiPolygon of the zone.
+	 * @return The zone.
+	 */
+	private static Zone mockZone(final Integer id, final int version, final MultiPolygon mp) {
+		final Zone zone = PowerMockito.mock(Zone.class);
+		when(zone.getID()).thenReturn(id);
+		when(zone.getVersion()).thenReturn(version);
+		when(zone.getMultiPolygon()).thenReturn(mp);
+		return zone;
+	}
+
+	/**
+	 * Put a new land map with the given lands in the EventManager.
+	 * @param lands The lands.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void setLands(final Land... lands) {
+		final ItemMap<Land> map = (ItemMap<Land>) mock(ItemMap.class);
+		final List<Land> list = Arrays.asList(lands);
+		when(map.iterator()).thenAnswer(invocation -> list.iterator());
+		for (Land land : lands) {
+			when(map.get(land.getID())).thenReturn(land);
+		}
+		PowerMockito.when(EventManager.<Land>getItemMap(CONNECTION, MapLink.LANDS)).thenReturn(map);
+	}
+
+	/**
+	 * Put a new zone map and index with the given zones in the EventManager.
+	 * @param zones The zones.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void setZones(final Zone... zones) {
+		final ItemMap<Zone> map = (ItemMap<Zone>) mock(ItemMap.class);
+		final List<Zone> list = Arrays.asList(zones);
+		when(map.iterator()).thenAnswer(invocation -> list.iterator());
+		PowerMockito.when(EventManager.<Zone>getItemMap(CONNECTION, MapLink.ZONES)).thenReturn(map);
+
+		// the overlay tests the candidates itself, so the index may return all zones
+		final SpatialIndex<Zone> index = (SpatialIndex<Zone>) PowerMockito.mock(SpatialIndex.class);
+		when(index.query(any(Envelope.class))).thenReturn(list);
+		PowerMockito.when(EventManager.<Zone>getSpatialIndex(CONNECTION, MapLink.ZONES)).thenReturn(index);
+	}
+}
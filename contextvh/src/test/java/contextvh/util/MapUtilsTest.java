@@ -1,6 +1,7 @@
 package contextvh.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
@@ -18,6 +19,12 @@ import eis.exceptions.ManagementException;
 import eis.iilang.Identifier;
 import eis.iilang.Parameter;
 import eis.iilang.ParameterList;
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.engine.item.Building;
+import nl.tytech.data.engine.item.Land;
+import nl.tytech.data.engine.item.Terrain;
 import nl.tytech.util.JTSUtils;
 import tygronenv.MyEnvListener;
 
@@ -47,6 +54,11 @@ public class MapUtilsTest {
 	private static final int ZONE_ONLY_GRASS = 1;
 	private static final int ZONE_WITH_BUILDING = 3;
 
+	/**
+	 * Allowed difference in area of geometries computed in a different order.
+	 */
+	private static final double DELTA = 1e-6;
+
 	private static Integer connectionID;
 
 	/**
@@ -249,7 +261,112 @@ public class MapUtilsTest {
 	}
 
 
+	/**
+	 * Test if removing the buildings with the spatial index gives the same area as removing every
+	 * building of the map, for each zone.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testRemoveBuildingsMatchesScan() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Building> buildings = EventManager.getItemMap(connectionID, MapLink.BUILDINGS);
+		for (int zoneID = 0; zoneID < NUM_ZONES; zoneID++) {
+			final MultiPolygon zone = JTSUtils.createMP(MapUtils.getZonesCombined(connectionID, zoneID));
+			MultiPolygon expected = zone;
+			for (Building building : buildings) {
+				expected = JTSUtils.difference(expected,
+						building.getMultiPolygon(MapUtils.DEFAULT_MAPTYPE));
+			}
+			assertEquals(expected.getArea(), MapUtils.removeBuildings(connectionID, zone).getArea(), DELTA);
+		}
+	}
 
+	/**
+	 * Test if removing the water with the spatial index gives the same area as removing every
+	 * water terrain of the map, for each zone.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testRemoveWaterMatchesScan() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Terrain> terrains = EventManager.getItemMap(connectionID, MapLink.TERRAINS);
+		for (int zoneID = 0; zoneID < NUM_ZONES; zoneID++) {
+			final MultiPolygon zone = JTSUtils.createMP(MapUtils.getZonesCombined(connectionID, zoneID));
+			MultiPolygon expected = zone;
+			for (Terrain terrain : terrains) {
+				if (terrain.getType().isWater()) {
+					expected = JTSUtils.difference(expected,
+							terrain.getMultiPolygon(MapUtils.DEFAULT_MAPTYPE));
+				}
+			}
+			assertEquals(expected.getArea(), MapUtils.removeWater(connectionID, zone).getArea(), DELTA);
+		}
+	}
+
+	/**
+	 * Test if removing the land with the spatial index gives the same area as removing every land
+	 * terrain of the map, for each zone.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testRemoveLandMatchesScan() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Terrain> terrains = EventManager.getItemMap(connectionID, MapLink.TERRAINS);
+		for (int zoneID = 0; zoneID < NUM_ZONES; zoneID++) {
+			final MultiPolygon zone = JTSUtils.createMP(MapUtils.getZonesCombined(connectionID, zoneID));
+			MultiPolygon expected = zone;
+			for (Terrain terrain : terrains) {
+				if (!terrain.getType().isWater()) {
+					expected = JTSUtils.difference(expected,
+							terrain.getMultiPolygon(MapUtils.DEFAULT_MAPTYPE));
+				}
+			}
+			assertEquals(expected.getArea(), MapUtils.removeLand(connectionID, zone).getArea(), DELTA);
+		}
+	}
+
+	/**
+	 * Test if the cascaded union of the lands of the municipality is the union of its lands added
+	 * one at a time, and if the cached union is reused while the lands do not change.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testStakeholderLandsMatchesUnion() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Land> lands = EventManager.getItemMap(connectionID, MapLink.LANDS);
+		MultiPolygon expected = JTSUtils.EMPTY;
+		for (Land land : lands) {
+			if (land.getOwnerID().equals(MUNICIPALITY_ID)) {
+				expected = JTSUtils.union(expected, land.getMultiPolygon());
+			}
+		}
+		final MultiPolygon union = MapUtils.getStakeholderLands(connectionID, MUNICIPALITY_ID);
+		assertEquals(expected.getArea(), union.getArea(), DELTA);
+		assertEquals(0, expected.symDifference(union).getArea(), DELTA);
+		assertSame(union, MapUtils.getStakeholderLands(connectionID, MUNICIPALITY_ID));
+	}
+
+	/**
+	 * Test if the cascaded union of the zones is the union of the zones added one at a time.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testZonesCombinedMatchesUnion() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		MultiPolygon expected = JTSUtils.EMPTY;
+		for (int zoneID = 0; zoneID < NUM_ZONES; zoneID++) {
+			final MultiPolygon zone = JTSUtils.createMP(MapUtils.getZonesCombined(connectionID, zoneID));
+			expected = JTSUtils.union(expected, zone);
+		}
+		final Geometry union = MapUtils.getZonesCombined(connectionID);
+		assertEquals(expected.getArea(), union.getArea(), DELTA);
+		assertEquals(0, expected.symDifference(union).getArea(), DELTA);
+	}
 
 	// JOIN FUNCTIONS.
 	/**
@@ -0,0 +1,260 @@
+package contextvh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import contextvh.ContextEnv;
+import eis.exceptions.ManagementException;
+import eis.iilang.Identifier;
+import eis.iilang.Parameter;
+import eis.iilang.ParameterList;
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.SlotConnection;
+import nl.tytech.core.client.net.SpatialIndex;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.PolygonItem;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.event.ParticipantEventType;
+import nl.tytech.data.engine.item.Function;
+import nl.tytech.data.engine.item.Zone;
+import nl.tytech.data.engine.serializable.Category;
+import nl.tytech.util.JTSUtils;
+import tygronenv.MyEnvListener;
+
+/**
+ * Test for the SpatialIndex of a connection: its queries must give the same items as a scan over the
+ * complete map, also after the map is updated.
+ * @author Max Groenenboom
+ */
+public class SpatialIndexTest {
+
+	private static final String STAKEHOLDERS = "stakeholders";
+	private static final String MUNICIPALITY = "MUNICIPALITY";
+	private static final String PROJECT = "project";
+	private static final Identifier PROJECTNAME = new Identifier("testutilsmap");
+
+	private static final int MUNICIPALITY_ID = 0;
+
+	private static final int ZONE_ONLY_GRASS = 1;
+
+	/**
+	 * Size in meters of the planned building.
+	 */
+	private static final double BUILDING_SIZE = 10;
+
+	/**
+	 * Max time in ms to wait for an update.
+	 */
+	private static final long UPDATE_TIMEOUT = 10000;
+
+	private static final long POLL_INTERVAL = 100;
+
+	private ContextEnv env;
+
+	private Integer connectionID;
+
+	/**
+	 * Set up the environment.
+	 */
+	@Before
+	public void before() {
+		env = new ContextEnv();
+	}
+
+	/**
+	 * Kill the environment.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@After
+	public void after() throws ManagementException, InterruptedException {
+		env.kill();
+	}
+
+	/**
+	 * Test if querying with an envelope gives the items of which the envelope intersects, for each zone.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testQueryMatchesScan() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Zone> zones = EventManager.getItemMap(connectionID, MapLink.ZONES);
+		for (MapLink mapLink : new MapLink[] {MapLink.BUILDINGS, MapLink.TERRAINS, MapLink.LANDS}) {
+			for (Zone zone : zones) {
+				final Envelope envelope = zone.getMultiPolygon().getEnvelopeInternal();
+				final SpatialIndex<Item> index = EventManager.getSpatialIndex(connectionID, mapLink);
+				assertEquals(mapLink + " in zone " + zone.getID(), scanEnvelope(mapLink, envelope),
+						toIDs(index.query(envelope)));
+			}
+		}
+	}
+
+	/**
+	 * Test if the items intersecting a geometry are the items of which a polygon intersects it.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testIntersectingMatchesScan() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final ItemMap<Zone> zones = EventManager.getItemMap(connectionID, MapLink.ZONES);
+		for (MapLink mapLink : new MapLink[] {MapLink.BUILDINGS, MapLink.TERRAINS}) {
+			for (Zone zone : zones) {
+				final MultiPolygon mp = zone.getMultiPolygon();
+				final SpatialIndex<Item> index = EventManager.getSpatialIndex(connectionID, mapLink);
+				assertEquals(mapLink + " in zone " + zone.getID(), scanGeometry(mapLink, mp),
+						toIDs(index.intersecting(mp)));
+			}
+		}
+	}
+
+	/**
+	 * Test if the index contains a building that is planned after the index was made.
+	 * @throws ManagementException Management exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	@Test
+	public void testIndexFollowsUpdate() throws ManagementException, InterruptedException {
+		joinAsMunicipality();
+		final SpatialIndex<Item> index = EventManager.getSpatialIndex(connectionID, MapLink.BUILDINGS);
+		final int sizeBefore = index.size();
+
+		final Envelope zoneEnvelope = EventManager.<Zone>getItemMap(connectionID, MapLink.ZONES)
+				.get(ZONE_ONLY_GRASS).getMultiPolygon().getEnvelopeInternal();
+		final Envelope buildingEnvelope = new Envelope(zoneEnvelope.centre());
+		buildingEnvelope.expandBy(BUILDING_SIZE / 2);
+		final MultiPolygon contour = JTSUtils.createMP(JTSUtils.createSquare(buildingEnvelope));
+
+		final SlotConnection connection = env.getEntity(MUNICIPALITY).getSlotConnection();
+		final Integer functionID = findRoadFunction();
+		final Integer buildingID = connection.fireServerEvent(true,
+				ParticipantEventType.BUILDING_PLAN_CONSTRUCTION, MUNICIPALITY_ID, functionID, 1,
+				contour);
+		assertNotNull(buildingID);
+		waitForItem(MapLink.BUILDINGS, buildingID);
+
+		assertEquals(sizeBefore + 1, index.size());
+		assertTrue(toIDs(index.query(buildingEnvelope)).contains(buildingID));
+		assertEquals(scanEnvelope(MapLink.BUILDINGS, zoneEnvelope), toIDs(index.query(zoneEnvelope)));
+	}
+
+	/**
+	 * Returns the ID of a road function.
+	 * @return The function ID.
+	 */
+	private Integer findRoadFunction() {
+		final ItemMap<Function> functions = EventManager.getItemMap(connectionID, MapLink.FUNCTIONS);
+		for (Function function : functions) {
+			if (function.getCategories().contains(Category.ROAD)) {
+				return function.getID();
+			}
+		}
+		throw new AssertionError("No road function in the project.");
+	}
+
+	/**
+	 * ID's of the items of which the envelope of a polygon intersects the envelope.
+	 * @param mapLink The map to scan.
+	 * @param envelope The envelope.
+	 * @return The sorted ID's.
+	 */
+	private Set<Integer> scanEnvelope(final MapLink mapLink, final Envelope envelope) {
+		final Set<Integer> ids = new TreeSet<>();
+		final ItemMap<Item> map = EventManager.getItemMap(connectionID, mapLink);
+		for (Item item : map) {
+			final Envelope itemEnvelope = new Envelope();
+			for (MultiPolygon mp : ((PolygonItem) item).getQTMultiPolygons()) {
+				if (mp != null) {
+					itemEnvelope.expandToInclude(mp.getEnvelopeInternal());
+				}
+			}
+			if (!itemEnvelope.isNull() && itemEnvelope.intersects(envelope)) {
+				ids.add(item.getID());
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * ID's of the items of which a polygon intersects the geometry.
+	 * @param mapLink The map to scan.
+	 * @param geometry The geometry.
+	 * @return The sorted ID's.
+	 */
+	private Set<Integer> scanGeometry(final MapLink mapLink, final Geometry geometry) {
+		final Set<Integer> ids = new TreeSet<>();
+		final ItemMap<Item> map = EventManager.getItemMap(connectionID, mapLink);
+		for (Item item : map) {
+			for (MultiPolygon mp : ((PolygonItem) item).getQTMultiPolygons()) {
+				if (mp != null && geometry.intersects(mp)) {
+					ids.add(item.getID());
+					break;
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * ID's of the items.
+	 * @param items The items.
+	 * @return The sorted ID's.
+	 */
+	private static Set<Integer> toIDs(final Iterable<? extends Item> items) {
+		final Set<Integer> ids = new TreeSet<>();
+		for (Item item : items) {
+			ids.add(item.getID());
+		}
+		return ids;
+	}
+
+	/**
+	 * Wait until the item is in the map of the connection.
+	 * @param mapLink The map.
+	 * @param id The ID of the item.
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	private void waitForItem(final MapLink mapLink, final Integer id) throws InterruptedException {
+		final long end = System.currentTimeMillis() + UPDATE_TIMEOUT;
+		while (EventManager.getItemMap(connectionID, mapLink).get(id) == null) {
+			assertTrue("Item " + id + " not received in " + mapLink, System.currentTimeMillis() < end);
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+
+	/**
+	 * Init env and ask for municipality as stakeholder.
+	 *
+	 * @throws ManagementException Managements exception
+	 * @throws InterruptedException Interrupted exception.
+	 */
+	private void joinAsMunicipality() throws ManagementException, InterruptedException {
+		MyEnvListener listener = new MyEnvListener();
+		env.attachEnvironmentListener(listener);
+
+		Map<String, Parameter> parameters = new HashMap<String, Parameter>();
+		parameters.put(PROJECT, PROJECTNAME);
+		parameters.put(STAKEHOLDERS, new ParameterList(new Identifier(MUNICIPALITY)));
+		// any slot so not specified.
+		env.init(parameters);
+		connectionID = env.getEntity(MUNICIPALITY).getSlotConnection().getConnectionID();
+
+		assertEquals(MUNICIPALITY, listener.waitForEntity());
+	}
+}
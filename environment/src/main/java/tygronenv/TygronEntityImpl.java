@@ -10,6 +10,7 @@ import eis.iilang.Action;
 import eis.iilang.Parameter;
 import eis.iilang.Percept;
 import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.ConnectionScheduler;
 import nl.tytech.core.client.net.ServicesManager;
 import nl.tytech.core.client.net.SlotConnection;
 import nl.tytech.core.client.net.TSlotConnection;
@@ -146,7 +147,8 @@ public class TygronEntityImpl implements TygronEntity, EntityEventListener {
 			throw new IllegalStateException("Failed to join session " + slotID + " as participant");
 		}
 
-		slotConnection = TSlotConnection.createSlotConnection();
+		// all entities share the connection threads
+		slotConnection = TSlotConnection.createSlotConnection(ConnectionScheduler.getShared());
 		eventHandler = createEntityEventhandler(slotConnection);
 
 		slotConnection.initSettings(AppType.PARTICIPANT, SettingsManager.getServerIP(), slotID,
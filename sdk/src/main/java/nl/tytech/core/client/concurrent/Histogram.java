@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram
+ * <p>
+ * Lock free histogram of durations. Bucket i holds the durations below 2^i microseconds, so recording is a few atomic adds and the
+ * percentiles are accurate within a factor 2, which is enough to see where time is spent.
+ *
+ * @author Maxim Knepfle
+ */
+public class Histogram {
+
+    /**
+     * Unchanging copy of a histogram, used to query and dump the values.
+     */
+    public static class Snapshot {
+
+        private final long count;
+
+        private final double mean;
+
+        private final double max;
+
+        private final double p50;
+
+        private final double p95;
+
+        private final double p99;
+
+        /**
+         * Amount of durations per bucket, key is the upper bound in ms, only filled buckets.
+         */
+        private final Map<String, Long> buckets = new LinkedHashMap<>();
+
+        private Snapshot(Histogram histogram) {
+
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.counts.get(i);
+                total += counts[i];
+                if (counts[i] > 0) {
+                    buckets.put("<" + getUpperBound(i), counts[i]);
+                }
+            }
+            this.count = total;
+            this.mean = total == 0 ? 0 : histogram.sumNanos.get() / (total * NANOS_PER_MS);
+            this.max = histogram.maxNanos.get() / NANOS_PER_MS;
+            // bucket bounds can be above the longest duration
+            this.p50 = Math.min(max, getPercentile(counts, total, 0.50));
+            this.p95 = Math.min(max, getPercentile(counts, total, 0.95));
+            this.p99 = Math.min(max, getPercentile(counts, total, 0.99));
+        }
+
+        public Map<String, Long> getBuckets() {
+            return buckets;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Longest duration in ms.
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * Average duration in ms.
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Median in ms (upper bound of the bucket).
+         */
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP95() {
+            return p95;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        @Override
+        public String toString() {
+            return "count " + count + " mean " + mean + " ms, p95 " + p95 + " ms, max " + max + " ms";
+        }
+    }
+
+    private final static int BUCKETS = 32;
+
+    private final static double NANOS_PER_MS = 1000000d;
+
+    private static int getBucket(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static double getPercentile(long[] counts, long total, double fraction) {
+
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(counts.length - 1);
+    }
+
+    /**
+     * Upper bound of the bucket in ms.
+     */
+    private static double getUpperBound(int bucket) {
+        return (1L << bucket) / 1000d;
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public long getCount() {
+
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public Snapshot getSnapshot() {
+        return new Snapshot(this);
+    }
+
+    public void record(long nanos) {
+
+        counts.incrementAndGet(getBucket(nanos));
+        sumNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sumNanos.set(0);
+        maxNanos.set(0);
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import nl.tytech.util.concurrent.ThreadPriorities;
+import nl.tytech.util.logger.TLogger;
+
+/**
+ * ParallelExecutor
+ * <p>
+ * Runs tasks on a fixed set of worker threads. Each key is always handled by the same worker, so tasks with the same key run in order while
+ * different keys (e.g. connections) can run at the same time. Workers wait on their queue and start directly when a task is added.
+ * <p>
+ * Tasks without a key all go to the first worker, as do the frames of the ParallelUpdatables, so those never run at the same time. With one
+ * worker (default) everything runs in order on one thread. With more workers they can run at the same time as tasks with a key.
+ *
+ * @author Maxim Knepfle
+ */
+public class ParallelExecutor {
+
+    private final static class Task {
+
+        private final Runnable runnable;
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        private final LinkedBlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+        /**
+         * Workers of a previous size must be done before this one starts, otherwise tasks of the same key could pass each other.
+         */
+        private Worker[] previous;
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private volatile boolean active = true;
+
+        /**
+         * Set when the worker stops taking tasks, guarded by the lock so no task is added after the last one is taken.
+         */
+        private boolean closed = false;
+
+        private final Object lock = new Object();
+
+        private Worker(int index, Worker[] previous) {
+            this.previous = previous;
+            this.setName(name + "-" + index);
+            this.setPriority(ThreadPriorities.MEDIUM);
+            this.setDaemon(true);
+        }
+
+        /**
+         * Add the task, returns false when this worker is closed and the task must go to a new worker.
+         */
+        private boolean add(Task task) {
+            synchronized (lock) {
+                if (closed) {
+                    return false;
+                }
+                queue.add(task);
+                return true;
+            }
+        }
+
+        /**
+         * Close the worker when its queue is empty, returns true when closed.
+         */
+        private boolean close() {
+            synchronized (lock) {
+                if (queue.isEmpty()) {
+                    closed = true;
+                }
+                return closed;
+            }
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                if (previous != null) {
+                    for (Worker worker : previous) {
+                        worker.finished.await();
+                    }
+                    previous = null;
+                }
+                // stop when deactivated and all is done
+                while (active || !close()) {
+                    Task task = queue.poll(1, TimeUnit.SECONDS);
+                    if (task == null) {
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        task.runnable.run();
+                    } catch (Exception exp) {
+                        TLogger.exception(exp);
+                    }
+                    runNanos.addAndGet(System.nanoTime() - start);
+                    executed.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                synchronized (lock) {
+                    closed = true;
+                }
+                TLogger.warning(getName() + " interrupted, " + queue.size() + " tasks not executed.");
+            } finally {
+                finished.countDown();
+            }
+        }
+
+    }
+
+    private final String name;
+
+    private volatile Worker[] workers;
+
+    private final AtomicLong executed = new AtomicLong();
+
+    private final AtomicLong runNanos = new AtomicLong();
+
+    public ParallelExecutor(String name, int threads) {
+        this.name = name;
+        this.workers = createWorkers(Math.max(1, threads), null);
+    }
+
+    private Worker[] createWorkers(int threads, Worker[] old) {
+
+        Worker[] newWorkers = new Worker[threads];
+        for (int i = 0; i < newWorkers.length; i++) {
+            newWorkers[i] = new Worker(i, old);
+            newWorkers[i].start();
+        }
+        return newWorkers;
+    }
+
+    /**
+     * Add the task to the worker of the key, key may be null.
+     */
+    public void execute(Object key, Runnable runnable) {
+
+        Task task = new Task(runnable);
+        while (true) {
+            Worker[] current = workers;
+            Worker worker = getWorker(current, key);
+            /**
+             * A replaced worker takes tasks until its queue is empty, the new workers only start after that. When it is closed the new
+             * workers are already set, so tasks of a key stay in order.
+             */
+            if (worker.add(task)) {
+                return;
+            }
+            if (current == workers) {
+                TLogger.warning(worker.getName() + " was interrupted, task not executed.");
+                return;
+            }
+        }
+    }
+
+    private static Worker getWorker(Worker[] current, Object key) {
+        return current[key == null ? 0 : Math.floorMod(key.hashCode(), current.length)];
+    }
+
+    /**
+     * Average execution time of a task in ms.
+     */
+    public double getAverageRunTime() {
+        long count = executed.get();
+        return count == 0 ? 0 : runNanos.get() / (count * 1000000d);
+    }
+
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Amount of tasks waiting for execution.
+     */
+    public int getQueueDepth() {
+
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth += worker.queue.size();
+        }
+        return depth;
+    }
+
+    public int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * True when called from the current worker of the key, tasks of the key can then run directly without passing earlier ones.
+     */
+    public boolean isWorkerThread(Object key) {
+        return Thread.currentThread() == getWorker(workers, key);
+    }
+
+    /**
+     * Change the amount of workers, the old workers first finish their tasks.
+     */
+    public synchronized void setThreads(int threads) {
+
+        threads = Math.max(1, threads);
+        if (threads == workers.length) {
+            return;
+        }
+        Worker[] old = workers;
+        workers = createWorkers(threads, old);
+        for (Worker worker : old) {
+            worker.active = false;
+            // wake up so it can stop
+            worker.add(new Task(() -> {
+            }));
+        }
+    }
+}
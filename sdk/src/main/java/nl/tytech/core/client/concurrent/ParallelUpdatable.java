@@ -7,6 +7,8 @@ package nl.tytech.core.client.concurrent;
 /**
  * ParallelUpdatable
  * <p>
+ * Updated each frame on the parallel worker of the runnables without a key, thus never at the same time as those. With more than one
+ * parallel thread, runnables with a key (e.g. events of a connection) can run at the same time.
  * </p>
  * @author Maxim Knepfle
  */
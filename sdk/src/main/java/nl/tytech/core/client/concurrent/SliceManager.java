@@ -4,9 +4,9 @@
  ******************************************************************************/
 package nl.tytech.core.client.concurrent;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import nl.tytech.core.client.event.EventManager;
 import nl.tytech.core.util.SettingsManager;
 import nl.tytech.core.util.SettingsManager.RunMode;
@@ -17,30 +17,20 @@ import nl.tytech.util.logger.TLogger;
  *
  * @author Jeroen Warmerdam & Maxim Knepfle
  */
-public class SliceManager implements ParallelUpdatable {
+public class SliceManager {
 
     private static class SingletonHolder {
         private static final SliceManager INSTANCE = new SliceManager();
     }
 
-    private class StackRunnable implements Runnable {
-
-        protected StackTraceElement[] stack;
-
-        @Override
-        public void run() {
-
-        }
-
-        public void setStack(StackTraceElement[] stack) {
-            this.stack = stack;
-        }
-
-    }
-
     public static long LONG_RUNNING_THREAD_ID = -1;
     public static long OPENGL_THREAD_ID = -1;
 
+    /**
+     * Names of the task queues in {@link TaskMetrics}.
+     */
+    public final static String PARALLEL_QUEUE = "Parallel", LONG_RUNNER_QUEUE = "LongRunner", OPENGL_QUEUE = "OpenGL";
+
     private static long MAX_PARALLEL_RUNTIME = 200;
 
     /**
@@ -49,7 +39,18 @@ public class SliceManager implements ParallelUpdatable {
      * @param runnable
      */
     public static void exec(final Runnable runnable) {
-        SingletonHolder.INSTANCE._exec(runnable);
+        SingletonHolder.INSTANCE._exec(null, runnable);
+    }
+
+    /**
+     * Execute the Runnable in the Parallel thread, runnables with the same key (e.g. connection ID) are executed in order. When more
+     * parallel threads are set, runnables with different keys can run at the same time.
+     *
+     * @param key
+     * @param runnable
+     */
+    public static void exec(final Object key, final Runnable runnable) {
+        SingletonHolder.INSTANCE._exec(key, runnable);
     }
 
     /**
@@ -70,12 +71,28 @@ public class SliceManager implements ParallelUpdatable {
         SingletonHolder.INSTANCE._execOpenGL(runnable);
     }
 
+    /**
+     * Executer of the Parallel runnables, also gives queue depth and latency.
+     */
+    public static ParallelExecutor getParallelExecutor() {
+        return SingletonHolder.INSTANCE.parallelExecutor;
+    }
+
+    /**
+     * Set the amount of Parallel threads (default 1). Only use more than 1 when the PARALLEL event listeners are thread safe, since
+     * events of different connections are then handled at the same time.
+     */
+    public static void setParallelThreads(int threads) {
+        SingletonHolder.INSTANCE.parallelExecutor.setThreads(threads);
+    }
+
     /**
      * Executes the runnable.
      */
-    private final ExecutorService longRunningService = Executors.newSingleThreadExecutor();
+    private final ThreadPoolExecutor longRunningService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>());
 
-    private LinkedBlockingDeque<Runnable> fifo = new LinkedBlockingDeque<Runnable>();
+    private final ParallelExecutor parallelExecutor = new ParallelExecutor("Client-Parallel", 1);
 
     private boolean timeRunnables = SettingsManager.getRunMode() != RunMode.RELEASE;
 
@@ -84,26 +101,26 @@ public class SliceManager implements ParallelUpdatable {
      */
     private SliceManager() {
 
-        UpdateManager.addParallel(this);
-
         longRunningService.execute(() -> {
             Thread.currentThread().setName("Client-LongRunner");
             LONG_RUNNING_THREAD_ID = Thread.currentThread().getId();
         });
+        TaskMetrics.registerQueue(PARALLEL_QUEUE, parallelExecutor::getQueueDepth);
+        TaskMetrics.registerQueue(LONG_RUNNER_QUEUE, () -> longRunningService.getQueue().size());
     }
 
-    private void _exec(final Runnable runnable) {
+    private void _exec(final Object key, final Runnable runnable) {
 
-        if (Thread.currentThread().getId() == UpdateManager.PARALLELTHREAD_ID) {
-            // Thread.dumpStack();
+        if (parallelExecutor.isWorkerThread(key)) {
+            // already on the worker of the key, queueing would run it after later tasks of that worker
             try {
                 runnable.run();
             } catch (Exception exp) {
                 TLogger.exception(exp);
             }
         } else {
-            // Add the parallel thread
-            fifo.addLast(catchRunnableErrors(runnable, timeRunnables));
+            // Add to the parallel thread of the key, also from a worker of another key to keep the order of this key
+            parallelExecutor.execute(key, catchRunnableErrors(runnable, PARALLEL_QUEUE, timeRunnables));
         }
     }
 
@@ -121,7 +138,7 @@ public class SliceManager implements ParallelUpdatable {
 
         try {
             // Add the task to the queue, so that it can be executed
-            longRunningService.submit(catchRunnableErrors(runnable, false));
+            longRunningService.submit(catchRunnableErrors(runnable, LONG_RUNNER_QUEUE, false));
         } catch (Exception exp) {
             TLogger.exception(exp);
         }
@@ -136,51 +153,37 @@ public class SliceManager implements ParallelUpdatable {
         /**
          * Run on connected JME OpenGL executer
          */
+        Runnable timedRunnable = catchRunnableErrors(runnable, OPENGL_QUEUE, false);
         EventManager.OPENGL_EVENT_EXECUTER.enqueue(() -> {
-            runnable.run();
+            timedRunnable.run();
             return null;
         });
     }
 
-    private Runnable catchRunnableErrors(final Runnable runnable, final boolean checkTime) {
-
-        StackRunnable runner = new StackRunnable() {
-            @Override
-            public void run() {
-                long start = System.currentTimeMillis();
-                try {
-                    runnable.run();
-                } catch (Exception exp) {
-                    TLogger.exception(exp);
-                }
-                if (checkTime) {
-                    long end = System.currentTimeMillis();
-                    if (end - start > MAX_PARALLEL_RUNTIME) {
-                        // StringBuffer buf = new StringBuffer();
-                        // for (StackTraceElement step : stack) {
-                        // buf.append(step + "\n");
-                        // }
-                        TLogger.warning(Thread.currentThread().getName() + " Runnable takes too long: " + (end - start) + " ms.");
-                    }
-                }
+    /**
+     * Wrap the runnable to log its errors and record its latency and run time in {@link TaskMetrics}. Only the origin (class) is taken
+     * when adding, stacks of slow runnables are taken by the sampler of {@link TaskMetrics}.
+     */
+    private Runnable catchRunnableErrors(final Runnable runnable, final String queue, final boolean checkTime) {
+
+        final String origin = TaskMetrics.getOrigin(runnable);
+        final long submitted = System.nanoTime();
+        return () -> {
+            long start = System.nanoTime();
+            TaskMetrics.recordLatency(queue, start - submitted);
+            TaskMetrics.taskStarted(origin);
+            try {
+                runnable.run();
+            } catch (Exception exp) {
+                TLogger.exception(exp);
+            } finally {
+                TaskMetrics.taskFinished();
+            }
+            long runNanos = System.nanoTime() - start;
+            TaskMetrics.recordRunTime(origin, runNanos);
+            if (checkTime && runNanos / 1000000L > MAX_PARALLEL_RUNTIME) {
+                TLogger.warning(Thread.currentThread().getName() + " Runnable " + origin + " takes too long: " + runNanos / 1000000L + " ms.");
             }
         };
-
-        if (checkTime) {
-            StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-            runner.setStack(stack);
-        }
-        return runner;
-    }
-
-    @Override
-    public void updateParallel(float tpf) {
-
-        // TODO: Maxim limit per frame?
-        Runnable runnable = fifo.pollFirst();
-        while (runnable != null) {
-            runnable.run();
-            runnable = fifo.pollFirst();
-        }
     }
 }
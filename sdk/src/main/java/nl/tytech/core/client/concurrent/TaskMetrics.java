@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.IntSupplier;
+import nl.tytech.util.JsonMapper;
+import nl.tytech.util.RestManager.Format;
+import nl.tytech.util.concurrent.ThreadPriorities;
+import nl.tytech.util.logger.TLogger;
+
+/**
+ * TaskMetrics
+ * <p>
+ * Collects where the client threads spend their time: depth of each task queue, time between adding a task and its start (per queue) and
+ * run time per origin (class of the runnable or updatable). Recording is cheap and always on, no stacks are taken.
+ * <p>
+ * Stacks are only taken by the slow task sampler when it is started: it looks at the running tasks and takes the stack of the thread while
+ * a task runs longer than the threshold, showing where it is stuck.
+ * <p>
+ * Everything can be queried from code or dumped with {@link #toJson()}.
+ *
+ * @author Maxim Knepfle
+ */
+public class TaskMetrics {
+
+    /**
+     * Task running on a thread, used by the sampler.
+     */
+    private final static class RunningTask {
+
+        private final String origin;
+
+        private final long start = System.nanoTime();
+
+        private volatile boolean sampled = false;
+
+        private RunningTask(String origin) {
+            this.origin = origin;
+        }
+    }
+
+    /**
+     * Stack of a task that ran longer than the threshold.
+     */
+    public final static class SlowTask {
+
+        private final String thread;
+
+        private final String origin;
+
+        private final double runTime;
+
+        private final List<String> stack = new ArrayList<>();
+
+        private SlowTask(String thread, String origin, double runTime, StackTraceElement[] elements) {
+            this.thread = thread;
+            this.origin = origin;
+            this.runTime = runTime;
+            for (StackTraceElement element : elements) {
+                stack.add(element.toString());
+            }
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        /**
+         * Run time in ms when the stack was taken.
+         */
+        public double getRunTime() {
+            return runTime;
+        }
+
+        public List<String> getStack() {
+            return stack;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        @Override
+        public String toString() {
+            return thread + " " + origin + " running " + runTime + " ms";
+        }
+    }
+
+    private final static class Sampler extends Thread {
+
+        private final long thresholdNanos;
+
+        private volatile boolean active = true;
+
+        private Sampler(long thresholdMillis) {
+            this.thresholdNanos = thresholdMillis * 1000000L;
+            this.setName("Client-" + TaskMetrics.class.getSimpleName() + "-Sampler");
+            this.setPriority(ThreadPriorities.LOW);
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+
+            long sleep = Math.max(1, thresholdNanos / 2000000L);
+            while (active) {
+                try {
+                    Thread.sleep(sleep);
+                    sample(thresholdNanos);
+                } catch (InterruptedException e) {
+                    // stopped
+                } catch (Exception e) {
+                    TLogger.exception(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot of all metrics, dumped as JSON.
+     */
+    private final static class Dump {
+
+        private final Map<String, Integer> queueDepths = new TreeMap<>();
+
+        private final Map<String, Histogram.Snapshot> latencies = new TreeMap<>();
+
+        private final Map<String, Histogram.Snapshot> runTimes = new TreeMap<>();
+
+        private final List<SlowTask> slowTasks = getSlowTasks();
+    }
+
+    private final static String LAMBDA = "$$Lambda";
+
+    private final static int MAX_SLOW_TASKS = 50;
+
+    private final static Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+
+    private final static Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+
+    private final static Map<String, Histogram> runTimes = new ConcurrentHashMap<>();
+
+    private final static Map<Thread, RunningTask> running = new ConcurrentHashMap<>();
+
+    private final static ConcurrentLinkedDeque<SlowTask> slowTasks = new ConcurrentLinkedDeque<>();
+
+    private static Sampler sampler = null;
+
+    /**
+     * Name of the origin of the runnable: its class, for lambdas the class that created it.
+     */
+    public static String getOrigin(Object runnable) {
+
+        String name = runnable.getClass().getName();
+        int index = name.indexOf(LAMBDA);
+        return index > 0 ? name.substring(0, index) : name;
+    }
+
+    /**
+     * Time in between adding a task to the queue and its start, null when the queue has no tasks yet.
+     */
+    public static Histogram.Snapshot getLatency(String queue) {
+        Histogram histogram = latencies.get(queue);
+        return histogram == null ? null : histogram.getSnapshot();
+    }
+
+    public static Map<String, Histogram.Snapshot> getLatencies() {
+        return getSnapshots(latencies);
+    }
+
+    /**
+     * Amount of tasks waiting in the queue, -1 when the queue is unknown.
+     */
+    public static int getQueueDepth(String queue) {
+        IntSupplier depth = queues.get(queue);
+        return depth == null ? -1 : depth.getAsInt();
+    }
+
+    public static Map<String, Integer> getQueueDepths() {
+
+        Map<String, Integer> depths = new TreeMap<>();
+        for (Entry<String, IntSupplier> entry : queues.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().getAsInt());
+        }
+        return depths;
+    }
+
+    /**
+     * Run time of the tasks of this origin, null when nothing ran yet.
+     */
+    public static Histogram.Snapshot getRunTime(String origin) {
+        Histogram histogram = runTimes.get(origin);
+        return histogram == null ? null : histogram.getSnapshot();
+    }
+
+    public static Map<String, Histogram.Snapshot> getRunTimes() {
+        return getSnapshots(runTimes);
+    }
+
+    /**
+     * Stacks taken by the sampler, newest first.
+     */
+    public static List<SlowTask> getSlowTasks() {
+        return Collections.unmodifiableList(new ArrayList<>(slowTasks));
+    }
+
+    private static Map<String, Histogram.Snapshot> getSnapshots(Map<String, Histogram> histograms) {
+
+        Map<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+        for (Entry<String, Histogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        return snapshots;
+    }
+
+    public static boolean isSampling() {
+        return sampler != null;
+    }
+
+    public static void recordLatency(String queue, long nanos) {
+        latencies.computeIfAbsent(queue, k -> new Histogram()).record(nanos);
+    }
+
+    public static void recordRunTime(String origin, long nanos) {
+        runTimes.computeIfAbsent(origin, k -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * Register a queue, depth is asked when the metrics are queried.
+     */
+    public static void registerQueue(String queue, IntSupplier depth) {
+        queues.put(queue, depth);
+    }
+
+    /**
+     * Clear all recorded latencies, run times and slow tasks.
+     */
+    public static void reset() {
+
+        for (Histogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        for (Histogram histogram : runTimes.values()) {
+            histogram.reset();
+        }
+        slowTasks.clear();
+    }
+
+    private static void sample(long thresholdNanos) {
+
+        long now = System.nanoTime();
+        for (Entry<Thread, RunningTask> entry : running.entrySet()) {
+            RunningTask task = entry.getValue();
+            if (task.sampled || now - task.start < thresholdNanos) {
+                continue;
+            }
+            StackTraceElement[] stack = entry.getKey().getStackTrace();
+            // only keep the stack when the task is still running
+            if (running.get(entry.getKey()) != task) {
+                continue;
+            }
+            task.sampled = true;
+            slowTasks.addFirst(new SlowTask(entry.getKey().getName(), task.origin, (now - task.start) / 1000000d, stack));
+            while (slowTasks.size() > MAX_SLOW_TASKS) {
+                slowTasks.pollLast();
+            }
+        }
+    }
+
+    /**
+     * Start taking the stack of tasks that run longer than the threshold.
+     */
+    public static synchronized void startSampler(long thresholdMillis) {
+
+        stopSampler();
+        sampler = new Sampler(Math.max(1, thresholdMillis));
+        sampler.start();
+    }
+
+    public static synchronized void stopSampler() {
+
+        if (sampler != null) {
+            sampler.active = false;
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Mark that the current thread finished its task.
+     */
+    public static void taskFinished() {
+        running.remove(Thread.currentThread());
+    }
+
+    /**
+     * Mark that the current thread starts running a task of this origin.
+     */
+    public static void taskStarted(String origin) {
+        running.put(Thread.currentThread(), new RunningTask(origin));
+    }
+
+    /**
+     * All metrics as JSON.
+     */
+    public static String toJson() {
+
+        Dump dump = new Dump();
+        dump.queueDepths.putAll(getQueueDepths());
+        dump.latencies.putAll(getLatencies());
+        dump.runTimes.putAll(getRunTimes());
+        try {
+            return JsonMapper.getMapper(Format.JSON).writeValueAsString(dump);
+        } catch (Exception e) {
+            TLogger.exception(e);
+            return null;
+        }
+    }
+
+    private TaskMetrics() {
+    }
+}
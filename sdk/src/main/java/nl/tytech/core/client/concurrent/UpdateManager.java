@@ -7,6 +7,7 @@ package nl.tytech.core.client.concurrent;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import javafx.animation.AnimationTimer;
 
 /**
@@ -80,7 +81,24 @@ public class UpdateManager {
 
         @Override
         public void update(float tpf) {
-            updateParallel(tpf);
+
+            /**
+             * Run the frame on the parallel worker of the runnables without a key, so the ParallelUpdatables never run at the same time as
+             * those runnables, like before on the single parallel thread.
+             */
+            CountDownLatch done = new CountDownLatch(1);
+            SliceManager.getParallelExecutor().execute(null, () -> {
+                try {
+                    updateParallel(tpf);
+                } finally {
+                    done.countDown();
+                }
+            });
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                interrupt();
+            }
         }
     };
 
@@ -88,8 +106,6 @@ public class UpdateManager {
         private static final UpdateManager INSTANCE = new UpdateManager();
     }
 
-    public static long PARALLELTHREAD_ID = -1;
-
     public static void addOpenGL(OpenGLUpdatable updatable) {
         SingletonHolder.INSTANCE._addOpenGL(updatable);
     }
@@ -110,6 +126,20 @@ public class UpdateManager {
         return SingletonHolder.INSTANCE.parallelCounter.getFps();
     }
 
+    /**
+     * Time it takes to update all OpenGL updatables in a frame, run time per updatable is in {@link TaskMetrics#getRunTimes()}.
+     */
+    public static Histogram.Snapshot getOpenGLFrameTime() {
+        return SingletonHolder.INSTANCE.openGLFrameTime.getSnapshot();
+    }
+
+    /**
+     * Time it takes to update all Parallel updatables in a frame, run time per updatable is in {@link TaskMetrics#getRunTimes()}.
+     */
+    public static Histogram.Snapshot getParallelFrameTime() {
+        return SingletonHolder.INSTANCE.parallelFrameTime.getSnapshot();
+    }
+
     public static void removeOpenGL(Object updatable) {
         SingletonHolder.INSTANCE._removeOpenGL(updatable);
     }
@@ -140,11 +170,14 @@ public class UpdateManager {
 
     private FXCounter fxCounter;
 
+    private final Histogram openGLFrameTime = new Histogram();
+
+    private final Histogram parallelFrameTime = new Histogram();
+
     private UpdateManager() {
 
         parallelUpdater = new ParallelUpdater();
         parallelUpdater.start();
-        PARALLELTHREAD_ID = parallelUpdater.getId();
 
         openGLCounter = new FPSCounter();
         this._addOpenGL(openGLCounter);
@@ -196,30 +229,50 @@ public class UpdateManager {
     }
 
     private void _updateOpenGL(float tpf) {
+        long frameStart = System.nanoTime();
         for (int i = 0; i < openGLUpdatables.size(); i++) {
             WeakReference<OpenGLUpdatable> updatableReference = openGLUpdatables.get(i);
             OpenGLUpdatable updatable = updatableReference.get();
             if (updatable != null) {
-                updatable.updateOpenGL(tpf);
+                String origin = TaskMetrics.getOrigin(updatable);
+                long start = System.nanoTime();
+                TaskMetrics.taskStarted(origin);
+                try {
+                    updatable.updateOpenGL(tpf);
+                } finally {
+                    TaskMetrics.taskFinished();
+                }
+                TaskMetrics.recordRunTime(origin, System.nanoTime() - start);
             } else {
                 // remove and break, no problem skipping one frame
                 _removeOpenGL(updatable);
                 break;
             }
         }
+        openGLFrameTime.record(System.nanoTime() - frameStart);
     }
 
     private void updateParallel(float tpf) {
+        long frameStart = System.nanoTime();
         for (int i = 0; i < parallelUpdatables.size(); i++) {
             WeakReference<ParallelUpdatable> updatableReference = parallelUpdatables.get(i);
             ParallelUpdatable updatable = updatableReference.get();
             if (updatable != null) {
-                updatable.updateParallel(tpf);
+                String origin = TaskMetrics.getOrigin(updatable);
+                long start = System.nanoTime();
+                TaskMetrics.taskStarted(origin);
+                try {
+                    updatable.updateParallel(tpf);
+                } finally {
+                    TaskMetrics.taskFinished();
+                }
+                TaskMetrics.recordRunTime(origin, System.nanoTime() - start);
             } else {
                 // remove and break, no problem skipping one frame
                 _removeParallel(updatable);
                 break;
             }
         }
+        parallelFrameTime.record(System.nanoTime() - frameStart);
     }
 }
@@ -8,16 +8,19 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.EventListener;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import nl.tytech.core.client.concurrent.SliceManager;
+import nl.tytech.core.client.event.WeakListenerList.ListenerReference;
 import nl.tytech.core.client.event.OnEventThread.EventThread;
 import nl.tytech.core.client.net.SlotConnection.ComEvent;
+import nl.tytech.core.client.net.SpatialIndex;
 import nl.tytech.core.client.net.Status;
 import nl.tytech.core.event.Event;
 import nl.tytech.core.event.Event.EventTypeEnum;
@@ -34,9 +37,7 @@ import nl.tytech.data.core.item.EnumOrderedItem;
 import nl.tytech.data.core.item.Item;
 import nl.tytech.data.core.item.UniqueNamedItem;
 import nl.tytech.util.StringUtils;
-import nl.tytech.util.concurrent.LocalThreadList;
 import nl.tytech.util.logger.TLogger;
-import org.jdesktop.swingx.event.WeakEventListenerList2;
 import com.sun.javafx.application.PlatformImpl;
 
 /**
@@ -51,7 +52,13 @@ public class EventManager {
          * List with the ID's of all deleted items. The first content (ServerUpdateEventType specific Enum) defines in which mapLink list
          * the items are deleted.
          */
-        DELETE_ITEMS(MapLink.class, ArrayList.class);
+        DELETE_ITEMS(MapLink.class, ArrayList.class),
+
+        /**
+         * Opt-in delta of a server update: the ItemChangeSet (second content) with the added, changed and deleted ID's of the mapLink
+         * list (first content). Only fired when someone listens to it.
+         */
+        CHANGED_ITEMS(MapLink.class, ItemChangeSet.class);
 
         private List<Class<?>> classes;
 
@@ -200,6 +207,18 @@ public class EventManager {
         return SingletonHolder.INSTANCE._getItemMap(mapLink);
     }
 
+    /**
+     * Spatial index of the polygon items in the map of the connection, null when there is no such connection.
+     */
+    public static <I extends Item> SpatialIndex<I> getSpatialIndex(Integer connectionID, MapLink mapLink) {
+        Status status = SingletonHolder.INSTANCE._getStatus(connectionID);
+        return status == null ? null : status.getSpatialIndex(mapLink);
+    }
+
+    public static <I extends Item> SpatialIndex<I> getSpatialIndex(MapLink mapLink) {
+        return getSpatialIndex(getActiveConnectionID(), mapLink);
+    }
+
     public static long getSimTimeMillis() {
         return getSimTimeMillis(getActiveConnectionID());
     }
@@ -212,6 +231,13 @@ public class EventManager {
         return -1;
     }
 
+    /**
+     * True when at least one normal listener is registered for this type.
+     */
+    public static boolean hasListeners(EventTypeEnum type) {
+        return SingletonHolder.INSTANCE._hasListeners(type);
+    }
+
     public static boolean isFirstUpdateFinished() {
         Status status = SingletonHolder.INSTANCE._getActiveStatus();
         if (status != null) {
@@ -220,20 +246,6 @@ public class EventManager {
         return false;
     }
 
-    /**
-     * Check if event listener is still part of the list
-     */
-    private final static <T extends EventListener> boolean isValid(WeakEventListenerList2 list, Class<T> classz, Object listener) {
-
-        Object[] listenersThread = list.getListeners(classz);
-        for (Object listenerThread : listenersThread) {
-            if (listenerThread == listener) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     public static void removeAllListeners(Object potentialListener) {
         if (potentialListener instanceof EventListenerInterface) {
             removeListener((EventListenerInterface) potentialListener);
@@ -281,12 +293,20 @@ public class EventManager {
         SingletonHolder.INSTANCE._setStatus(connectionID, status);
     }
 
+    /**
+     * Key of the parallel worker for the event, events of one connection are handled in order.
+     */
+    private static Object getOrderKey(Event event) {
+        return event instanceof SlotEvent ? ((SlotEvent) event).getConnectionID() : null;
+    }
+
     /**
      * Push the runnable to the correct Thread
      * @param threadType
+     * @param key order key for the parallel workers
      * @param runnable
      */
-    private static void threadPusher(EventThread threadType, final Runnable runnable) {
+    private static void threadPusher(EventThread threadType, Object key, final Runnable runnable) {
 
         switch (threadType) {
             case CALLER:
@@ -294,7 +314,7 @@ public class EventManager {
                 runnable.run();
                 return;
             case PARALLEL:
-                SliceManager.exec(runnable);
+                SliceManager.exec(key, runnable);
                 return;
             case JAVAFX:
                 execFX(runnable);
@@ -311,27 +331,26 @@ public class EventManager {
         }
     }
 
-    private final Map<Class<?>, EventThread> eventIDThreads = new HashMap<>();
+    private final Map<Class<?>, EventThread> eventIDThreads = new ConcurrentHashMap<>();
 
-    private final Map<Class<?>, EventThread> eventEnumThreads = new HashMap<>();
+    private final Map<Class<?>, EventThread> eventEnumThreads = new ConcurrentHashMap<>();
 
-    private final Map<Integer, WeakEventListenerList2> listUpdateEventListenerList = new HashMap<Integer, WeakEventListenerList2>();
+    private final Map<Integer, WeakListenerList<EventListenerInterface>> listUpdateEventListenerList = new ConcurrentHashMap<>();
 
     private final Map<EventTypeEnum, EventInterceptor> interceptionList = new HashMap<Event.EventTypeEnum, EventInterceptor>();
 
-    private final Map<EventTypeEnum, Map<Integer, WeakEventListenerList2>> idEventList = new HashMap<Event.EventTypeEnum, Map<Integer, WeakEventListenerList2>>();
+    private final Map<EventTypeEnum, Map<Integer, WeakListenerList<EventIDListenerInterface>>> idEventList = new ConcurrentHashMap<>();
 
-    private final Map<EventTypeEnum, Map<Enum<?>, WeakEventListenerList2>> enumEventList = new HashMap<Event.EventTypeEnum, Map<Enum<?>, WeakEventListenerList2>>();
+    private final Map<EventTypeEnum, Map<Enum<?>, WeakListenerList<EventIDListenerInterface>>> enumEventList = new ConcurrentHashMap<>();
 
     private final HashMap<Integer, Status> statusMap = new HashMap<Integer, Status>();
 
-    private final LocalThreadList<Entry<Enum<?>, WeakEventListenerList2>> tempEnumList = new LocalThreadList<>();
-
-    private final LocalThreadList<Entry<Integer, WeakEventListenerList2>> tempIDList = new LocalThreadList<>();
+    private final Map<Class<?>, EventThread> eventThreads = new ConcurrentHashMap<>();
 
-    private final Map<Class<?>, EventThread> eventThreads = new HashMap<>();
-
-    private final Map<EventTypeEnum, WeakEventListenerList2> listMap = new HashMap<>();
+    /**
+     * Listeners per event type, read without locking when firing.
+     */
+    private final Map<EventTypeEnum, WeakListenerList<EventListenerInterface>> listMap = new ConcurrentHashMap<>();
 
     private Integer activeConnectionID = Item.NONE;
 
@@ -341,16 +360,16 @@ public class EventManager {
     private void _addEnumListener(EventIDListenerInterface listener, EventTypeEnum type, Enum<?> id) {
 
         synchronized (enumEventList) {
-            Map<Enum<?>, WeakEventListenerList2> map = enumEventList.get(type);
+            Map<Enum<?>, WeakListenerList<EventIDListenerInterface>> map = enumEventList.get(type);
             if (map == null) {
-                map = new HashMap<Enum<?>, WeakEventListenerList2>();
+                map = new ConcurrentHashMap<>();
             }
 
-            WeakEventListenerList2 list = map.get(id);
+            WeakListenerList<EventIDListenerInterface> list = map.get(id);
             if (list == null) {
-                list = new WeakEventListenerList2();
+                list = new WeakListenerList<>();
             }
-            list.add(EventIDListenerInterface.class, listener);
+            list.add(listener);
             map.put(id, list);
             enumEventList.put(type, map);
         }
@@ -373,16 +392,16 @@ public class EventManager {
     private void _addIDListener(EventIDListenerInterface listener, EventTypeEnum type, Integer id) {
 
         synchronized (idEventList) {
-            Map<Integer, WeakEventListenerList2> map = idEventList.get(type);
+            Map<Integer, WeakListenerList<EventIDListenerInterface>> map = idEventList.get(type);
             if (map == null) {
-                map = new HashMap<Integer, WeakEventListenerList2>();
+                map = new ConcurrentHashMap<>();
             }
 
-            WeakEventListenerList2 list = map.get(id);
+            WeakListenerList<EventIDListenerInterface> list = map.get(id);
             if (list == null) {
-                list = new WeakEventListenerList2();
+                list = new WeakListenerList<>();
             }
-            list.add(EventIDListenerInterface.class, listener);
+            list.add(listener);
             map.put(id, list);
             idEventList.put(type, map);
         }
@@ -418,7 +437,7 @@ public class EventManager {
         if (items == null || id == null) {
             return null;
         }
-        return items.get(id);
+        return items.get(id.intValue());
     }
 
     private <I extends EnumOrderedItem<G>, G extends Enum<G>> I _getItem(MapLink mapLink, G id) {
@@ -462,19 +481,24 @@ public class EventManager {
         return this.statusMap.get(connectionID);
     }
 
+    private boolean _hasListeners(EventTypeEnum type) {
+        WeakListenerList<EventListenerInterface> list = listMap.get(type);
+        return list != null && list.hasListeners();
+    }
+
     private void _removeEventIDListener(EventIDListenerInterface listener) {
 
         synchronized (enumEventList) {
-            for (Map<Enum<?>, WeakEventListenerList2> map : enumEventList.values()) {
-                for (WeakEventListenerList2 list : map.values()) {
-                    list.remove(EventIDListenerInterface.class, listener);
+            for (Map<Enum<?>, WeakListenerList<EventIDListenerInterface>> map : enumEventList.values()) {
+                for (WeakListenerList<EventIDListenerInterface> list : map.values()) {
+                    list.remove(listener);
                 }
             }
         }
         synchronized (idEventList) {
-            for (Map<Integer, WeakEventListenerList2> map : idEventList.values()) {
-                for (WeakEventListenerList2 list : map.values()) {
-                    list.remove(EventIDListenerInterface.class, listener);
+            for (Map<Integer, WeakListenerList<EventIDListenerInterface>> map : idEventList.values()) {
+                for (WeakListenerList<EventIDListenerInterface> list : map.values()) {
+                    list.remove(listener);
                 }
             }
         }
@@ -483,18 +507,18 @@ public class EventManager {
     private void _removeEventIDListener(EventIDListenerInterface listener, EventTypeEnum type) {
 
         synchronized (enumEventList) {
-            Map<Enum<?>, WeakEventListenerList2> enummap = enumEventList.get(type);
+            Map<Enum<?>, WeakListenerList<EventIDListenerInterface>> enummap = enumEventList.get(type);
             if (enummap != null) {
-                for (WeakEventListenerList2 list : enummap.values()) {
-                    list.remove(EventIDListenerInterface.class, listener);
+                for (WeakListenerList<EventIDListenerInterface> list : enummap.values()) {
+                    list.remove(listener);
                 }
             }
         }
         synchronized (idEventList) {
-            Map<Integer, WeakEventListenerList2> idmap = idEventList.get(type);
+            Map<Integer, WeakListenerList<EventIDListenerInterface>> idmap = idEventList.get(type);
             if (idmap != null) {
-                for (WeakEventListenerList2 list : idmap.values()) {
-                    list.remove(EventIDListenerInterface.class, listener);
+                for (WeakListenerList<EventIDListenerInterface> list : idmap.values()) {
+                    list.remove(listener);
                 }
             }
         }
@@ -509,7 +533,7 @@ public class EventManager {
 
         synchronized (listMap) {
             // remove also from all type-only listeners
-            for (EventTypeEnum type : new ArrayList<EventTypeEnum>(listMap.keySet())) {
+            for (EventTypeEnum type : listMap.keySet()) {
                 _removeEventListener(listener, type);
             }
         }
@@ -531,8 +555,8 @@ public class EventManager {
             }
 
             // Call the list if it has not been called yet
-            WeakEventListenerList2 list = listMap.get(type);
-            list.remove(EventListenerInterface.class, listener);
+            WeakListenerList<EventListenerInterface> list = listMap.get(type);
+            list.remove(listener);
         }
     }
 
@@ -600,22 +624,10 @@ public class EventManager {
         synchronized (listMap) {
             // Create the listenerlist if it does not already exist
             if (!listMap.containsKey(type)) {
-                listMap.put(type, new WeakEventListenerList2());
+                listMap.put(type, new WeakListenerList<>());
             }
-            WeakEventListenerList2 list = listMap.get(type);
-
             // prio means put me first on the list
-            if (priority) {
-                WeakEventListenerList2 newList = new WeakEventListenerList2();
-                newList.add(EventListenerInterface.class, listener);
-                EventListenerInterface[] listeners = list.getListeners(EventListenerInterface.class);
-                for (Object old : listeners) {
-                    newList.add(EventListenerInterface.class, (EventListenerInterface) old);
-                }
-                listMap.put(type, newList);
-            } else {
-                list.add(EventListenerInterface.class, listener);
-            }
+            listMap.get(type).add(listener, priority);
         }
     }
 
@@ -670,7 +682,8 @@ public class EventManager {
                             contents[0] = stakeholderID;
                         }
 
-                        EventManager.fire(ete, this, contents);
+                        // coded events come from the project data, always validate them
+                        fireEvent(new Event(ete, contents), true);
                     }
                 }
             }
@@ -680,6 +693,13 @@ public class EventManager {
     }
 
     private void fireEvent(final Event event) {
+        fireEvent(event, false);
+    }
+
+    /**
+     * @param boundary When true the event comes from outside the client code and is always validated.
+     */
+    private void fireEvent(final Event event, boolean boundary) {
 
         if (event.getType().isServerSide()) {
             if (SettingsManager.getRunMode() == RunMode.RELEASE) {
@@ -691,7 +711,7 @@ public class EventManager {
             }
         }
 
-        if (!EventValidationUtils.validateEvent(event)) {
+        if (!(boundary ? EventValidationUtils.validateEvent(event) : EventValidationUtils.validateLocalEvent(event))) {
             if (SettingsManager.getRunMode() != RunMode.RELEASE) {
                 TLogger.showstopper("Event failure, see error messages above!");
             }
@@ -712,66 +732,80 @@ public class EventManager {
     private void fireToEnumEvent(Event event) {
 
         // Do enum stuff
-        Map<Enum<?>, WeakEventListenerList2> enumMap = enumEventList.get(event.getType());
-        if (enumMap == null) {
+        Map<Enum<?>, WeakListenerList<EventIDListenerInterface>> enumMap = enumEventList.get(event.getType());
+        if (enumMap == null || enumMap.isEmpty()) {
             return;
         }
-        List<Entry<Enum<?>, WeakEventListenerList2>> temp = tempEnumList.get();
-        temp.addAll(enumMap.entrySet());
 
+        // only look at the updated items, each finds its own listeners
         ItemMap<Item> allItems = event.<ItemMap<Item>> getContent(0);
         Collection<Item> updatedItems = event.<Collection<Item>> getContent(1);
-        for (Entry<Enum<?>, WeakEventListenerList2> entry : temp) {
-            Enum id = entry.getKey();
-            Item item = allItems.get(id);
-            if (updatedItems.contains(item)) {
-                EventIDListenerInterface[] listeners = entry.getValue().getListeners(EventIDListenerInterface.class);
-                for (final EventIDListenerInterface listener : listeners) {
-                    EventThread threadType = getEventThread(listener, true);
-                    if (threadType == EventThread.CALLER) {
-                        listener.notifyEnumListener(event, id);
-                    } else {
-                        threadPusher(threadType, () -> {
-                            if (isValid(entry.getValue(), EventIDListenerInterface.class, listener)) {
-                                listener.notifyEnumListener(event, id);
-                            }
-                        });
-                    }
+        // notify once per enum, also when an item is in the update twice
+        Set<Enum<?>> notified = new HashSet<>();
+        for (Item item : updatedItems) {
+            if (!(item instanceof EnumOrderedItem)) {
+                continue;
+            }
+            Enum<?> id = ((EnumOrderedItem<?>) item).getType();
+            WeakListenerList<EventIDListenerInterface> list = enumMap.get(id);
+            if (list == null || !item.equals(allItems.get(item.getID().intValue())) || !notified.add(id)) {
+                continue;
+            }
+            for (final ListenerReference<EventIDListenerInterface> reference : list.getReferences()) {
+                final EventIDListenerInterface listener = reference.get();
+                if (listener == null) {
+                    continue;
+                }
+                EventThread threadType = getEventThread(listener, true);
+                if (threadType == EventThread.CALLER) {
+                    listener.notifyEnumListener(event, id);
+                } else {
+                    threadPusher(threadType, getOrderKey(event), () -> {
+                        if (reference.isValid()) {
+                            listener.notifyEnumListener(event, id);
+                        }
+                    });
                 }
-                // Do not return here,might be more enums in this list e.g. in settings!
             }
         }
     }
 
     private void fireToIDEvent(Event event) {
 
-        Map<Integer, WeakEventListenerList2> idMap = idEventList.get(event.getType());
-        if (idMap == null) {
+        Map<Integer, WeakListenerList<EventIDListenerInterface>> idMap = idEventList.get(event.getType());
+        if (idMap == null || idMap.isEmpty()) {
             return;
         }
-        List<Entry<Integer, WeakEventListenerList2>> temp = tempIDList.get();
-        temp.addAll(idMap.entrySet());
 
+        // only look at the updated items, each finds its own listeners
         ItemMap<Item> allItems = event.<ItemMap<Item>> getContent(0);
         Collection<Item> updatedItems = event.<Collection<Item>> getContent(1);
-        for (Entry<Integer, WeakEventListenerList2> entry : temp) {
-            Integer id = entry.getKey();
-            Item item = allItems.get(id);
-            if (updatedItems.contains(item)) {
-                EventIDListenerInterface[] listeners = entry.getValue().getListeners(EventIDListenerInterface.class);
-                for (final EventIDListenerInterface listener : listeners) {
-                    EventThread threadType = getEventThread(listener, false);
-                    if (threadType == EventThread.CALLER) {
-                        listener.notifyIDListener(event, id);
-                    } else {
-                        threadPusher(threadType, () -> {
-                            if (isValid(entry.getValue(), EventIDListenerInterface.class, listener)) {
-                                listener.notifyIDListener(event, id);
-                            }
-                        });
-                    }
+        // notify once per ID, also when an item is in the update twice
+        Set<Integer> notified = new HashSet<>();
+        for (Item item : updatedItems) {
+            if (item == null) {
+                continue;
+            }
+            Integer id = item.getID();
+            WeakListenerList<EventIDListenerInterface> list = idMap.get(id);
+            if (list == null || !item.equals(allItems.get(id.intValue())) || !notified.add(id)) {
+                continue;
+            }
+            for (final ListenerReference<EventIDListenerInterface> reference : list.getReferences()) {
+                final EventIDListenerInterface listener = reference.get();
+                if (listener == null) {
+                    continue;
+                }
+                EventThread threadType = getEventThread(listener, false);
+                if (threadType == EventThread.CALLER) {
+                    listener.notifyIDListener(event, id);
+                } else {
+                    threadPusher(threadType, getOrderKey(event), () -> {
+                        if (reference.isValid()) {
+                            listener.notifyIDListener(event, id);
+                        }
+                    });
                 }
-                // Do not return here,might be more enums in this list e.g. in settings!
             }
         }
     }
@@ -779,20 +813,23 @@ public class EventManager {
     private void fireToNormalEvent(final Event event) {
 
         // Now, check if we need to throw it to any specific listeners too
-        WeakEventListenerList2 list = listMap.get(event.getType());
+        WeakListenerList<EventListenerInterface> list = listMap.get(event.getType());
         if (list == null) {
             return;
         }
-        // Fire here too.
-        EventListenerInterface[] listeners = list.getListeners(EventListenerInterface.class);
-        for (EventListenerInterface listener : listeners) {
+        // Fire here too, the array is a snapshot so no copy is needed.
+        for (ListenerReference<EventListenerInterface> reference : list.getReferences()) {
+            EventListenerInterface listener = reference.get();
+            if (listener == null) {
+                continue;
+            }
             try {
                 EventThread threadType = getEventThread(listener);
                 if (event.isRequestEvent() || threadType == EventThread.CALLER) {
                     listener.notifyListener(event);
                 } else {
-                    threadPusher(threadType, () -> {
-                        if (isValid(list, EventListenerInterface.class, listener)) {
+                    threadPusher(threadType, getOrderKey(event), () -> {
+                        if (reference.isValid()) {
                             listener.notifyListener(event);
                         }
                     });
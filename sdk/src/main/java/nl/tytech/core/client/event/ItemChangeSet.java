@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.core.item.Item;
+
+/**
+ * ItemChangeSet
+ * <p>
+ * The changes of one item map in a single server update: which ID's are added, changed or deleted, with the item version before and after
+ * the update. Fired with {@link EventManager.ItemManipulationEventType#CHANGED_ITEMS} so listeners only have to handle the delta instead
+ * of the complete map.
+ * <p>
+ * Both the map before and after the update are unchanged snapshots, so the old and new items can be looked up.
+ *
+ * @author Maxim Knepfle
+ */
+public class ItemChangeSet<I extends Item> {
+
+    public enum ChangeType {
+        ADDED, CHANGED, DELETED;
+    }
+
+    public static class ItemChange {
+
+        private final Integer id;
+
+        private ChangeType type;
+
+        private final int beforeVersion;
+
+        private int afterVersion;
+
+        private ItemChange(Integer id, ChangeType type, int beforeVersion, int afterVersion) {
+            this.id = id;
+            this.type = type;
+            this.beforeVersion = beforeVersion;
+            this.afterVersion = afterVersion;
+        }
+
+        /**
+         * Version of the item before the update, Item.NONE when it was added.
+         */
+        public int getBeforeVersion() {
+            return beforeVersion;
+        }
+
+        /**
+         * Version of the item after the update, for deletes this is the version of the delete.
+         */
+        public int getAfterVersion() {
+            return afterVersion;
+        }
+
+        public Integer getID() {
+            return id;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + id + " (" + beforeVersion + " -> " + afterVersion + ")";
+        }
+    }
+
+    private final MapLink mapLink;
+
+    private final ItemMap<I> before;
+
+    private ItemMap<I> after;
+
+    /**
+     * Changes in order of arrival, one per ID.
+     */
+    private final Map<Integer, ItemChange> changes = new LinkedHashMap<>();
+
+    public ItemChangeSet(MapLink mapLink, ItemMap<I> before) {
+        this.mapLink = mapLink;
+        this.before = before;
+        this.after = before;
+    }
+
+    private List<Integer> getIDs(ChangeType type) {
+
+        List<Integer> ids = new ArrayList<>();
+        for (ItemChange change : changes.values()) {
+            if (change.type == type) {
+                ids.add(change.id);
+            }
+        }
+        return ids;
+    }
+
+    public List<Integer> getAddedIDs() {
+        return getIDs(ChangeType.ADDED);
+    }
+
+    /**
+     * Map snapshot after the update.
+     */
+    public ItemMap<I> getAfter() {
+        return after;
+    }
+
+    /**
+     * Map snapshot before the update.
+     */
+    public ItemMap<I> getBefore() {
+        return before;
+    }
+
+    public ItemChange getChange(Integer id) {
+        return changes.get(id);
+    }
+
+    public List<Integer> getChangedIDs() {
+        return getIDs(ChangeType.CHANGED);
+    }
+
+    public Collection<ItemChange> getChanges() {
+        return changes.values();
+    }
+
+    public List<Integer> getDeletedIDs() {
+        return getIDs(ChangeType.DELETED);
+    }
+
+    public MapLink getMapLink() {
+        return mapLink;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Register that the item is deleted, removedItem is the item that was in the map (can be null).
+     */
+    public void itemDeleted(I removedItem, Item deletedItem) {
+
+        Integer id = deletedItem.getID();
+        ItemChange change = changes.get(id);
+        if (change == null) {
+            if (removedItem != null) {
+                changes.put(id, new ItemChange(id, ChangeType.DELETED, removedItem.getVersion(), deletedItem.getVersion()));
+            }
+        } else if (change.type == ChangeType.ADDED) {
+            // added and deleted in the same update, nothing changed for the listener
+            changes.remove(id);
+        } else {
+            change.type = ChangeType.DELETED;
+            change.afterVersion = deletedItem.getVersion();
+        }
+    }
+
+    /**
+     * Register that the item is put in the map, oldItem is the item it replaces (can be null).
+     */
+    public void itemUpdated(I oldItem, I newItem) {
+
+        Integer id = newItem.getID();
+        ItemChange change = changes.get(id);
+        if (change != null) {
+            // deleted and put again in the same update, the item is still there
+            if (change.type == ChangeType.DELETED) {
+                change.type = change.beforeVersion == Item.NONE ? ChangeType.ADDED : ChangeType.CHANGED;
+            }
+            change.afterVersion = newItem.getVersion();
+        } else if (oldItem == null) {
+            changes.put(id, new ItemChange(id, ChangeType.ADDED, Item.NONE, newItem.getVersion()));
+        } else {
+            changes.put(id, new ItemChange(id, ChangeType.CHANGED, oldItem.getVersion(), newItem.getVersion()));
+        }
+    }
+
+    public void setAfter(ItemMap<I> after) {
+        this.after = after;
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    @Override
+    public String toString() {
+        return mapLink + " " + changes.values();
+    }
+}
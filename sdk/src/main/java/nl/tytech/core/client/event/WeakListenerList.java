@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.event;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import nl.tytech.util.concurrent.ThreadPriorities;
+import nl.tytech.util.logger.TLogger;
+
+/**
+ * WeakListenerList
+ * <p>
+ * Copy on write list of weak listener references. Adding and removing copies the array under a lock, firing only reads the volatile array
+ * without locking or copying. Garbage collected listeners are removed by a background thread.
+ * <p>
+ * Each reference knows when it is removed, so a listener that is called later on another thread can check it is still registered without
+ * scanning the list.
+ *
+ * @author Maxim Knepfle
+ */
+final class WeakListenerList<L> {
+
+    /**
+     * Weak reference to a listener that also knows the list it belongs to.
+     */
+    final static class ListenerReference<L> extends WeakReference<L> {
+
+        private final WeakListenerList<L> owner;
+
+        private volatile boolean removed = false;
+
+        private ListenerReference(L listener, WeakListenerList<L> owner) {
+            super(listener, QUEUE);
+            this.owner = owner;
+        }
+
+        /**
+         * True when the listener is still in the list and not garbage collected.
+         */
+        final boolean isValid() {
+            return !removed && get() != null;
+        }
+    }
+
+    /**
+     * Removes garbage collected listeners from their list.
+     */
+    private final static class Cleaner extends Thread {
+
+        private Cleaner() {
+            this.setName("Client-" + WeakListenerList.class.getSimpleName() + "-Cleaner");
+            this.setPriority(ThreadPriorities.LOW);
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    ListenerReference<?> reference = (ListenerReference<?>) QUEUE.remove();
+                    reference.owner.removeReference(reference);
+                } catch (InterruptedException e) {
+                    // keep running, thread is daemon
+                } catch (Exception e) {
+                    TLogger.exception(e);
+                }
+            }
+        }
+    }
+
+    private final static ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    @SuppressWarnings("rawtypes")
+    private final static ListenerReference[] EMPTY = new ListenerReference[0];
+
+    static {
+        new Cleaner().start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private volatile ListenerReference<L>[] references = EMPTY;
+
+    /**
+     * Add the listener at the end of the list.
+     */
+    final void add(L listener) {
+        add(listener, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    final synchronized void add(L listener, boolean first) {
+
+        if (listener == null) {
+            return;
+        }
+        ListenerReference<L>[] old = references;
+        ListenerReference<L>[] newReferences = new ListenerReference[old.length + 1];
+        if (first) {
+            newReferences[0] = new ListenerReference<>(listener, this);
+            System.arraycopy(old, 0, newReferences, 1, old.length);
+        } else {
+            System.arraycopy(old, 0, newReferences, 0, old.length);
+            newReferences[old.length] = new ListenerReference<>(listener, this);
+        }
+        references = newReferences;
+    }
+
+    /**
+     * Current references, the array is never changed so it can be iterated without locking. References can be cleared, always check
+     * get() for null.
+     */
+    final ListenerReference<L>[] getReferences() {
+        return references;
+    }
+
+    /**
+     * True when at least one listener is alive.
+     */
+    final boolean hasListeners() {
+
+        for (ListenerReference<L> reference : references) {
+            if (reference.isValid()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the first registration of the listener.
+     */
+    final synchronized void remove(L listener) {
+
+        if (listener == null) {
+            return;
+        }
+        ListenerReference<L>[] old = references;
+        for (int i = 0; i < old.length; i++) {
+            if (listener.equals(old[i].get())) {
+                remove(old, i);
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final void remove(ListenerReference<L>[] old, int index) {
+
+        old[index].removed = true;
+        if (old.length == 1) {
+            references = EMPTY;
+            return;
+        }
+        ListenerReference<L>[] newReferences = new ListenerReference[old.length - 1];
+        System.arraycopy(old, 0, newReferences, 0, index);
+        System.arraycopy(old, index + 1, newReferences, index, newReferences.length - index);
+        references = newReferences;
+    }
+
+    private final synchronized void removeReference(ListenerReference<?> reference) {
+
+        ListenerReference<L>[] old = references;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == reference) {
+                remove(old, i);
+                return;
+            }
+        }
+    }
+}
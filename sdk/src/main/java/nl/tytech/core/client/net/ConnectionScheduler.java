@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.tytech.core.client.concurrent.TaskMetrics;
+import nl.tytech.core.net.Network;
+import nl.tytech.util.concurrent.ThreadPriorities;
+import nl.tytech.util.logger.TLogger;
+
+/**
+ * ConnectionScheduler
+ * <p>
+ * Runs the update polling and reconnect checks of many SlotConnections on a small fixed thread pool, instead of two threads per
+ * connection. Use it when one process drives many connections, e.g. an agent per stakeholder.
+ * <p>
+ * Each update request holds a polling thread while it waits for the server, so the amount of threads is the amount of update requests in
+ * flight. Work that can block a thread for seconds runs on a separate pool that grows with it: reconnects (with retries), server commands
+ * (limited per connection) and long poll updates. That way a slow server or a reconnecting connection never stops the polling of the
+ * others.
+ *
+ * @author Maxim Knepfle
+ */
+public class ConnectionScheduler {
+
+    private static class SingletonHolder {
+        private static final ConnectionScheduler INSTANCE = new ConnectionScheduler("Client-" + ConnectionScheduler.class.getSimpleName(),
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Scheduler shared by all connections created with it.
+     */
+    public static ConnectionScheduler getShared() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final String name;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final ThreadPoolExecutor blockingExecutor;
+
+    private final Set<SlotConnection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Connections that are reconnecting, only one connect per connection at the same time.
+     */
+    private final Set<SlotConnection> reconnecting = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final AtomicInteger blockingThreadCounter = new AtomicInteger();
+
+    /**
+     * Delay in ms between update requests of a connection.
+     */
+    private volatile long pollDelay = 0;
+
+    public ConnectionScheduler(String name, int threads) {
+
+        this.name = name;
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCounter.getAndIncrement());
+            thread.setPriority(ThreadPriorities.MEDIUM);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.blockingExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-Blocking-" + blockingThreadCounter.getAndIncrement());
+                    thread.setPriority(ThreadPriorities.MEDIUM);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.scheduleWithFixedDelay(this::checkConnections, Network.UPDATEFREQ, Network.UPDATEFREQ, TimeUnit.MILLISECONDS);
+        TaskMetrics.registerQueue(name, () -> executor.getQueue().size());
+    }
+
+    final void add(SlotConnection connection) {
+        connections.add(connection);
+    }
+
+    private void checkConnections() {
+
+        for (SlotConnection connection : connections) {
+            try {
+                if (connection.checkConnection() && reconnecting.add(connection)) {
+                    // connect retries for about 10 seconds
+                    blockingExecutor.execute(() -> {
+                        try {
+                            connection.connect();
+                        } finally {
+                            reconnecting.remove(connection);
+                        }
+                    });
+                }
+            } catch (Exception exp) {
+                TLogger.exception(exp);
+            }
+        }
+    }
+
+    /**
+     * Executor for the commands of one connection, at most limit commands run at the same time.
+     */
+    final LimitedExecutor createCommandExecutor(int limit) {
+        return new LimitedExecutor(blockingExecutor, limit);
+    }
+
+    /**
+     * Run the next step of the updater, long polls on the blocking pool.
+     */
+    private void execute(SlotConnection.Updater updater) {
+        (updater.isLongPolling() ? blockingExecutor : executor).execute(() -> runUpdater(updater));
+    }
+
+    /**
+     * Amount of threads running reconnects, commands and long poll updates.
+     */
+    public int getBlockingThreads() {
+        return blockingExecutor.getPoolSize();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    final ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPollDelay() {
+        return pollDelay;
+    }
+
+    /**
+     * Amount of update requests and checks waiting for a polling thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getThreads() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * Remove the connection from the reconnect checks, its updater stops when it is killed. Called on disconnect.
+     */
+    final void remove(SlotConnection connection) {
+        connections.remove(connection);
+    }
+
+    private void runUpdater(SlotConnection.Updater updater) {
+
+        long delay;
+        try {
+            delay = updater.step();
+        } catch (Exception exp) {
+            TLogger.exception(exp);
+            delay = Network.UPDATEFREQ;
+        }
+        if (delay == SlotConnection.Updater.STOPPED) {
+            TLogger.info("Stopped " + updater.getName() + ".");
+            return;
+        }
+        delay = Math.max(delay, pollDelay);
+        if (delay > 0) {
+            executor.schedule(() -> execute(updater), delay, TimeUnit.MILLISECONDS);
+        } else {
+            execute(updater);
+        }
+    }
+
+    /**
+     * Set the delay in ms between two update requests of a connection (default 0, directly after the previous one like the updater
+     * thread). A delay lowers the server load with many connections.
+     */
+    public void setPollDelay(long pollDelay) {
+        this.pollDelay = Math.max(0, pollDelay);
+    }
+
+    /**
+     * Change the amount of polling threads, max amount of update requests in flight for all connections together.
+     */
+    public void setThreads(int threads) {
+        executor.setCorePoolSize(Math.max(1, threads));
+    }
+
+    /**
+     * Stop all threads, used when the connections of this scheduler are no longer used.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        blockingExecutor.shutdownNow();
+    }
+
+    final void startUpdater(SlotConnection.Updater updater) {
+        execute(updater);
+    }
+}
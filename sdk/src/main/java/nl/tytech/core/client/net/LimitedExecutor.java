@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * LimitedExecutor
+ * <p>
+ * Runs tasks on another (shared) executor with at most a limited amount at the same time, e.g. the server commands of one connection. The
+ * tasks wait here in order instead of holding a thread.
+ *
+ * @author Maxim Knepfle
+ */
+final class LimitedExecutor implements Executor {
+
+    private final Executor executor;
+
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+
+    private int running = 0;
+
+    private int limit;
+
+    LimitedExecutor(Executor executor, int limit) {
+        this.executor = executor;
+        this.limit = limit;
+    }
+
+    @Override
+    public final synchronized void execute(Runnable runnable) {
+        queue.add(runnable);
+        startTasks();
+    }
+
+    private final synchronized void finished() {
+        running--;
+        startTasks();
+    }
+
+    final synchronized int getLimit() {
+        return limit;
+    }
+
+    final synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    final synchronized void setLimit(int limit) {
+        this.limit = limit;
+        startTasks();
+    }
+
+    private final void startTasks() {
+
+        while (running < limit && !queue.isEmpty()) {
+            Runnable runnable = queue.poll();
+            running++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        runnable.run();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RuntimeException exp) {
+                running--;
+                throw exp;
+            }
+        }
+    }
+}
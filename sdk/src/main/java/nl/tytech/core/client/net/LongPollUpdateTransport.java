@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import nl.tytech.core.net.Network;
+import nl.tytech.util.RestManager.Format;
+
+/**
+ * LongPollUpdateTransport
+ * <p>
+ * The server holds the request until an item is newer than the given versions or the wait time has passed (no content). Idle sessions
+ * then only do one request per wait time instead of a full update round trip every cycle.
+ * </p>
+ * @author Maxim Knepfle
+ */
+public class LongPollUpdateTransport extends PollingUpdateTransport {
+
+    public final static String WAIT_PARAM = "wait";
+
+    private final String[] params;
+
+    public LongPollUpdateTransport() {
+        this(Network.UPDATE_MAX_WAIT, false);
+    }
+
+    /**
+     * Max time in ms the server may hold the request, must stay below the lost connection time.
+     */
+    public LongPollUpdateTransport(long maxWait, boolean compact) {
+        this(maxWait, compact, Format.ZIPTJSON);
+    }
+
+    public LongPollUpdateTransport(long maxWait, boolean compact, Format format) {
+        super(compact, format);
+        this.params = new String[] { WAIT_PARAM, Long.toString(maxWait) };
+    }
+
+    @Override
+    public String getName() {
+        return (isCompact() ? "Compact Long Polling" : "Long Polling") + " (" + getFormat() + ")";
+    }
+
+    @Override
+    protected String[] getParams() {
+        return params;
+    }
+
+    @Override
+    protected String getPath() {
+        return "update/wait/";
+    }
+}
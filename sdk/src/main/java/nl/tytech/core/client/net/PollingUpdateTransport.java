@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.core.Response;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.util.RestManager;
+import nl.tytech.util.RestManager.Format;
+import nl.tytech.util.RestManager.ResponseException;
+import nl.tytech.util.RestUtils.BadRequestType;
+
+/**
+ * PollingUpdateTransport
+ * <p>
+ * Default transport: post the local versions to the server and directly get the newer items back. Supported by all servers.
+ * </p>
+ * <p>
+ * In compact mode the versions are sent as an int array indexed by MapLink ordinal (Item.NONE for maps that are not requested) instead of
+ * a typed map and the server answers with no content when nothing changed.
+ * </p>
+ * <p>
+ * The reply format can be set per transport (e.g. ZIPSMILE). When the server rejects a transport the connection steps down to
+ * {@link #getFallback()}, until the plain update call that is always supported.
+ * </p>
+ * @author Maxim Knepfle
+ */
+public class PollingUpdateTransport implements UpdateTransport {
+
+    private final boolean compact;
+
+    private final Format format;
+
+    /**
+     * The version request is only rebuilt when something changed, so the vector is kept for the same request.
+     */
+    private HashMap<MapLink, Integer> lastVersions = null;
+
+    private int[] lastVector = null;
+
+    public PollingUpdateTransport() {
+        this(false);
+    }
+
+    public PollingUpdateTransport(boolean compact) {
+        this(compact, Format.ZIPTJSON);
+    }
+
+    public PollingUpdateTransport(boolean compact, Format format) {
+        this.compact = compact;
+        this.format = format;
+    }
+
+    @Override
+    public UpdateResult fetchUpdate(String connectionTarget, HashMap<MapLink, Integer> versions, UpdateResultReader.ItemHandler handler)
+            throws ResponseException {
+
+        String path = compact ? getPath() + "vector/" : getPath();
+        Object content = compact ? getVersionVector(versions) : versions;
+
+        if (handler == null) {
+            return RestManager.post(connectionTarget, path, getParams(), content, UpdateResult.class, format);
+        }
+
+        GZIPInputStream inputStream = RestManager.post(connectionTarget, path, getParams(), content, GZIPInputStream.class, format);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            return UpdateResultReader.read(format, inputStream, handler);
+        } catch (IOException e) {
+            throw new ResponseException(BadRequestType.INVALID_JSON_CONTENT, "Invalid JSON response: " + e.getMessage());
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Transport to use when the server does not support this one: plain polling with the same compact and format, then without the
+     * format and at last the plain update call.
+     */
+    public PollingUpdateTransport getFallback() {
+
+        if (getClass() != PollingUpdateTransport.class) {
+            return new PollingUpdateTransport(compact, format);
+        }
+        if (format != Format.ZIPTJSON) {
+            return new PollingUpdateTransport(compact);
+        }
+        return new PollingUpdateTransport();
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getName() {
+        return (compact ? "Compact Polling" : "Polling") + " (" + format + ")";
+    }
+
+    protected String[] getParams() {
+        return null;
+    }
+
+    protected String getPath() {
+        return "update/";
+    }
+
+    private final int[] getVersionVector(HashMap<MapLink, Integer> versions) {
+
+        if (versions != lastVersions) {
+            int[] vector = new int[MapLink.VALUES.length];
+            Arrays.fill(vector, Item.NONE);
+            for (Entry<MapLink, Integer> entry : versions.entrySet()) {
+                vector[entry.getKey().ordinal()] = entry.getValue();
+            }
+            lastVector = vector;
+            lastVersions = versions;
+        }
+        return lastVector;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    @Override
+    public boolean isUnsupported(ResponseException exp) {
+        // the plain update call is always there
+        if (!compact && getParams() == null && format == Format.ZIPTJSON) {
+            return false;
+        }
+        return exp.getStatusCode() == Response.Status.NOT_FOUND.getStatusCode()
+                || exp.getExceptionType() == BadRequestType.INVALID_REQUEST;
+    }
+}
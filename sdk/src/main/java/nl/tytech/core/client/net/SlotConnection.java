@@ -7,13 +7,25 @@ package nl.tytech.core.client.net;
 import java.io.InvalidClassException;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
@@ -21,7 +33,9 @@ import javax.ws.rs.core.Response;
 import nl.tytech.core.client.concurrent.SliceManager;
 import nl.tytech.core.client.event.EventManager;
 import nl.tytech.core.event.Event.EventTypeEnum;
+import nl.tytech.core.event.EventArgumentCopier;
 import nl.tytech.core.event.EventValidationUtils;
+import nl.tytech.core.item.annotations.EventIDField;
 import nl.tytech.core.net.Network;
 import nl.tytech.core.net.Network.AppType;
 import nl.tytech.core.net.Network.ClientConnectionState;
@@ -29,6 +43,8 @@ import nl.tytech.core.net.Network.ConnectionEvent;
 import nl.tytech.core.net.event.IOServiceEventType;
 import nl.tytech.core.net.serializable.ClientData;
 import nl.tytech.core.net.serializable.ClientData.ConnectionState;
+import nl.tytech.core.net.serializable.EventBatch;
+import nl.tytech.core.net.serializable.EventBatch.BatchEvent;
 import nl.tytech.core.net.serializable.JoinReply;
 import nl.tytech.core.net.serializable.MapLink;
 import nl.tytech.core.net.serializable.UpdateResult;
@@ -38,7 +54,7 @@ import nl.tytech.core.util.SettingsManager.RunMode;
 import nl.tytech.data.core.item.CoreStakeholder;
 import nl.tytech.data.core.item.Item;
 import nl.tytech.locale.TLanguage;
-import nl.tytech.util.ObjectUtils;
+import nl.tytech.util.JsonMapper;
 import nl.tytech.util.RestManager;
 import nl.tytech.util.RestManager.Format;
 import nl.tytech.util.RestManager.ResponseException;
@@ -133,8 +149,234 @@ public class SlotConnection {
         }
     }
 
+    /**
+     * Gathers the server events fired within a short window (or up to a max amount) and sends them to the server in one request. When
+     * the server does not support batches the events are sent one by one. Each batch is one command: it waits for the previous commands
+     * with the order keys of its events and counts as one command in flight.
+     * @author Maxim
+     *
+     */
+    private class EventBatcher {
+
+        private class PendingEvent {
+
+            private final Object key;
+
+            private final EventTypeEnum type;
+
+            private final Object[] params;
+
+            private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+            private PendingEvent(Object key, EventTypeEnum type, Object[] params) {
+                this.key = key;
+                this.type = type;
+                this.params = params;
+            }
+
+            private void complete(Object result) {
+
+                Class<?> responseClass = type.getResponseClass();
+                try {
+                    // typed JSON inside an Object[] can come back as a plain map or list, convert it.
+                    if (result != null && responseClass != null && !responseClass.isInstance(result)) {
+                        result = JsonMapper.getMapper(Format.TJSON).convertValue(result, responseClass);
+                    }
+                    future.complete(result);
+                } catch (Exception exp) {
+                    future.completeExceptionally(exp);
+                }
+            }
+        }
+
+        private final long windowMillis;
+
+        private final int maxEvents;
+
+        /**
+         * Only starts the flush when the window ends, the batch itself is sent by the command queue.
+         */
+        private final ScheduledExecutorService flusher = scheduler != null ? scheduler.getExecutor() : Executors
+                .newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "Client-" + EventBatcher.class.getSimpleName() + "-" + connectionID);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        private List<PendingEvent> pending = new ArrayList<>();
+
+        private ScheduledFuture<?> scheduledFlush = null;
+
+        /**
+         * Set to false when the server does not know the batch call.
+         */
+        private volatile boolean supported = true;
+
+        private EventBatcher(long windowMillis, int maxEvents) {
+            this.windowMillis = windowMillis;
+            this.maxEvents = maxEvents;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized <T> CompletableFuture<T> add(Object key, EventTypeEnum type, Object[] params) {
+
+            PendingEvent event = new PendingEvent(key, type, params);
+            pending.add(event);
+
+            if (pending.size() >= maxEvents) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                }
+                scheduledFlush = null;
+                submit(takePending());
+
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flusher.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return (CompletableFuture<T>) event.future;
+        }
+
+        /**
+         * Submit what is pending, synchronized so batches are submitted in the order their events were fired.
+         */
+        private synchronized void flush() {
+            scheduledFlush = null;
+            submit(takePending());
+        }
+
+        /**
+         * Submit the batch as one command after the commands with the same order keys.
+         */
+        private void submit(List<PendingEvent> batch) {
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            Set<Object> keys = new LinkedHashSet<>();
+            for (PendingEvent event : batch) {
+                keys.add(event.key);
+            }
+            try {
+                submitCommand(keys, () -> {
+                    send(batch);
+                    return null;
+                }).whenComplete((result, exp) -> {
+                    // events that are not answered when the command failed
+                    if (exp != null) {
+                        for (PendingEvent event : batch) {
+                            event.future.completeExceptionally(exp);
+                        }
+                    }
+                });
+            } catch (Exception exp) {
+                TLogger.exception(exp);
+                for (PendingEvent event : batch) {
+                    event.future.complete(null);
+                }
+            }
+        }
+
+        private void send(List<PendingEvent> batch) {
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // nothing to combine
+            if (!supported || batch.size() == 1) {
+                sendSeparate(batch);
+                return;
+            }
+
+            EventBatch eventBatch = new EventBatch();
+            for (PendingEvent event : batch) {
+                BatchEvent batchEvent = new BatchEvent();
+                batchEvent.type = event.type.getClass().getSimpleName();
+                batchEvent.name = event.type.toString();
+                batchEvent.params = event.params;
+                eventBatch.events.add(batchEvent);
+                EventManager.fire(Processing.START, this, event.type);
+            }
+
+            Object[] results = null;
+            // default false
+            boolean succes = false;
+            // while command was not successful retry
+            while (!succes) {
+                try {
+                    results = post("event/batch/", eventBatch, Object[].class);
+                    setState(Network.ClientConnectionState.CONNECTED, true);
+                    succes = true;
+
+                } catch (ResponseException exp) {
+                    if (exp.getStatusCode() == Response.Status.NOT_FOUND.getStatusCode()
+                            || exp.getExceptionType() == BadRequestType.INVALID_REQUEST) {
+                        TLogger.info("Server does not support event batches, sending events separately.");
+                        supported = false;
+                        for (int i = 0; i < batch.size(); i++) {
+                            EventManager.fire(Processing.DONE, this);
+                        }
+                        sendSeparate(batch);
+                        return;
+                    }
+                    succes = handle(exp);
+                } catch (Exception exp) {
+                    succes = handle(exp);
+                }
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(results != null && i < results.length ? results[i] : null);
+                EventManager.fire(Processing.DONE, this);
+            }
+        }
+
+        private void sendSeparate(List<PendingEvent> batch) {
+
+            for (PendingEvent event : batch) {
+                try {
+                    event.complete(postServerEvent(event.type, event.params));
+                } catch (Exception exp) {
+                    event.future.completeExceptionally(exp);
+                }
+            }
+        }
+
+        /**
+         * Send what is left and stop the flush thread.
+         */
+        private void shutdown() {
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                }
+                flush();
+            }
+            // shared flusher keeps running
+            if (scheduler == null) {
+                flusher.shutdown();
+            }
+        }
+
+        private List<PendingEvent> takePending() {
+            List<PendingEvent> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+    }
+
     public class Updater extends Thread {
 
+        /**
+         * Returned by step() when the updater is killed.
+         */
+        final static long STOPPED = -1;
+
+        /**
+         * True when the first update request is started.
+         */
+        private boolean firstRequest = false;
+
         private Updater(int counter) {
             this.setName(SlotConnection.THREAD_NAME + "-" + counter);
             this.setPriority(ThreadPriorities.MEDIUM);
@@ -143,41 +385,67 @@ public class SlotConnection {
             updateEnd = 0;
         }
 
+        private final void applyUpdate(UpdateResult serverVersion) {
+
+            if (updater != this || state != Network.ClientConnectionState.CONNECTED) {
+                return;
+            }
+            // set state connected, all is OK
+            setState(Network.ClientConnectionState.CONNECTED, true);
+
+            if (serverVersion == null) {
+                // nothing changed on the server
+                if (streamUpdates) {
+                    // finish maps streamed in before a retry
+                    status.updateVersions(SlotConnection.this, null);
+                }
+                return;
+            }
+
+            // calculate latency
+            long serverTime = System.currentTimeMillis() - timeDiff;
+            latency = serverTime - serverVersion.getTimeStamp();
+            EventManager.fire(ConnectionEvent.CONNECTION_LATENCY, this, latency, getConnectionReceivedMB());
+
+            // update local versions
+            status.updateVersions(SlotConnection.this, serverVersion);
+        }
+
+        private final void finishFirstUpdate() {
+
+            // feedback
+            EventManager.fire(LoadingEventType.TEXT, this, "Processing Online Data", 25);
+            TLogger.info("Finished first item update!");
+
+            EventManager.fire(connectionID, ConnectionEvent.FIRST_UPDATE_FINISHED, this, true);
+
+            /**
+             * Both Long runner and parallel thread must be ready when this event is fired! NICE! ;-)
+             */
+            SliceManager.exec(connectionID, () -> SliceManager.execLongRunner(new Runnable() {
+                @Override
+                public void run() {
+                    EventManager.fire(connectionID, ConnectionEvent.FIRST_UPDATE_EVENT_FINISHED, this);
+                }
+            }));
+            // (Frank) To prevent a racing condition with disconnect,
+            // since firstConnection is used as a control variable...
+            if (updater == this) {
+                firstConnection = false;
+            }
+        }
+
         @Override
         public final void run() {
 
-            while (updater == this) {
-                if (firstConnection) {
-                    // set time diff between server and client.
-                    updateServerTimeDiff();
-                    // wait for first update
-                    TLogger.info("Processing first item update...");
-                    // feedback
-                    EventManager.fire(LoadingEventType.TEXT, this, "Downloading Online Data", 15);
-                    waitForUpdate();
-                    // feedback
-                    EventManager.fire(LoadingEventType.TEXT, this, "Processing Online Data", 25);
-                    TLogger.info("Finished first item update!");
-
-                    EventManager.fire(connectionID, ConnectionEvent.FIRST_UPDATE_FINISHED, this, true);
-
-                    /**
-                     * Both Long runner and parallel thread must be ready when this event is fired! NICE! ;-)
-                     */
-                    SliceManager.exec(() -> SliceManager.execLongRunner(new Runnable() {
-                        @Override
-                        public void run() {
-                            EventManager.fire(connectionID, ConnectionEvent.FIRST_UPDATE_EVENT_FINISHED, this);
-                        }
-                    }));
-                    // (Frank) To prevent a racing condition with disconnect,
-                    // since firstConnection is used as a control variable...
-                    if (updater == this) {
-                        firstConnection = false;
+            long delay;
+            while ((delay = step()) != STOPPED) {
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
                     }
                 } else {
-                    // wait for update
-                    waitForUpdate();
                     // yield thread to allow others, (not really required).
                     Thread.yield();
                 }
@@ -185,53 +453,87 @@ public class SlotConnection {
             TLogger.info("Killed " + this.getName() + " thread.");
         }
 
-        private final boolean waitForUpdate() {
+        /**
+         * True when the updates are long polls, which hold the thread until the server has changes.
+         */
+        final boolean isLongPolling() {
+            return updateTransport instanceof LongPollUpdateTransport;
+        }
 
-            if (status == null) {
+        /**
+         * Do one update request and apply the result. Returns the delay in ms before the next request, or STOPPED when this updater is
+         * killed. Called in a loop by this thread or by the ConnectionScheduler.
+         */
+        final long step() {
+
+            if (updater != this) {
+                return STOPPED;
+            }
+            Status stepStatus = status;
+            if (stepStatus == null) {
                 TLogger.severe("Cannot perform operation, initconnection is not started!");
-                return false;
+                return Network.UPDATEFREQ;
             }
-            // default false
-            boolean succes = false;
-            UpdateResult serverVersion = null;
-            // while command was not successful retry
-            while (!succes && updater == this) {
-                try {
-                    HashMap<MapLink, Integer> request = status.getVersionRequest();
+            // only the thread running this step may request and apply updates
+            stepStatus.startUpdaterStep();
+            try {
+                return request();
+            } finally {
+                stepStatus.endUpdaterStep();
+            }
+        }
 
-                    updateStart = System.currentTimeMillis();
-                    serverVersion = RestManager.post(connectionTarget, "update/", null, request, UpdateResult.class, Format.ZIPTJSON);
-                    updateEnd = System.currentTimeMillis();
+        private final long request() {
 
-                    // if (StringUtils.containsData(serverVersionString)) {
-                    // totalMbReceived += (serverVersionString.length() / 2d) / (1024d * 1024d);
-                    // }
-                    // successful server update
-                    succes = true;
+            if (firstConnection && !firstRequest) {
+                firstRequest = true;
+                // set time diff between server and client.
+                updateServerTimeDiff();
+                // wait for first update
+                TLogger.info("Processing first item update...");
+                // feedback
+                EventManager.fire(LoadingEventType.TEXT, this, "Downloading Online Data", 15);
+            }
 
-                } catch (Exception exp) {
-                    succes = updater == this ? handle(exp) : true;
-                    try {
-                        Thread.sleep(Network.UPDATEFREQ);
-                    } catch (InterruptedException e) {
-                    }
+            UpdateTransport transport = updateTransport;
+            try {
+                HashMap<MapLink, Integer> request = status.getVersionRequest();
+
+                updateStart = System.currentTimeMillis();
+                UpdateResult serverVersion = transport.fetchUpdate(connectionTarget, request, streamUpdates ? status.getStreamHandler()
+                        : null);
+                updateEnd = System.currentTimeMillis();
+
+                // if (StringUtils.containsData(serverVersionString)) {
+                // totalMbReceived += (serverVersionString.length() / 2d) / (1024d * 1024d);
+                // }
+                applyUpdate(serverVersion);
+
+            } catch (ResponseException exp) {
+                if (transport.isUnsupported(exp)) {
+                    // keep compact and format when possible
+                    UpdateTransport fallback = transport instanceof PollingUpdateTransport ? ((PollingUpdateTransport) transport)
+                            .getFallback() : new PollingUpdateTransport();
+                    TLogger.warning("Server does not support " + transport.getName() + " updates, falling back to " + fallback.getName()
+                            + ".");
+                    updateTransport = fallback;
+                    return 0;
+                }
+                if (updater == this && !handle(exp)) {
+                    // retry
+                    return Network.UPDATEFREQ;
+                }
+            } catch (Exception exp) {
+                if (updater == this && !handle(exp)) {
+                    // retry
+                    return Network.UPDATEFREQ;
                 }
             }
-            if (updater == this && serverVersion != null && state == Network.ClientConnectionState.CONNECTED) {
 
-                // set state connected, all is OK
-                setState(Network.ClientConnectionState.CONNECTED, true);
-
-                // calculate latency
-                long serverTime = System.currentTimeMillis() - timeDiff;
-                latency = serverTime - serverVersion.getTimeStamp();
-                EventManager.fire(ConnectionEvent.CONNECTION_LATENCY, this, latency, getConnectionReceivedMB());
-
-                // update local versions
-                status.updateVersions(SlotConnection.this, serverVersion);
-                return true;
+            if (firstConnection && updater == this) {
+                finishFirstUpdate();
             }
-            return false;
+            return updater == this ? 0 : STOPPED;
         }
     }
 
@@ -251,14 +553,7 @@ public class SlotConnection {
         @Override
         public final void run() {
             while (true) {
-                if (state == Network.ClientConnectionState.CONNECTED) {
-                    long updateDif = System.currentTimeMillis() - updateStart;
-                    if (updateEnd > 0 && updateDif > ConnectionState.LOST.getMaxWaitingTime() && !state.isBusy()) {
-                        setState(Network.ClientConnectionState.OFFLINE, false);
-                    }
-                }
-
-                if (state == Network.ClientConnectionState.OFFLINE && !firstConnection) {
+                if (checkConnection()) {
                     connect();
                 }
 
@@ -272,6 +567,11 @@ public class SlotConnection {
 
     private final static String THREAD_NAME = "Client-" + Updater.class.getSimpleName();
 
+    /**
+     * Index of the stakeholder ID parameter per event type, -1 when it has none.
+     */
+    private final static Map<EventTypeEnum, Integer> stakeholderParams = new ConcurrentHashMap<>();
+
     private CoreStakeholder myStakeholder = null;
 
     /**
@@ -291,10 +591,27 @@ public class SlotConnection {
      */
     private String clientToken = null;
 
+    private final AtomicInteger commandThreadCounter = new AtomicInteger();
+
+    /**
+     * Executes the commands, the limit is the max amount of commands in flight (default 1).
+     */
+    private final LimitedExecutor commandQueue;
+
+    /**
+     * When set the updates, checks and commands run on the threads of the scheduler instead of threads of this connection.
+     */
+    private final ConnectionScheduler scheduler;
+
+    /**
+     * Last submitted command per order key that is not done, new commands with the same key wait for it.
+     */
+    private final Map<Object, CompletableFuture<?>> commandTails = new HashMap<>();
+
     /**
-     * A single worker thread executes the runnable commands.
+     * When set server events are combined in batches.
      */
-    private final ExecutorService commandQueue = Executors.newSingleThreadExecutor();
+    private volatile EventBatcher eventBatcher = null;
 
     /**
      * The state of this connection object.
@@ -347,6 +664,13 @@ public class SlotConnection {
 
     private volatile Updater updater = null;
 
+    private volatile UpdateTransport updateTransport = new PollingUpdateTransport();
+
+    /**
+     * When true update items are put in the maps while they are being read from the stream.
+     */
+    private volatile boolean streamUpdates = true;
+
     private int updaterThreadCounter = 0;
 
     public SlotConnection() {
@@ -354,16 +678,41 @@ public class SlotConnection {
     }
 
     protected SlotConnection(Integer connectionID) {
+        this(connectionID, null);
+    }
+
+    /**
+     * Connection that runs on the threads of the scheduler, when null it starts its own threads.
+     */
+    protected SlotConnection(Integer connectionID, ConnectionScheduler scheduler) {
 
         this.connectionID = connectionID;
+        this.scheduler = scheduler;
+
+        if (scheduler != null) {
+            this.commandQueue = scheduler.createCommandExecutor(1);
+            scheduler.add(this);
+        } else {
+            this.commandQueue = new LimitedExecutor(Executors.newCachedThreadPool(runnable -> new Thread(runnable,
+                    "Client-FireServerEvent-" + commandThreadCounter.getAndIncrement())), 1);
+            // start connection check
+            UpdaterChecker checker = new UpdaterChecker(connectionID);
+            checker.start();
+        }
+    }
 
-        // name the executing thread.
-        Runnable exec = () -> Thread.currentThread().setName("Client-FireServerEvent");
-        commandQueue.submit(exec);
+    /**
+     * Check the connection for freezing, returns true when it is offline and must reconnect.
+     */
+    final boolean checkConnection() {
 
-        // start connection check
-        UpdaterChecker checker = new UpdaterChecker(connectionID);
-        checker.start();
+        if (state == Network.ClientConnectionState.CONNECTED) {
+            long updateDif = System.currentTimeMillis() - updateStart;
+            if (updateEnd > 0 && updateDif > ConnectionState.LOST.getMaxWaitingTime() && !state.isBusy()) {
+                setState(Network.ClientConnectionState.OFFLINE, false);
+            }
+        }
+        return state == Network.ClientConnectionState.OFFLINE && !firstConnection;
     }
 
     /**
@@ -379,6 +728,10 @@ public class SlotConnection {
             return false;
         }
         killUpdater();
+        if (scheduler != null) {
+            // removed again on disconnect
+            scheduler.add(this);
+        }
         setState(Network.ClientConnectionState.CONNECTING, true);
 
         // try it a few times
@@ -405,12 +758,38 @@ public class SlotConnection {
         return true;
     }
 
+    /**
+     * Start the updates from the transport without joining a session on a server, the MapLinks of the session type must be setup in the
+     * DataLord. Used to run many connections against a stub transport, e.g. in a soak test of the ConnectionScheduler.
+     */
+    final synchronized boolean connectStub(final UpdateTransport transport, final Network.SessionType sessionType) {
+
+        if (status == null || state != ClientConnectionState.OFFLINE) {
+            TLogger.warning("Cannot run connect when connection is in state: " + state);
+            return false;
+        }
+        killUpdater();
+        if (scheduler != null) {
+            scheduler.add(this);
+        }
+        setUpdateTransport(transport);
+        status.setSessionType(sessionType, transport.getName());
+        // no server, so no server time and first update feedback
+        firstConnection = false;
+        setState(Network.ClientConnectionState.CONNECTED, true);
+        startUpdater();
+        return true;
+    }
+
     public void disconnect(boolean keepServerAlive) {
 
         TLogger.info("Disconnecting from Server...");
 
         // disconnect updater thread
         killUpdater();
+        if (scheduler != null) {
+            scheduler.remove(this);
+        }
         setState(Network.ClientConnectionState.DISCONNECTING, true);
         status.deactivate();
 
@@ -442,83 +821,82 @@ public class SlotConnection {
         TLogger.info("Disconnected!");
     }
 
-    @SuppressWarnings("unchecked")
     public final <T> T fireServerEvent(final boolean wait, final EventTypeEnum type, final Object... arguments) {
 
+        CompletableFuture<T> future = fireServerEventAsync(type, arguments);
+        if (!wait) {
+            return null;
+        }
+        /**
+         * Keep waiting on the same future when interrupted, the command itself is only fired once.
+         */
+        while (true) {
+            try {
+                Thread.yield();
+                return future.get();
+            } catch (InterruptedException exp) {
+                // do nothing
+            } catch (Exception exp) {
+                TLogger.exception(exp);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Fire the event to the server without blocking. With one command in flight (default) all commands are executed in the order they are
+     * fired. With more, commands are kept in order per stakeholder (the STAKEHOLDERS parameter of the EventIDField of the event) or else
+     * per event type, other commands can be executed in parallel.
+     *
+     * @return Future with the server response, completes with null when the event is invalid.
+     */
+    public final <T> CompletableFuture<T> fireServerEventAsync(final EventTypeEnum type, final Object... arguments) {
+        return fireServerEventAsyncOrdered(null, type, arguments);
+    }
+
+    /**
+     * Fire the event to the server without blocking, like fireServerEventAsync(), however in order with the other commands fired with the
+     * same order key. A null key orders per stakeholder or event type.
+     *
+     * @return Future with the server response, completes with null when the event is invalid.
+     */
+    public final <T> CompletableFuture<T> fireServerEventAsyncOrdered(final Object orderKey, final EventTypeEnum type,
+            final Object... arguments) {
+
         if (status == null) {
             TLogger.severe("Cannot perform operation, initconnection is not started!");
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
-        Object[] params = ObjectUtils.deepCopy(arguments);
+        Object[] params = EventArgumentCopier.copyArray(arguments);
 
         if (!EventValidationUtils.validateEvent(type, params)) {
             if (SettingsManager.getRunMode() != RunMode.RELEASE) {
                 TLogger.showstopper("Event failure, see error messages above!");
             }
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
-        final Callable<Object> command = new Callable<Object>() {
-
-            @Override
-            public Object call() throws Exception {
-
-                EventManager.fire(Processing.START, this, type);
+        Object key = orderKey != null ? orderKey : getOrderKey(type, params);
+        EventBatcher batcher = eventBatcher;
+        if (batcher != null) {
+            return batcher.add(key, type, params);
+        }
 
-                // create the event
+        final Callable<T> command = new Callable<T>() {
 
-                Object result = null;
-                // default false
-                boolean succes = false;
-                // while command was not successful retry
-                while (!succes) {
-                    try {
-                        result = RestManager.post(connectionTarget, "event/" + type.getClass().getSimpleName() + "/" + type.toString(),
-                                null, params, type.getResponseClass(), Format.TJSON);
-
-                        // successful server connection
-                        setState(Network.ClientConnectionState.CONNECTED, true);
-                        succes = true;
-                    } catch (Exception exp) {
-                        succes = handle(exp);
-                    }
-                }
-                EventManager.fire(Processing.DONE, this);
-                return result;
+            @SuppressWarnings("unchecked")
+            @Override
+            public T call() throws Exception {
+                return (T) postServerEvent(type, params);
             }
         };
 
         try {
-            if (wait) {
-                /**
-                 * This is temp construction but seems to fix the interrupt problem. When the executor thread is interrupted while it is
-                 * waiting for another executor thread it should not return. By adding this thread it does not go to sleep mode but to
-                 * blocked mode.
-                 */
-                // TODO: Maxim: Make the method so that it cannot fire events more then 1 time.
-                boolean succes = false;
-                Object result = null;
-                while (!succes) {
-                    try {
-                        Thread.yield();
-                        result = commandQueue.submit(command).get();
-                        succes = true;
-                    } catch (InterruptedException exp) {
-                        // do nothing
-                    } catch (Exception exp) {
-                        TLogger.exception(exp);
-                        succes = true;
-                    }
-                }
-                return (T) result;
-            }
-            // execute the command and continue.
-            commandQueue.submit(command);
+            return submitCommand(Collections.singleton(key), command);
         } catch (Exception exp) {
             TLogger.exception(exp);
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
-        return null;
     }
 
     protected final ClientData getClientData() {
@@ -544,6 +922,10 @@ public class SlotConnection {
         return connectionID;
     }
 
+    public int getMaxCommandsInFlight() {
+        return commandQueue.getLimit();
+    }
+
     protected CoreStakeholder getMyStakeholder() {
         return myStakeholder;
     }
@@ -720,6 +1102,43 @@ public class SlotConnection {
         return state == Network.ClientConnectionState.CONNECTED || state == Network.ClientConnectionState.CONNECTING;
     }
 
+    /**
+     * Commands with the same key are executed in order: the stakeholder ID defined by the EventIDField of the event, otherwise the event
+     * type.
+     */
+    private static Object getOrderKey(EventTypeEnum type, Object[] params) {
+
+        int index = stakeholderParams.computeIfAbsent(type, SlotConnection::getStakeholderParam);
+        if (index >= 0 && index < params.length && params[index] != null) {
+            return Arrays.asList(MapLink.STAKEHOLDERS, params[index]);
+        }
+        return type;
+    }
+
+    /**
+     * Index of the parameter with the stakeholder ID according to the EventIDField of the event, -1 when it has none.
+     */
+    private static int getStakeholderParam(EventTypeEnum type) {
+
+        if (!(type instanceof Enum)) {
+            return -1;
+        }
+        try {
+            Enum<?> enumerator = (Enum<?>) type;
+            EventIDField idField = enumerator.getDeclaringClass().getField(enumerator.name()).getAnnotation(EventIDField.class);
+            if (idField != null) {
+                for (int i = 0; i < idField.links().length && i < idField.params().length; i++) {
+                    if (MapLink.STAKEHOLDERS.name().equals(idField.links()[i])) {
+                        return idField.params()[i];
+                    }
+                }
+            }
+        } catch (Exception exp) {
+            TLogger.exception(exp);
+        }
+        return -1;
+    }
+
     private void killUpdater() {
         // zombiefy old thread
         if (updater != null) {
@@ -732,6 +1151,96 @@ public class SlotConnection {
         }
     }
 
+    /**
+     * Post the content to the slot on the server. Package private so a test can answer instead of the server.
+     */
+    <T> T post(String restPath, Object content, Class<T> responseClass) throws ResponseException {
+        return RestManager.post(connectionTarget, restPath, null, content, responseClass, Format.TJSON);
+    }
+
+    /**
+     * Post the event to the server, retries until it succeeds or a fatal exception occurs.
+     */
+    private Object postServerEvent(final EventTypeEnum type, final Object[] params) {
+
+        EventManager.fire(Processing.START, this, type);
+
+        // create the event
+
+        Object result = null;
+        // default false
+        boolean succes = false;
+        // while command was not successful retry
+        while (!succes) {
+            try {
+                result = post("event/" + type.getClass().getSimpleName() + "/" + type.toString(), params, type.getResponseClass());
+
+                // successful server connection
+                setState(Network.ClientConnectionState.CONNECTED, true);
+                succes = true;
+            } catch (Exception exp) {
+                succes = handle(exp);
+            }
+        }
+        EventManager.fire(Processing.DONE, this);
+        return result;
+    }
+
+    /**
+     * Combine server events that are fired within the window (in ms) or until max events are gathered into one server request. A window of
+     * 0 or less turns batching off (default).
+     */
+    public void setEventBatching(long windowMillis, int maxEvents) {
+
+        EventBatcher oldBatcher = eventBatcher;
+        eventBatcher = windowMillis > 0 && maxEvents > 1 ? new EventBatcher(windowMillis, maxEvents) : null;
+        if (oldBatcher != null) {
+            oldBatcher.shutdown();
+        }
+    }
+
+    public boolean isStreamUpdates() {
+        return streamUpdates;
+    }
+
+    /**
+     * Put the items in the maps while the update is read instead of reading the complete update first (default true).
+     */
+    public void setStreamUpdates(boolean streamUpdates) {
+        this.streamUpdates = streamUpdates;
+    }
+
+    /**
+     * Scheduler this connection runs on, null when it has its own threads.
+     */
+    public ConnectionScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public UpdateTransport getUpdateTransport() {
+        return updateTransport;
+    }
+
+    /**
+     * Set the way updates are received from the server, e.g. LongPollUpdateTransport. Default is polling, unsupported transports fall back
+     * to polling with the same compact and format when the server supports it.
+     */
+    public void setUpdateTransport(UpdateTransport updateTransport) {
+        this.updateTransport = updateTransport == null ? new PollingUpdateTransport() : updateTransport;
+    }
+
+    /**
+     * Set the max amount of server commands that are executed at the same time, default 1 (all commands in order).
+     */
+    public void setMaxCommandsInFlight(int maxCommands) {
+
+        if (maxCommands < 1) {
+            TLogger.severe("Max commands in flight must be at least 1, not " + maxCommands + ".");
+            return;
+        }
+        commandQueue.setLimit(maxCommands);
+    }
+
     protected void setMyStakeholder(final Item[] items) {
 
         if (!StringUtils.containsData(clientToken)) {
@@ -784,11 +1293,66 @@ public class SlotConnection {
         return slotID;
     }
 
+    /**
+     * Execute the command after the previous commands with the same keys are done, or with one command in flight after all previous
+     * commands are done.
+     */
+    private <T> CompletableFuture<T> submitCommand(Collection<Object> keys, Callable<T> command) {
+
+        Supplier<T> supplier = () -> {
+            try {
+                return command.call();
+            } catch (Exception exp) {
+                throw new CompletionException(exp);
+            }
+        };
+
+        synchronized (commandTails) {
+            CompletableFuture<?> previous;
+            if (commandQueue.getLimit() <= 1) {
+                /**
+                 * First in first out: the tail of each key is done after all commands before it with that key.
+                 */
+                previous = commandTails.isEmpty() ? null : CompletableFuture.allOf(commandTails.values().toArray(
+                        new CompletableFuture<?>[commandTails.size()]));
+            } else {
+                List<CompletableFuture<?>> tails = new ArrayList<>();
+                for (Object key : keys) {
+                    CompletableFuture<?> tail = commandTails.get(key);
+                    if (tail != null) {
+                        tails.add(tail);
+                    }
+                }
+                previous = tails.isEmpty() ? null : tails.size() == 1 ? tails.get(0) : CompletableFuture.allOf(tails.toArray(
+                        new CompletableFuture<?>[tails.size()]));
+            }
+            CompletableFuture<T> future = previous == null ? CompletableFuture.supplyAsync(supplier, commandQueue) : previous.handleAsync(
+                    (result, exp) -> supplier.get(), commandQueue);
+            for (Object key : keys) {
+                commandTails.put(key, future);
+            }
+
+            // cleanup when nothing is chained after me
+            future.whenComplete((result, exp) -> {
+                synchronized (commandTails) {
+                    for (Object key : keys) {
+                        commandTails.remove(key, future);
+                    }
+                }
+            });
+            return future;
+        }
+    }
+
     private void startUpdater() {
         // start updating the client
         updater = new Updater(updaterThreadCounter);
         updaterThreadCounter++;
-        updater.start();
+        if (scheduler != null) {
+            scheduler.startUpdater(updater);
+        } else {
+            updater.start();
+        }
     }
 
     private void updateServerTimeDiff() {
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.PolygonItem;
+import nl.tytech.core.structure.ClientItemMap;
+import nl.tytech.data.core.item.Item;
+
+/**
+ * SpatialIndex
+ * <p>
+ * Quadtree of the {@link PolygonItem}s in one map of a Status, keyed by the envelope of their QT MultiPolygons. The Status marks the items
+ * of each received update as changed and only those are put in the tree again on the next query, so a query costs a tree lookup instead of
+ * a scan over the complete map.
+ * <p>
+ * A quadtree is used instead of a STR-tree because items are removed and added after it is built.
+ *
+ * @author Maxim Knepfle
+ */
+public class SpatialIndex<I extends Item> {
+
+    private final static class Entry {
+
+        private final Item item;
+
+        private final Envelope envelope;
+
+        private Entry(Item item, Envelope envelope) {
+            this.item = item;
+            this.envelope = envelope;
+        }
+    }
+
+    private final Status status;
+
+    private final MapLink mapLink;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    /**
+     * ID's of the items that changed since the last query.
+     */
+    private final Set<Integer> changed = new HashSet<>();
+
+    private Quadtree tree = new Quadtree();
+
+    private boolean rebuild = true;
+
+    SpatialIndex(Status status, MapLink mapLink) {
+        this.status = status;
+        this.mapLink = mapLink;
+    }
+
+    private void add(Item item) {
+
+        if (!(item instanceof PolygonItem)) {
+            return;
+        }
+        MultiPolygon[] multiPolygons = ((PolygonItem) item).getQTMultiPolygons();
+        if (multiPolygons == null) {
+            return;
+        }
+        Envelope envelope = new Envelope();
+        for (MultiPolygon multiPolygon : multiPolygons) {
+            if (multiPolygon != null) {
+                envelope.expandToInclude(multiPolygon.getEnvelopeInternal());
+            }
+        }
+        if (envelope.isNull()) {
+            return;
+        }
+        Entry entry = new Entry(item, envelope);
+        entries.put(item.getID(), entry);
+        tree.insert(envelope, entry);
+    }
+
+    public MapLink getMapLink() {
+        return mapLink;
+    }
+
+    /**
+     * Items of which the QT MultiPolygons intersect the geometry.
+     */
+    public List<I> intersecting(Geometry geometry) {
+
+        List<I> result = new ArrayList<>();
+        if (geometry == null || geometry.isEmpty()) {
+            return result;
+        }
+        PreparedGeometry prepared = null;
+        for (I item : query(geometry.getEnvelopeInternal())) {
+            if (prepared == null) {
+                prepared = PreparedGeometryFactory.prepare(geometry);
+            }
+            for (MultiPolygon multiPolygon : ((PolygonItem) item).getQTMultiPolygons()) {
+                if (multiPolygon != null && prepared.intersects(multiPolygon)) {
+                    result.add(item);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called by the Status after the changed items are put in its map.
+     */
+    final synchronized void itemsChanged(Collection<Integer> ids) {
+        if (!rebuild) {
+            changed.addAll(ids);
+        }
+    }
+
+    /**
+     * Items of which the envelope intersects the given envelope.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<I> query(Envelope envelope) {
+
+        update();
+        List<I> result = new ArrayList<>();
+        for (Object candidate : tree.query(envelope)) {
+            // quadtree also returns entries of nearby nodes
+            Entry entry = (Entry) candidate;
+            if (entry.envelope.intersects(envelope)) {
+                result.add((I) entry.item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build the tree again on the next query, e.g. after a map reset.
+     */
+    final synchronized void reset() {
+        rebuild = true;
+        changed.clear();
+    }
+
+    public synchronized int size() {
+        update();
+        return entries.size();
+    }
+
+    private void update() {
+
+        ClientItemMap<Item> map = status.maps.get(mapLink);
+        if (rebuild) {
+            tree = new Quadtree();
+            entries.clear();
+            changed.clear();
+            rebuild = false;
+            if (map != null) {
+                for (Item item : map) {
+                    add(item);
+                }
+            }
+            return;
+        }
+        for (Integer id : changed) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                tree.remove(entry.envelope, entry);
+            }
+            Item item = map == null ? null : map.get(id);
+            if (item != null) {
+                add(item);
+            }
+        }
+        changed.clear();
+    }
+}
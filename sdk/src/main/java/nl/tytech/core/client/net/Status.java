@@ -7,14 +7,18 @@ package nl.tytech.core.client.net;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import nl.tytech.core.client.concurrent.ParallelUpdatable;
 import nl.tytech.core.client.concurrent.SliceManager;
 import nl.tytech.core.client.concurrent.UpdateManager;
 import nl.tytech.core.client.event.EventManager;
 import nl.tytech.core.client.event.EventManager.ItemManipulationEventType;
-import nl.tytech.core.client.net.SlotConnection.Updater;
+import nl.tytech.core.client.event.ItemChangeSet;
 import nl.tytech.core.event.Event;
 import nl.tytech.core.net.Lord;
 import nl.tytech.core.net.Network;
@@ -42,6 +46,189 @@ import nl.tytech.util.logger.TLogger;
  */
 public class Status implements Lord, ParallelUpdatable {
 
+    /**
+     * Applies the items of an update to the maps, one map at a time. Each map is copied once (only changed paths), filled and then put
+     * back so other threads never see a half updated map.
+     */
+    private class UpdateApplier implements UpdateResultReader.ItemHandler {
+
+        /**
+         * Only collect the deltas when someone listens to them.
+         */
+        private final Map<MapLink, ItemChangeSet<Item>> changeSets = EventManager.hasListeners(ItemManipulationEventType.CHANGED_ITEMS)
+                ? new HashMap<>() : null;
+
+        /**
+         * Items of all finished maps, when streamed the items are collected here for the events.
+         */
+        private final UpdateResult applied;
+
+        private final boolean collect;
+
+        private MapLink type = null;
+
+        private boolean deletes = false;
+
+        private ClientItemMap<Item> map = null;
+
+        private ItemChangeSet<Item> changeSet = null;
+
+        /**
+         * Previous and new item of each change in the map, registered in the change set when the map is put back.
+         */
+        private List<Item[]> changes = null;
+
+        private List<Item> items = null;
+
+        private int deleteVersion = 0;
+
+        /**
+         * Spatial index of the map that is applied, null when nobody uses it.
+         */
+        private SpatialIndex<?> spatialIndex = null;
+
+        private List<Integer> changedIDs = null;
+
+        private boolean reset = false;
+
+        private UpdateApplier(UpdateResult applied, boolean collect) {
+            this.applied = applied;
+            this.collect = collect;
+        }
+
+        private void apply(Map<String, Item[]> updates, boolean deletes) {
+
+            for (Entry<String, Item[]> entry : updates.entrySet()) {
+                if (entry.getValue() != null) {
+                    startMap(MapLink.valueOf(entry.getKey()), deletes);
+                    for (Item item : entry.getValue()) {
+                        item(item);
+                    }
+                    endMap();
+                }
+            }
+        }
+
+        @Override
+        public void endMap() {
+
+            // map keeps track of its highest version, no need to scan
+            maps.put(type, map, deletes ? deleteVersion : map.getVersion());
+            updated = true;
+
+            // only register the changes of a map that is put back
+            if (changeSet != null) {
+                for (Item[] change : changes) {
+                    if (deletes) {
+                        changeSet.itemDeleted(change[0], change[1]);
+                    } else {
+                        changeSet.itemUpdated(change[0], change[1]);
+                    }
+                }
+            }
+
+            // index follows the map that is now visible
+            if (spatialIndex != null) {
+                if (reset) {
+                    spatialIndex.reset();
+                } else {
+                    spatialIndex.itemsChanged(changedIDs);
+                }
+            }
+            // index made during this map may be built from the old map, build it again
+            SpatialIndex<?> current = spatialIndexes.get(type);
+            if (current != null && current != spatialIndex) {
+                current.reset();
+            }
+
+            if (collect) {
+                Map<String, Item[]> target = deletes ? applied.getDeletes() : applied.getItems();
+                Item[] previous = target.get(type.name());
+                if (previous != null) {
+                    // same map received again after a retry, the newer item wins
+                    Map<Integer, Item> merged = new LinkedHashMap<>();
+                    for (Item item : previous) {
+                        merged.put(item.getID(), item);
+                    }
+                    for (Item item : items) {
+                        merged.put(item.getID(), item);
+                    }
+                    items = new ArrayList<>(merged.values());
+                }
+                target.put(type.name(), items.toArray(new Item[items.size()]));
+            }
+            map = null;
+            changeSet = null;
+            changes = null;
+            items = null;
+            spatialIndex = null;
+            changedIDs = null;
+        }
+
+        /**
+         * Get the change set of the list, only when change sets are requested.
+         */
+        private ItemChangeSet<Item> getChangeSet(MapLink type) {
+
+            if (changeSets == null) {
+                return null;
+            }
+            ItemChangeSet<Item> changeSet = changeSets.get(type);
+            if (changeSet == null) {
+                changeSet = new ItemChangeSet<>(type, maps.get(type));
+                changeSets.put(type, changeSet);
+            }
+            return changeSet;
+        }
+
+        @Override
+        public void item(Item item) {
+
+            if (deletes) {
+                Item removed = map.remove(item.getID());
+                if (changes != null && !DeletedItem.MAP_RESET.equals(item.getID())) {
+                    changes.add(new Item[] { removed, item });
+                }
+                // version update
+                if (deleteVersion < item.getVersion()) {
+                    deleteVersion = item.getVersion();
+                }
+                if (DeletedItem.MAP_RESET.equals(item.getID())) {
+                    reset = true;
+                }
+            } else {
+                // add status
+                item.setLord(Status.this);
+                Item old = map.put(item.getID(), item);
+                if (changes != null) {
+                    changes.add(new Item[] { old, item });
+                }
+            }
+            if (changedIDs != null) {
+                changedIDs.add(item.getID());
+            }
+            if (collect) {
+                items.add(item);
+            }
+        }
+
+        @Override
+        public void startMap(MapLink type, boolean deletes) {
+
+            this.type = type;
+            this.deletes = deletes;
+            this.deleteVersion = 0;
+            // create a new map to prevent concurrent modifications, items are shared so only the changed paths are copied.
+            this.map = new ClientItemMap<>(maps.get(type));
+            this.changeSet = getChangeSet(type);
+            this.changes = changeSet != null ? new ArrayList<>() : null;
+            this.items = collect ? new ArrayList<>() : null;
+            this.spatialIndex = spatialIndexes.get(type);
+            this.changedIDs = spatialIndex != null ? new ArrayList<>() : null;
+            this.reset = false;
+        }
+    }
+
     private final static float SIMTIME_UPDATE_PERIOD = 1;
 
     private Integer connectionID = Item.NONE;
@@ -71,6 +258,11 @@ public class Status implements Lord, ParallelUpdatable {
      */
     private volatile boolean fireEvents = true;
 
+    /**
+     * Applier of the update that is currently streamed in.
+     */
+    private UpdateApplier streamApplier = null;
+
     /**
      * Local versions to be sent to the server for comparison. This is cached.
      */
@@ -94,6 +286,16 @@ public class Status implements Lord, ParallelUpdatable {
 
     private String projectName = null;
 
+    /**
+     * Thread that runs the step of the Updater, its own thread or a thread of the ConnectionScheduler.
+     */
+    private final AtomicReference<Thread> updaterThread = new AtomicReference<>();
+
+    /**
+     * Spatial indexes of the polygon maps, created on first request.
+     */
+    private final Map<MapLink, SpatialIndex<?>> spatialIndexes = new ConcurrentHashMap<>();
+
     /**
      * Construct a Status object.
      *
@@ -142,6 +344,13 @@ public class Status implements Lord, ParallelUpdatable {
         }
     }
 
+    private void fireChangeSetEvent(final ItemChangeSet<Item> changeSet) {
+
+        if (fireEvents && !changeSet.isEmpty()) {
+            EventManager.fire(connectionID, ItemManipulationEventType.CHANGED_ITEMS, this, changeSet.getMapLink(), changeSet);
+        }
+    }
+
     private <I extends Item> void fireListUpdateEvent(final MapLink type, final I[] argUpdatedList) {
 
         if (type == null) {
@@ -180,6 +389,14 @@ public class Status implements Lord, ParallelUpdatable {
         return map;
     }
 
+    /**
+     * Spatial index of the polygon items in the map, kept up to date with the received updates.
+     */
+    @SuppressWarnings("unchecked")
+    public <I extends Item> SpatialIndex<I> getSpatialIndex(MapLink type) {
+        return (SpatialIndex<I>) spatialIndexes.computeIfAbsent(type, mapLink -> new SpatialIndex<>(this, mapLink));
+    }
+
     public String getProjectName() {
         return this.projectName;
     }
@@ -199,13 +416,13 @@ public class Status implements Lord, ParallelUpdatable {
     }
 
     /**
-     * ONLY the Updater thread may call this method! Get the version request with the total version and per list version.
+     * ONLY the Updater may call this method, during its step! Get the version request with the total version and per list version.
      *
      * @return Version request.
      */
     protected final HashMap<MapLink, Integer> getVersionRequest() {
 
-        if (!(Thread.currentThread() instanceof Updater)) {
+        if (Thread.currentThread() != updaterThread.get()) {
             TLogger.severe("Only the updater thread may call this method!");
             return null;
         }
@@ -221,6 +438,18 @@ public class Status implements Lord, ParallelUpdatable {
         return versionRequest;
     }
 
+    /**
+     * Handler that puts the items in the maps while the update is streamed in, finished by calling updateVersions(). When the previous
+     * stream failed halfway the same handler continues.
+     */
+    protected final synchronized UpdateResultReader.ItemHandler getStreamHandler() {
+
+        if (streamApplier == null) {
+            streamApplier = new UpdateApplier(new UpdateResult(), true);
+        }
+        return streamApplier;
+    }
+
     private void interpolateSimTime() {
 
         synchronized (Status.this) {
@@ -251,22 +480,18 @@ public class Status implements Lord, ParallelUpdatable {
         return false;
     }
 
-    private <I extends Item> void removeFromMap(final MapLink type, final I[] update) {
-
-        if (update != null) {
-            // create a new map to prevent concurrent modifications.
-            ClientItemMap<Item> map = new ClientItemMap<>(maps.get(type));
-            int version = 0;
+    /**
+     * Called by the Updater when its step ends, a zombie updater does not clear the thread of the new one.
+     */
+    final void endUpdaterStep() {
+        updaterThread.compareAndSet(Thread.currentThread(), null);
+    }
 
-            for (I item : update) {
-                map.remove(item.getID());
-                // version update
-                if (version < item.getVersion()) {
-                    version = item.getVersion();
-                }
-            }
-            maps.put(type, map, version);
-        }
+    /**
+     * Called by the Updater when its step starts on the current thread.
+     */
+    final void startUpdaterStep() {
+        updaterThread.set(Thread.currentThread());
     }
 
     /**
@@ -282,6 +507,9 @@ public class Status implements Lord, ParallelUpdatable {
         for (MapLink mapLink : DataLord.getAppTypes(sessionType, appType)) {
             this.maps.put(mapLink, new ClientItemMap());
         }
+        for (SpatialIndex<?> spatialIndex : spatialIndexes.values()) {
+            spatialIndex.reset();
+        }
     }
 
     /**
@@ -302,33 +530,6 @@ public class Status implements Lord, ParallelUpdatable {
         }
     }
 
-    /**
-     * Update a specific list.
-     *
-     * @param type The list type to update.
-     * @param update The updated items.
-     */
-
-    private void updateMap(final MapLink type, final Item[] update) {
-
-        if (update != null) {
-            // create a new map to prevent concurrent modifications.
-            ClientItemMap<Item> map = new ClientItemMap<>(maps.get(type));
-            int version = 0;
-            for (Item item : update) {
-                // add status
-                item.setLord(this);
-                map.put(item.getID(), item);
-
-                // version update
-                if (version < item.getVersion()) {
-                    version = item.getVersion();
-                }
-            }
-            maps.put(type, map, version);
-        }
-    }
-
     @Override
     public void updateParallel(float tpf) {
 
@@ -347,29 +548,45 @@ public class Status implements Lord, ParallelUpdatable {
      * @param serverVersion
      */
     @SuppressWarnings("unchecked")
-    protected synchronized <I extends Item> void updateVersions(final SlotConnection connection, final UpdateResult serverVersion) {
+    protected synchronized <I extends Item> void updateVersions(final SlotConnection connection, UpdateResult serverVersion) {
 
         this.connectionID = connection.getID();
 
+        UpdateApplier applier = streamApplier;
+        streamApplier = null;
+
         try {
+            if (applier != null) {
+                // items are already in the maps, use all that was applied (also before a retry)
+                if (serverVersion != null) {
+                    applier.applied.setTimeStamp(serverVersion.getTimeStamp());
+                }
+                if (serverVersion != null || !applier.applied.getItems().isEmpty() || !applier.applied.getDeletes().isEmpty()) {
+                    serverVersion = applier.applied;
+                }
+
+            } else if (serverVersion != null) {
+                applier = new UpdateApplier(serverVersion, false);
+                applier.apply(serverVersion.getItems(), false);
+                applier.apply(serverVersion.getDeletes(), true);
+            }
+
             if (serverVersion != null) {
                 updated = true;
 
                 // update the lists
                 MapLink[] mapLinks = DataLord.getAppTypes(sessionType, appType);
+                final Map<MapLink, ItemChangeSet<Item>> changeSets = applier.changeSets;
+                final UpdateResult result = serverVersion;
 
-                for (Entry<String, Item[]> entry : serverVersion.getItems().entrySet()) {
-                    MapLink mapLink = MapLink.valueOf(entry.getKey());
-                    updateMap(mapLink, entry.getValue());
-                }
-
-                for (Entry<String, Item[]> entry : serverVersion.getDeletes().entrySet()) {
-                    MapLink mapLink = MapLink.valueOf(entry.getKey());
-                    removeFromMap(mapLink, entry.getValue());
+                if (changeSets != null) {
+                    for (ItemChangeSet<Item> changeSet : changeSets.values()) {
+                        changeSet.setAfter(maps.get(changeSet.getMapLink()));
+                    }
                 }
 
                 // set my stakeholder and time first!
-                for (Entry<String, Item[]> entry : serverVersion.getItems().entrySet()) {
+                for (Entry<String, Item[]> entry : result.getItems().entrySet()) {
                     MapLink mapLink = MapLink.valueOf(entry.getKey());
                     if (mapLink.equals(MapLink.STAKEHOLDERS)) {
                         connection.setMyStakeholder(entry.getValue());
@@ -378,7 +595,7 @@ public class Status implements Lord, ParallelUpdatable {
                     }
                 }
 
-                SliceManager.exec(() -> {
+                SliceManager.exec(connectionID, () -> {
                     if (firstTime && fireEvents) {
                         EventManager.fire(connectionID, ConnectionEvent.FIRST_UPDATE_STARTED, this);
                     }
@@ -387,8 +604,8 @@ public class Status implements Lord, ParallelUpdatable {
                     // fire events
                     for (int i = 0; i < mapLinks.length; i++) {
                         MapLink type = mapLinks[i];
-                        Item[] update = serverVersion.getItems().get(type.name());
-                        Item[] deleted = serverVersion.getDeletes().get(type.name());
+                        Item[] update = result.getItems().get(type.name());
+                        Item[] deleted = result.getDeletes().get(type.name());
 
                         // fire event when updated and when items are deleted
                         if (firstTime || update != null || deleted != null) {
@@ -398,6 +615,10 @@ public class Status implements Lord, ParallelUpdatable {
                         if (deleted != null) {
                             fireListDeleteEvent(type, (I[]) deleted);
                         }
+                        // opt-in delta event
+                        if (changeSets != null && changeSets.containsKey(type)) {
+                            fireChangeSetEvent(changeSets.get(type));
+                        }
                     }
                     firstTime = false;
                 });
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.util.JsonMapper;
+import nl.tytech.util.RestManager.Format;
+
+/**
+ * UpdateResultReader
+ * <p>
+ * Reads an UpdateResult token by token and hands every item to the handler as soon as it is parsed, so maps can be filled while the rest
+ * of the (large) update is still being downloaded. The returned UpdateResult holds the same item objects for the update events.
+ * </p>
+ * @author Maxim Knepfle
+ */
+public final class UpdateResultReader {
+
+    /**
+     * Receives the items of one map between startMap() and endMap().
+     */
+    public interface ItemHandler {
+
+        public void endMap();
+
+        public void item(Item item);
+
+        public void startMap(MapLink mapLink, boolean deletes);
+    }
+
+    private final static String ITEMS = "items";
+
+    private final static String DELETES = "deletes";
+
+    private final static String TIME_STAMP = "timeStamp";
+
+    public static UpdateResult read(Format format, InputStream inputStream, ItemHandler handler) throws IOException {
+
+        ObjectMapper mapper = JsonMapper.getMapper(format);
+        ObjectReader itemReader = mapper.readerFor(Item.class);
+        UpdateResult result = new UpdateResult();
+
+        try (JsonParser parser = mapper.getFactory().createParser(inputStream)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                // empty reply
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (ITEMS.equals(field)) {
+                    readMaps(parser, itemReader, result.getItems(), false, handler);
+                } else if (DELETES.equals(field)) {
+                    readMaps(parser, itemReader, result.getDeletes(), true, handler);
+                } else if (TIME_STAMP.equals(field)) {
+                    result.setTimeStamp(parser.getLongValue());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void readMaps(JsonParser parser, ObjectReader itemReader, Map<String, Item[]> target, boolean deletes,
+            ItemHandler handler) throws IOException {
+
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            MapLink mapLink = MapLink.valueOf(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+
+            // typed JSON wraps the array in an object with its type as field name
+            boolean wrapped = token == JsonToken.START_OBJECT;
+            if (wrapped) {
+                parser.nextToken();
+                token = parser.nextToken();
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected item array for " + mapLink + ", found: " + token);
+            }
+
+            List<Item> items = new ArrayList<>();
+            handler.startMap(mapLink, deletes);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                Item item = itemReader.readValue(parser);
+                items.add(item);
+                handler.item(item);
+            }
+            handler.endMap();
+
+            if (wrapped) {
+                parser.nextToken();
+            }
+            target.put(mapLink.name(), items.toArray(new Item[items.size()]));
+        }
+    }
+
+    private UpdateResultReader() {
+
+    }
+}
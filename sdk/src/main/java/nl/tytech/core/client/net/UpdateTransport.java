@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.client.net;
+
+import java.util.HashMap;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.util.RestManager.ResponseException;
+
+/**
+ * UpdateTransport
+ * <p>
+ * Way the client receives item updates from the server. The Updater thread keeps calling fetchUpdate() with the local versions and applies
+ * the result.
+ * </p>
+ * @author Maxim Knepfle
+ */
+public interface UpdateTransport {
+
+    /**
+     * Returns the items newer than the given local versions, or null when nothing changed. When a handler is given the items are passed to
+     * it while they are read.
+     */
+    public UpdateResult fetchUpdate(String connectionTarget, HashMap<MapLink, Integer> versions, UpdateResultReader.ItemHandler handler)
+            throws ResponseException;
+
+    /**
+     * Name used in logging.
+     */
+    public String getName();
+
+    /**
+     * When true the transport is not supported by the server and the connection falls back to polling.
+     */
+    public boolean isUnsupported(ResponseException exp);
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.event;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import com.vividsolutions.jts.geom.Geometry;
+import nl.tytech.data.core.item.CodedEvent;
+import nl.tytech.util.ObjectUtils;
+import nl.tytech.util.color.TColor;
+
+/**
+ * EventArgumentCopier
+ * <p>
+ * Copies the arguments of a server event before they are sent, so the caller can change its objects afterwards. Immutable arguments
+ * (Strings, numbers, enums, colors and geometries) are not copied, arrays and CodedEvents are copied per element. Only other classes are
+ * deep copied with Java serialization, which is slow for large objects.
+ * <p>
+ * Geometries are treated as values like everywhere else in the event code: they are not changed after they are fired.
+ *
+ * @author Maxim Knepfle
+ */
+public class EventArgumentCopier {
+
+    private final static UnaryOperator<Object> IMMUTABLE = object -> object;
+
+    private final static UnaryOperator<Object> SERIALIZED = ObjectUtils::deepCopy;
+
+    private final static UnaryOperator<Object> CODED_EVENT = object -> copyCodedEvent((CodedEvent) object);
+
+    private final static UnaryOperator<Object> PRIMITIVE_ARRAY = EventArgumentCopier::copyPrimitiveArray;
+
+    private final static UnaryOperator<Object> OBJECT_ARRAY = object -> copyArray((Object[]) object);
+
+    /**
+     * Copier per argument class, filled on first use.
+     */
+    private final static Map<Class<?>, UnaryOperator<Object>> copiers = new ConcurrentHashMap<>();
+
+    /**
+     * Copy of the argument.
+     */
+    @SuppressWarnings("unchecked")
+    public final static <T> T copy(final T argument) {
+
+        if (argument == null) {
+            return null;
+        }
+        return (T) copiers.computeIfAbsent(argument.getClass(), EventArgumentCopier::createCopier).apply(argument);
+    }
+
+    /**
+     * Copy of the arguments array, with each argument copied.
+     */
+    @SuppressWarnings("unchecked")
+    public final static <T> T[] copyArray(final T[] arguments) {
+
+        if (arguments == null) {
+            return null;
+        }
+        T[] result = (T[]) Array.newInstance(arguments.getClass().getComponentType(), arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            result[i] = copy(arguments[i]);
+        }
+        return result;
+    }
+
+    private final static CodedEvent copyCodedEvent(CodedEvent codedEvent) {
+
+        List<Object> parameters = new ArrayList<>(codedEvent.getParameters().size());
+        for (Object parameter : codedEvent.getParameters()) {
+            parameters.add(copy(parameter));
+        }
+        CodedEvent result = new CodedEvent(parameters);
+        result.setID(codedEvent.getID());
+        return result;
+    }
+
+    private final static Object copyPrimitiveArray(Object array) {
+
+        int length = Array.getLength(array);
+        Object result = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    private final static UnaryOperator<Object> createCopier(Class<?> classz) {
+
+        if (classz == String.class || classz == Boolean.class || classz == Character.class || (Number.class.isAssignableFrom(classz)
+                && classz.getName().startsWith("java.lang.")) || classz.isEnum() || Enum.class.isAssignableFrom(classz)
+                || classz == TColor.class || Geometry.class.isAssignableFrom(classz)) {
+            return IMMUTABLE;
+        }
+        if (classz.isArray()) {
+            return classz.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        }
+        if (classz == CodedEvent.class) {
+            return CODED_EVENT;
+        }
+        return SERIALIZED;
+    }
+}
@@ -4,8 +4,11 @@
  ******************************************************************************/
 package nl.tytech.core.event;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import nl.tytech.core.event.Event.EventTypeEnum;
 import nl.tytech.core.net.Lord;
 import nl.tytech.core.net.serializable.ItemID;
@@ -21,6 +24,58 @@ import nl.tytech.util.logger.TLogger;
  */
 public class EventValidationUtils {
 
+    /**
+     * Checks one event parameter, null parameters are always valid.
+     */
+    @FunctionalInterface
+    private interface ParameterChecker {
+        boolean isValid(Object content);
+    }
+
+    /**
+     * Parameter checkers of one event type, made once from its classes.
+     */
+    private final static class ValidationPlan {
+
+        private final List<Class<?>> classes;
+
+        private final ParameterChecker[] checkers;
+
+        private ValidationPlan(EventTypeEnum type) {
+
+            List<Class<?>> typeClasses = type.getClasses();
+            this.classes = typeClasses == null ? null : new ArrayList<>(typeClasses);
+            this.checkers = new ParameterChecker[classes == null ? 0 : classes.size()];
+            for (int i = 0; i < checkers.length; i++) {
+                checkers[i] = createChecker(classes.get(i));
+            }
+        }
+    }
+
+    /**
+     * System property to validate all local events in release mode too.
+     */
+    public final static String VALIDATE_ALL_PROPERTY = "tytech.event.validateall";
+
+    private final static Map<EventTypeEnum, ValidationPlan> plans = new ConcurrentHashMap<>();
+
+    private static volatile boolean boundaryOnly = false;
+
+    private static ParameterChecker createChecker(final Class<?> classz) {
+
+        if (classz == null) {
+            return content -> true;
+        }
+        if (classz == Double.class) {
+            // floats are auto converted to double
+            return content -> content.getClass() == Double.class || content instanceof Float;
+        }
+        if (Modifier.isFinal(classz.getModifiers()) && !classz.isArray()) {
+            return content -> content.getClass() == classz;
+        }
+        return content -> classz.isInstance(content);
+    }
+
     public static List<Object> convertCodedParams(CodedEvent codedEvent) {
 
         List<Object> event = codedEvent.getParameters();
@@ -121,21 +176,18 @@ public class EventValidationUtils {
 
     public static boolean validateEvent(EventTypeEnum type, Object[] params) {
 
-        List<Class<?>> classes = type.getClasses();
-        if (classes == null) {
+        ValidationPlan plan = plans.computeIfAbsent(type, ValidationPlan::new);
+        if (plan.classes == null) {
             TLogger.severe("Event of type " + type.getClass().getSimpleName() + "." + type + " is missing classes definition.");
             return false;
         }
 
-        if (classes.size() == 0 && params.length == 0) {
-            return true;
-        }
-
-        if (params.length != classes.size()) {
+        ParameterChecker[] checkers = plan.checkers;
+        if (params.length != checkers.length) {
             String contentClasses = "( ";
             boolean first = true;
 
-            for (Class<?> classz : classes) {
+            for (Class<?> classz : plan.classes) {
                 if (classz != null) {
                     if (!first) {
                         contentClasses += ", ";
@@ -165,24 +217,31 @@ public class EventValidationUtils {
 
         for (int i = 0; i < params.length; i++) {
             Object content = params[i];
-            Class<?> classz = classes.get(i);
-            if (content != null && !classz.isAssignableFrom(content.getClass())) {
-
-                /**
-                 * Auto convert float to double
-                 */
-                if (content instanceof Float && classes.get(i).equals(Double.class)) {
-                    content = (double) ((Float) content).floatValue();
-                } else {
-                    TLogger.severe("Parameter " + i + " of event " + type.getClass().getSimpleName() + "." + type + " is of class "
-                            + content.getClass().getSimpleName() + ". Class " + classes.get(i).getSimpleName() + " is expected.");
-                    return false;
-                }
+            if (content != null && !checkers[i].isValid(content)) {
+                TLogger.severe("Parameter " + i + " of event " + type.getClass().getSimpleName() + "." + type + " is of class "
+                        + content.getClass().getSimpleName() + ". Class " + plan.classes.get(i).getSimpleName() + " is expected.");
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Validate an event fired on the local event bus. In release mode only events from the boundary (server, coded events in the project
+     * data) are validated, events fired by the client code itself are trusted.
+     */
+    public static boolean validateLocalEvent(Event event) {
+        return boundaryOnly || validateEvent(event.getType(), event.getContents());
+    }
+
+    /**
+     * Called when the run mode changes, in release mode only the events at the boundary are validated unless {@link #VALIDATE_ALL_PROPERTY}
+     * is set.
+     */
+    public static void setReleaseMode(boolean release) {
+        boundaryOnly = release && !Boolean.getBoolean(VALIDATE_ALL_PROPERTY);
+    }
+
     /**
      * Validate a list of events
      *
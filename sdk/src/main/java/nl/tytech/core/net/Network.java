@@ -210,6 +210,11 @@ public interface Network {
      */
     public final static int UPDATEFREQ = 500;
 
+    /**
+     * Max time the server holds a long poll update request, stays well below the lost connection time.
+     */
+    public final static int UPDATE_MAX_WAIT = UPDATEFREQ * 40;
+
     /**
      * The port that runs the Tygron Engine Server broadcast channel.
      */
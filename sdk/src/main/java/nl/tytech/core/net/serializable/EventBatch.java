@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.net.serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper class that sends multiple server events in one request, the server answers with the results in the same order.
+ * @author Maxim Knepfle
+ *
+ */
+public class EventBatch {
+
+    public static class BatchEvent {
+
+        /**
+         * Simple class name of the event type enum.
+         */
+        public String type;
+
+        public String name;
+
+        public Object[] params;
+    }
+
+    public List<BatchEvent> events = new ArrayList<>();
+}
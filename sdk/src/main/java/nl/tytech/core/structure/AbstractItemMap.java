@@ -17,6 +17,11 @@ import nl.tytech.data.core.item.Item;
  */
 public abstract class AbstractItemMap<I extends Item> implements ItemMap<I> {
 
+    @Override
+    public I get(int id) {
+        return get(Integer.valueOf(id));
+    }
+
     @Override
     public <IE extends EnumOrderedItem<T>, T extends Enum<T>> List<I> getEnumItems(Iterable<T> requestEnums) {
 
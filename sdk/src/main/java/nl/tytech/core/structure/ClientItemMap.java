@@ -4,10 +4,9 @@
  ******************************************************************************/
 package nl.tytech.core.structure;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import nl.tytech.data.core.item.EnumOrderedItem;
 import nl.tytech.data.core.item.Item;
 import nl.tytech.util.logger.TLogger;
@@ -17,13 +16,36 @@ import nl.tytech.util.logger.TLogger;
  * <p>
  * Map containing the items and their versions on the client side.
  * <p>
+ * The items are stored in a persistent {@link ItemTrie}: copying a map shares all items with the old map and each put or remove only
+ * copies the path to the changed ID. This keeps older copies as an unchanged snapshot for readers. Dense ID ranges are stored as plain
+ * arrays, use {@link #get(int)} to look them up without boxing.
+ * <p>
+ * Item ID's are 0 or higher, a put with a null or negative ID is refused. An ID put with a null item stays in the map with a null value
+ * until it is removed.
+ * <p>
  *
  *
  * @author Maxim Knepfle
  */
 public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements Collection<I> {
 
-    private SortedMap<Integer, I> map = new TreeMap<Integer, I>();
+    private ItemTrie<I> trie = ItemTrie.empty();
+
+    /**
+     * Live view on the values of the trie.
+     */
+    private final Collection<I> values = new AbstractCollection<I>() {
+
+        @Override
+        public Iterator<I> iterator() {
+            return trie.iterator();
+        }
+
+        @Override
+        public int size() {
+            return trie.size();
+        }
+    };
 
     /**
      * When this is an enum map it is based on this enum class type.
@@ -40,13 +62,14 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
     }
 
     public ClientItemMap(ClientItemMap<I> oldMap) {
-        map = new TreeMap<>(oldMap.map);
+        // no copy needed, the trie is never changed
+        trie = oldMap.trie;
     }
 
     @Override
     public boolean add(I item) {
 
-        return map.put(this.size(), item) != null;
+        return this.put(this.size(), item) != null;
     }
 
     @Override
@@ -67,7 +90,7 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
     @Override
     public boolean contains(Object value) {
 
-        return map.containsValue(value);
+        return values.contains(value);
     }
 
     @Override
@@ -79,7 +102,7 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
     @Override
     public boolean containsKey(Integer id) {
 
-        return map.containsKey(id);
+        return id != null && trie.containsKey(id.intValue());
     }
 
     /**
@@ -93,7 +116,7 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
 
         // get first item and check if this is an enum ordered item.
         if (enumOrdered == null) {
-            for (I item : map.values()) {
+            for (I item : values) {
                 if (item != null) {
                     if (item instanceof EnumOrderedItem) {
                         enumType = ((EnumOrderedItem<?>) item).getType().getClass();
@@ -127,22 +150,25 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
         return this.get(enumerator.ordinal());
     }
 
+    @Override
+    public I get(int id) {
+
+        return trie.get(id);
+    }
+
     @Override
     public I get(Integer id) {
 
-        return map.get(id);
+        if (id == null) {
+            return null;
+        }
+        return trie.get(id.intValue());
     }
 
     @Override
     public int getVersion() {
-        // TODO: Maxim: not always calc this but store when adding items?
-        int maxVersion = 0;
-        for (Item item : this.values()) {
-            if (item.getVersion() > maxVersion) {
-                maxVersion = item.getVersion();
-            }
-        }
-        return maxVersion;
+        // highest version is kept up to date by the trie on put/remove
+        return trie.getVersion();
     }
 
     @Override
@@ -154,19 +180,30 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
     @Override
     public Iterator<I> iterator() {
 
-        return map.values().iterator();
+        return trie.iterator();
     }
 
     @Override
     public I put(Integer id, I item) {
 
-        return map.put(id, item);
+        if (id == null || id.intValue() < 0) {
+            TLogger.severe("Cannot put an item with ID " + id + " in an ItemMap.");
+            return null;
+        }
+        I oldItem = trie.get(id.intValue());
+        trie = trie.put(id.intValue(), item);
+        return oldItem;
     }
 
     @Override
     public I remove(Integer id) {
 
-        return map.remove(id);
+        if (id == null) {
+            return null;
+        }
+        I oldItem = trie.get(id.intValue());
+        trie = trie.remove(id.intValue());
+        return oldItem;
     }
 
     @Override
@@ -176,7 +213,7 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
             return false;
         }
         Item itemObject = (Item) item;
-        return map.remove(itemObject.getID()) != null;
+        return this.remove(itemObject.getID()) != null;
     }
 
     @Override
@@ -197,29 +234,25 @@ public class ClientItemMap<I extends Item> extends AbstractItemMap<I> implements
     @Override
     public final int size() {
 
-        // is 0
-        if (map.size() == 0) {
-            return 0;
-        }
-        // map can contain null's, lastkey is the size
-        return map.lastKey() + 1;
+        // map can contain null's, lastkey is the size (NONE when empty)
+        return trie.getLastKey() + 1;
     }
 
     @Override
     public Object[] toArray() {
 
-        return map.values().toArray();
+        return values.toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] arg) {
 
-        return map.values().toArray(arg);
+        return values.toArray(arg);
     }
 
     @Override
     public Collection<I> values() {
 
-        return map.values();
+        return values;
     }
 }
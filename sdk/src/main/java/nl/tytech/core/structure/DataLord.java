@@ -78,8 +78,12 @@ public class DataLord {
 
         List<Class<? extends EventTypeEnum>> classes = new ArrayList<>();
         for (Space space : Space.values()) {
-            List<String> classNames = PackageUtils.getPackageClassNames(PLATFORM_EVENT_LOCATION.replaceAll("SPACE", space.name()
-                    .toLowerCase()));
+            String packageName = getPackage(PLATFORM_EVENT_LOCATION, space);
+            // use build time index when available
+            List<String> classNames = ItemNamespaceIndex.getClassNames(packageName);
+            if (classNames == null) {
+                classNames = PackageUtils.getPackageClassNames(packageName);
+            }
             for (String className : classNames) {
                 try {
                     classes.add((Class<? extends EventTypeEnum>) Class.forName(className));
@@ -91,6 +95,24 @@ public class DataLord {
         return classes;
     }
 
+    /**
+     * Packages of the item namespace in load order: events, serializables and items per space.
+     */
+    final static List<String> getNamespacePackages() {
+
+        List<String> packages = new ArrayList<>();
+        for (Space space : Space.values()) {
+            packages.add(getPackage(PLATFORM_EVENT_LOCATION, space));
+            packages.add(getPackage(PLATFORM_SERIALIZABLE_LOCATION, space));
+            packages.add(getPackage(PLATFORM_ITEM_LOCATION, space));
+        }
+        return packages;
+    }
+
+    private final static String getPackage(String location, Space space) {
+        return location.replaceAll("SPACE", space.name().toLowerCase());
+    }
+
     public final static MapLink[] getSessionTypes(SessionType sessionType) {
         return SingletonHolder.INSTANCE._getSessionTypes(sessionType);
     }
@@ -242,15 +264,9 @@ public class DataLord {
                 // first time, setup game name
                 setupNamespace = true;
 
-                for (Space space : Space.values()) {
-                    if (!ItemNamespace.addPackageClasses(PLATFORM_EVENT_LOCATION.replaceAll("SPACE", space.name().toLowerCase()))) {
-                        TLogger.warning("A problem occurred while loading event classes.");
-                    }
-                    if (!ItemNamespace.addPackageClasses(PLATFORM_SERIALIZABLE_LOCATION.replaceAll("SPACE", space.name().toLowerCase()))) {
-                        TLogger.warning("A problem occurred while loading serializable classes.");
-                    }
-                    if (!ItemNamespace.addPackageClasses(PLATFORM_ITEM_LOCATION.replaceAll("SPACE", space.name().toLowerCase()))) {
-                        TLogger.warning("A problem occurred while loading item classes.");
+                for (String packageName : getNamespacePackages()) {
+                    if (!ItemNamespace.addPackageClasses(packageName)) {
+                        TLogger.warning("A problem occurred while loading classes from " + packageName + ".");
                     }
                 }
                 // XXX (Frank) Not the ideal solution yet!!
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.structure;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * FieldAccessor
+ * <p>
+ * Reads and writes one field of an ItemNamespace class through method handles made once when the namespace is loaded, instead of
+ * reflective Field access with its access checks on every call.
+ * <p>
+ * The handles are per field and thus not constant for the JIT, they cannot be turned into lambdas since LambdaMetafactory only accepts
+ * methods and constructors, not field getters and setters. FieldAccessorBenchmark (sdkext) compares both over all item classes.
+ *
+ * @author Maxim Knepfle
+ */
+public final class FieldAccessor {
+
+    private final static MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final static MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+
+    private final MethodHandle getter;
+
+    /**
+     * Null for final fields, they are set reflectively.
+     */
+    private final MethodHandle setter;
+
+    FieldAccessor(Field field) throws IllegalAccessException {
+
+        this.field = field;
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        MethodHandle setterHandle = null;
+        try {
+            setterHandle = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            // final field
+        }
+        this.setter = setterHandle;
+    }
+
+    /**
+     * Value of the field in the object, primitives are boxed.
+     */
+    public Object get(Object object) {
+
+        try {
+            return (Object) getter.invokeExact(object);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public void set(Object object, Object value) {
+
+        try {
+            if (setter == null) {
+                field.set(object, value);
+            } else {
+                setter.invokeExact(object, value);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return field.getDeclaringClass().getSimpleName() + "." + field.getName();
+    }
+}
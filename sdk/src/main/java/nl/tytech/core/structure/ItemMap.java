@@ -30,6 +30,14 @@ public interface ItemMap<I extends Item> extends Iterable<I> {
      */
     public I get(Integer id);
 
+    /**
+     * Get an item from the map using the primitive ID, does not box the key.
+     *
+     * @param id
+     * @return
+     */
+    public I get(int id);
+
     /**
      * Get an item from the map using the enum ordinal ID
      *
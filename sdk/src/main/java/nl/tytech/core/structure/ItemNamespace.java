@@ -6,6 +6,7 @@ package nl.tytech.core.structure;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -14,11 +15,14 @@ import java.util.Calendar;
 import java.util.EnumMap;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.MultiLineString;
 import com.vividsolutions.jts.geom.MultiPolygon;
@@ -35,6 +39,7 @@ import nl.tytech.core.net.event.IOServiceEventType;
 import nl.tytech.core.net.event.UserServiceEventType;
 import nl.tytech.core.net.serializable.ItemID;
 import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemNamespaceIndex.IndexedClass;
 import nl.tytech.data.core.item.CodedEvent;
 import nl.tytech.data.core.item.Item;
 import nl.tytech.util.ObjectUtils;
@@ -60,6 +65,61 @@ public class ItemNamespace {
         final private List<Field> allFields = new ArrayList<Field>();
         final private List<Field> xmlFields = new ArrayList<Field>();
         final private List<Field> editableFields = new ArrayList<Field>();
+
+        /**
+         * Accessors and default values, made on first use. Making it twice is harmless so no lock is needed.
+         */
+        private volatile FieldTable table = null;
+    }
+
+    /**
+     * Accessors of the fields of a class and the values of the fields in a new instance of the class.
+     */
+    private final static class FieldTable {
+
+        private final List<FieldAccessor> allAccessors = new ArrayList<>();
+        private final List<FieldAccessor> xmlAccessors = new ArrayList<>();
+        private final List<FieldAccessor> editableAccessors = new ArrayList<>();
+        private final Map<Field, FieldAccessor> accessors = new HashMap<>();
+        private final Map<Field, Object> defaultValues = new HashMap<>();
+
+        private FieldTable(Class<?> classz, FieldPair fieldPair) throws IllegalAccessException {
+
+            for (Field field : fieldPair.allFields) {
+                FieldAccessor accessor = new FieldAccessor(field);
+                accessors.put(field, accessor);
+                allAccessors.add(accessor);
+            }
+            for (Field field : fieldPair.xmlFields) {
+                xmlAccessors.add(accessors.get(field));
+            }
+            for (Field field : fieldPair.editableFields) {
+                editableAccessors.add(accessors.get(field));
+            }
+
+            // default values of a new instance
+            if (!Modifier.isAbstract(classz.getModifiers()) && !classz.isInterface()) {
+                try {
+                    Object newObject = classz.newInstance();
+                    for (FieldAccessor accessor : allAccessors) {
+                        defaultValues.put(accessor.getField(), accessor.get(newObject));
+                    }
+                } catch (Exception e) {
+                    TLogger.exception(e);
+                }
+            }
+        }
+
+        private List<FieldAccessor> getAccessors(Filter filter) {
+            switch (filter) {
+                case XML:
+                    return xmlAccessors;
+                case EDITABLE:
+                    return editableAccessors;
+                default:
+                    return allAccessors;
+            }
+        }
     }
 
     /**
@@ -130,6 +190,23 @@ public class ItemNamespace {
         return SingletonHolder.INSTANCE._getDefaultFieldValue(object, field);
     }
 
+    /**
+     * Returns the accessor of the field for the given class and name. When unknown it returns null.
+     */
+    public final static FieldAccessor getAccessor(final Class<?> classz, String fieldName) {
+        return SingletonHolder.INSTANCE._getAccessor(classz, fieldName);
+    }
+
+    /**
+     * Returns the field accessors of the given class, faster than reading the fields reflectively.
+     *
+     * @param classz
+     * @return
+     */
+    public final static List<FieldAccessor> getAccessors(final Class<?> classz, Filter filter) {
+        return SingletonHolder.INSTANCE._getAccessors(classz, filter);
+    }
+
     /**
      * Returns the field for the given class and name. When unknown it returns null.
      */
@@ -168,7 +245,15 @@ public class ItemNamespace {
         return SingletonHolder.INSTANCE._isLeaf(classz);
     }
 
-    private final Map<Field, Object> defaultObjects = new HashMap<>();
+    /**
+     * Stored for null default values, the map cannot hold null.
+     */
+    private final static Object NULL_VALUE = new Object();
+
+    /**
+     * Default values of fields that are not in a field table.
+     */
+    private final Map<Field, Object> defaultObjects = new ConcurrentHashMap<>();
 
     /**
      * Mapping of the XML fields.
@@ -268,6 +353,11 @@ public class ItemNamespace {
 
         // multiple games can use this
         synchronized (write) {
+            List<IndexedClass> indexedClasses = ItemNamespaceIndex.getClasses(packageName);
+            if (indexedClasses != null && addIndexedClasses(packageName, indexedClasses)) {
+                return true;
+            }
+
             List<String> classNames = PackageUtils.getPackageClassNames(packageName);
 
             for (String className : classNames) {
@@ -294,20 +384,7 @@ public class ItemNamespace {
                     return false;
                 }
             }
-            // only item namespace classes may be used for fields.
-            for (Class<?> classz : fields.keySet()) {
-                List<Field> classFields = _getFields(classz, Filter.ALL);
-                if (classFields != null) {
-                    for (Field field : classFields) {
-                        Class<?> fieldClass = field.getType();
-                        if (!reverse.containsKey(fieldClass)) {
-                            TLogger.showstopper(
-                                    "Failed to add class: " + classz.getSimpleName() + " to Item namespace. The field: " + field.getName()
-                                            + " has a class: " + fieldClass.getSimpleName() + " that is not in the Item namespace.");
-                        }
-                    }
-                }
-            }
+            validateFieldClasses(true);
             TLogger.info("Loaded " + classNames.size() + "\tClasses from: " + packageName);
         }
         return true;
@@ -366,19 +443,52 @@ public class ItemNamespace {
         return mapping.get(simpleName);
     }
 
-    private synchronized Object _getDefaultFieldValue(Object object, Field field) {
+    private final FieldAccessor _getAccessor(final Class<?> classz, String fieldName) {
+
+        final List<FieldAccessor> accessors = _getAccessors(classz, Filter.ALL);
+        if (accessors == null || fieldName == null || fieldName.equals(StringUtils.EMPTY)) {
+            return null;
+        }
+        for (FieldAccessor accessor : accessors) {
+            if (accessor.getName().equals(fieldName)) {
+                return accessor;
+            }
+        }
+        TLogger.severe(fieldName + " is unknown for class " + classz.getSimpleName());
+        return null;
+    }
+
+    private final List<FieldAccessor> _getAccessors(final Class<?> classz, Filter filter) {
+
+        if (!fields.containsKey(classz)) {
+            TLogger.severe(classz.getSimpleName() + " is unknown in Item namespace.");
+            return null;
+        }
+        FieldTable table = getFieldTable(classz);
+        return table == null ? null : table.getAccessors(filter);
+    }
+
+    private Object _getDefaultFieldValue(Object object, Field field) {
 
-        if (!defaultObjects.containsKey(field)) {
+        // precomputed table of the class
+        FieldTable table = fields.containsKey(object.getClass()) ? getFieldTable(object.getClass()) : null;
+        if (table != null && table.defaultValues.containsKey(field)) {
+            return table.defaultValues.get(field);
+        }
+
+        Object value = defaultObjects.get(field);
+        if (value == null) {
             try {
                 field.setAccessible(true);
                 Class<?> classz = object.getClass();
                 Object newObject = classz.newInstance();
-                defaultObjects.put(field, field.get(newObject));
+                value = field.get(newObject);
+                defaultObjects.put(field, value == null ? NULL_VALUE : value);
             } catch (Exception e) {
                 TLogger.exception(e);
             }
         }
-        return defaultObjects.get(field);
+        return value == NULL_VALUE ? null : value;
     }
 
     /**
@@ -432,6 +542,27 @@ public class ItemNamespace {
         return fields;
     }
 
+    /**
+     * Returns the field table of the class, made on first use. Null when the class has no fields (e.g. enums).
+     */
+    private final FieldTable getFieldTable(final Class<?> classz) {
+
+        FieldPair fieldPair = fields.get(classz);
+        if (fieldPair == null) {
+            return null;
+        }
+        FieldTable table = fieldPair.table;
+        if (table == null) {
+            try {
+                table = new FieldTable(classz, fieldPair);
+                fieldPair.table = table;
+            } catch (IllegalAccessException e) {
+                TLogger.exception(e);
+            }
+        }
+        return table;
+    }
+
     /**
      * Get the simple name for the given class
      *
@@ -459,6 +590,83 @@ public class ItemNamespace {
         return (fields == null || fields.size() == 0);
     }
 
+    /**
+     * Add the classes of the build time index, they are validated when the index was made. All classes are added or none. Returns false
+     * when the index does not match the classes (e.g. it is outdated), the package is then scanned instead.
+     */
+    private boolean addIndexedClasses(final String packageName, final List<IndexedClass> indexedClasses) {
+
+        Map<String, Class<?>> declaringClasses = new HashMap<>();
+        List<Class<?>> classes = new ArrayList<>();
+        List<FieldPair> fieldPairs = new ArrayList<>();
+        List<String> simpleNames = new ArrayList<>();
+
+        try {
+            for (IndexedClass indexedClass : indexedClasses) {
+                if (indexedClass.simpleName.equals(StringUtils.EMPTY)) {
+                    continue;
+                }
+                Class<?> classz = Class.forName(indexedClass.className);
+                FieldPair fieldPair = null;
+                if (indexedClass.fields != null) {
+                    fieldPair = new FieldPair();
+                    for (String indexedField : indexedClass.fields) {
+                        int split = indexedField.indexOf(ItemNamespaceIndex.FIELD_SEPARATOR);
+                        String declaringClassName = indexedField.substring(0, split);
+                        Class<?> declaringClass = declaringClasses.get(declaringClassName);
+                        if (declaringClass == null) {
+                            declaringClass = Class.forName(declaringClassName);
+                            declaringClasses.put(declaringClassName, declaringClass);
+                        }
+                        Field field = declaringClass.getDeclaredField(indexedField.substring(split + 1));
+                        field.setAccessible(true);
+                        fieldPair.allFields.add(field);
+                        fieldPair.xmlFields.add(field);
+                        fieldPair.editableFields.add(field);
+                    }
+                }
+                classes.add(classz);
+                fieldPairs.add(fieldPair);
+                simpleNames.add(indexedClass.simpleName);
+            }
+        } catch (Exception | LinkageError e) {
+            TLogger.warning("Item namespace index does not match the classes of " + packageName + ", scanning the package: " + e);
+            return false;
+        }
+
+        // names must be new, the scan reports duplicates
+        Set<String> newNames = new HashSet<>(simpleNames);
+        for (int i = 0; i < classes.size(); i++) {
+            if (mapping.containsKey(simpleNames.get(i)) || reverse.containsKey(classes.get(i))) {
+                TLogger.warning("Item namespace index of " + packageName + " has known name: " + simpleNames.get(i)
+                        + ", scanning the package.");
+                return false;
+            }
+        }
+        if (newNames.size() != simpleNames.size()) {
+            TLogger.warning("Item namespace index of " + packageName + " has duplicate names, scanning the package.");
+            return false;
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            mapping.put(simpleNames.get(i), classes.get(i));
+            reverse.put(classes.get(i), simpleNames.get(i));
+            fields.put(classes.get(i), fieldPairs.get(i));
+        }
+
+        // only item namespace classes may be used for fields, else undo and let the scan report it
+        if (!validateFieldClasses(false)) {
+            for (int i = 0; i < classes.size(); i++) {
+                mapping.remove(simpleNames.get(i));
+                reverse.remove(classes.get(i));
+                fields.remove(classes.get(i));
+            }
+            TLogger.warning("Item namespace index of " + packageName + " has fields of unknown classes, scanning the package.");
+            return false;
+        }
+        TLogger.info("Loaded " + indexedClasses.size() + "\tClasses from index: " + packageName);
+        return true;
+    }
+
     private boolean addClass(final Class<?> classz) {
 
         return this.addClass(classz, false);
@@ -488,6 +696,11 @@ public class ItemNamespace {
      * @return
      */
     private boolean addClass(final String simpleName, final Class<?> classz, boolean java) {
+        // only not standard java classes get fields
+        return this.addClass(simpleName, classz, java ? null : loadXMLFields(classz));
+    }
+
+    private boolean addClass(final String simpleName, final Class<?> classz, final FieldPair classzfields) {
 
         // multiple games can use this
         synchronized (write) {
@@ -502,12 +715,6 @@ public class ItemNamespace {
             // add the reverse
             reverse.put(classz, simpleName);
 
-            // get the fields
-            FieldPair classzfields = null;
-            if (!java) {
-                // only not standard java classes get added
-                classzfields = loadXMLFields(classz);
-            }
             // add the fields
             fields.put(classz, classzfields);
             return true;
@@ -652,6 +859,30 @@ public class ItemNamespace {
         return fieldPair;
     }
 
+    /**
+     * Only item namespace classes may be used for fields. Stops with a showstopper when asked, else returns false.
+     */
+    private boolean validateFieldClasses(boolean showstopper) {
+
+        for (Class<?> classz : fields.keySet()) {
+            List<Field> classFields = _getFields(classz, Filter.ALL);
+            if (classFields != null) {
+                for (Field field : classFields) {
+                    Class<?> fieldClass = field.getType();
+                    if (!reverse.containsKey(fieldClass)) {
+                        if (!showstopper) {
+                            return false;
+                        }
+                        TLogger.showstopper(
+                                "Failed to add class: " + classz.getSimpleName() + " to Item namespace. The field: " + field.getName()
+                                        + " has a class: " + fieldClass.getSimpleName() + " that is not in the Item namespace.");
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Validate Item enumerator for correct annotation implementation.
      * @param classz
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.structure;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import nl.tytech.core.structure.ItemNamespace.Filter;
+import nl.tytech.util.PackageUtils;
+import nl.tytech.util.StringUtils;
+import nl.tytech.util.logger.TLogger;
+
+/**
+ * ItemNamespaceIndex
+ * <p>
+ * Index of the item namespace packages made at build time: the classes per package with their namespace name and XML fields. With the
+ * index the namespace is loaded without scanning the classpath and without validating the classes again, that is done when the index is
+ * made.
+ * <p>
+ * The sdk build creates the index in the process-classes phase with: java nl.tytech.core.structure.ItemNamespaceIndex &lt;classes dir&gt;
+ * (exec-maven-plugin in the sdk pom). Each package in the index has a build stamp: the amount of class files in its directory and the
+ * newest modification time. A package is only taken from the index when its classes come from the same jar as the index, or from a
+ * directory with the same stamp. Otherwise (index missing or outdated, e.g. classes compiled again by an IDE) the package is scanned as
+ * before. Checking a package costs one resource lookup and at most one directory listing, no classes are loaded. Set the system property
+ * {@link #SCAN_PROPERTY} to ignore the index.
+ *
+ * @author Maxim Knepfle
+ */
+public class ItemNamespaceIndex {
+
+    /**
+     * Class in the index, simple name is empty for classes that are not in the namespace (e.g. anonymous classes).
+     */
+    final static class IndexedClass {
+
+        final String className;
+
+        final String simpleName;
+
+        /**
+         * Declaring class and name of the XML fields, null when the class has no field table (e.g. enums).
+         */
+        final String[] fields;
+
+        private IndexedClass(String className, String simpleName, String[] fields) {
+            this.className = className;
+            this.simpleName = simpleName;
+            this.fields = fields;
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final ItemNamespaceIndex INSTANCE = load();
+    }
+
+    public final static String RESOURCE = "nl/tytech/core/structure/ItemNamespace.index";
+
+    public final static String SCAN_PROPERTY = "tytech.itemnamespace.scan";
+
+    private final static String PACKAGE = "package";
+
+    private final static String SEPARATOR = "\t";
+
+    final static String FIELD_SEPARATOR = "#";
+
+    private final static String NO_FIELDS = "-";
+
+    /**
+     * Jar part of a jar URL, e.g. jar:file:/sdk.jar for jar:file:/sdk.jar!/nl/tytech/..
+     */
+    private static String getJar(URL url) {
+
+        String external = url.toExternalForm();
+        int separator = external.indexOf("!/");
+        return separator < 0 ? external : external.substring(0, separator);
+    }
+
+    /**
+     * Indexed classes of the package, null when there is no index, the package is not in it or the classes changed since the index was
+     * made.
+     */
+    final static List<IndexedClass> getClasses(String packageName) {
+
+        ItemNamespaceIndex index = SingletonHolder.INSTANCE;
+        if (index == null || !index.packages.containsKey(packageName)) {
+            return null;
+        }
+        if (!index.current.computeIfAbsent(packageName, index::isCurrent)) {
+            return null;
+        }
+        return index.packages.get(packageName);
+    }
+
+    /**
+     * Names of all classes in the package from the index, null when there is no index, the package is not in it or the classes changed
+     * since the index was made.
+     */
+    public final static List<String> getClassNames(String packageName) {
+
+        List<IndexedClass> classes = getClasses(packageName);
+        if (classes == null) {
+            return null;
+        }
+        List<String> classNames = new ArrayList<>(classes.size());
+        for (IndexedClass indexedClass : classes) {
+            classNames.add(indexedClass.className);
+        }
+        return classNames;
+    }
+
+    private static ItemNamespaceIndex load() {
+
+        if (Boolean.getBoolean(SCAN_PROPERTY)) {
+            return null;
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ItemNamespaceIndex.class.getClassLoader();
+        }
+        URL url = classLoader.getResource(RESOURCE);
+        if (url == null) {
+            return null;
+        }
+        try (InputStream inputStream = url.openStream()) {
+            ItemNamespaceIndex index = new ItemNamespaceIndex(classLoader, url);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            List<IndexedClass> classes = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(SEPARATOR, -1);
+                if (PACKAGE.equals(parts[0])) {
+                    classes = new ArrayList<>();
+                    index.packages.put(parts[1], classes);
+                    index.stamps.put(parts[1], parts.length > 2 ? parts[2] : StringUtils.EMPTY);
+                } else if (classes != null && parts.length == 3) {
+                    String[] fields = NO_FIELDS.equals(parts[2]) ? null : parts[2].isEmpty() ? new String[0] : parts[2].split(",");
+                    classes.add(new IndexedClass(parts[0], parts[1], fields));
+                }
+            }
+            return index;
+        } catch (Exception e) {
+            TLogger.exception(e, "Failed to read item namespace index, scanning packages instead.");
+            return null;
+        }
+    }
+
+    /**
+     * Scan and validate the namespace packages and write the index into the given directory.
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 1) {
+            System.err.println("Usage: " + ItemNamespaceIndex.class.getName() + " <output directory>");
+            System.exit(1);
+        }
+        System.setProperty(SCAN_PROPERTY, Boolean.TRUE.toString());
+
+        File directory = new File(args[0]);
+        File file = new File(directory, RESOURCE);
+        file.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            writer.println("# Generated by " + ItemNamespaceIndex.class.getName() + ", do not edit.");
+            for (String packageName : DataLord.getNamespacePackages()) {
+                // scans and validates, stops the JVM on invalid classes
+                if (!ItemNamespace.addPackageClasses(packageName)) {
+                    throw new IllegalStateException("Invalid classes in package: " + packageName);
+                }
+                List<String> classNames = PackageUtils.getPackageClassNames(packageName);
+                writer.println(PACKAGE + SEPARATOR + packageName + SEPARATOR + stamp(new File(directory, packageName.replace('.', '/'))));
+                for (String className : classNames) {
+                    writer.println(className + SEPARATOR + toIndex(Class.forName(className)));
+                }
+            }
+        }
+        TLogger.info("Written item namespace index: " + file.getAbsolutePath());
+    }
+
+    /**
+     * Build stamp of the package directory: the amount of class files and the newest modification time. Changes when a class is compiled
+     * again, added or removed.
+     */
+    final static String stamp(File packageDirectory) {
+
+        File[] classFiles = packageDirectory.listFiles((dir, name) -> name.endsWith(".class"));
+        if (classFiles == null) {
+            return StringUtils.EMPTY;
+        }
+        long newest = 0;
+        for (File classFile : classFiles) {
+            newest = Math.max(newest, classFile.lastModified());
+        }
+        return classFiles.length + ":" + newest;
+    }
+
+    /**
+     * Simple name and fields of the class as written in the index.
+     */
+    private static String toIndex(Class<?> classz) {
+
+        if (!ItemNamespace.containsClass(classz)) {
+            return StringUtils.EMPTY + SEPARATOR + NO_FIELDS;
+        }
+        List<Field> fields = ItemNamespace.getFields(classz, Filter.ALL);
+        StringBuilder builder = new StringBuilder(ItemNamespace.getSimpleName(classz)).append(SEPARATOR);
+        if (fields == null) {
+            return builder.append(NO_FIELDS).toString();
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            builder.append(i == 0 ? StringUtils.EMPTY : ",");
+            builder.append(field.getDeclaringClass().getName()).append(FIELD_SEPARATOR).append(field.getName());
+        }
+        return builder.toString();
+    }
+
+    private final Map<String, List<IndexedClass>> packages = new HashMap<>();
+
+    private final Map<String, String> stamps = new HashMap<>();
+
+    private final ClassLoader classLoader;
+
+    /**
+     * Location the index is read from.
+     */
+    private final URL url;
+
+    /**
+     * Packages of which the classes on the classpath match the index, checked on first use.
+     */
+    private final Map<String, Boolean> current = new ConcurrentHashMap<>();
+
+    private ItemNamespaceIndex(ClassLoader classLoader, URL url) {
+        this.classLoader = classLoader;
+        this.url = url;
+    }
+
+    private boolean isCurrent(String packageName) {
+
+        try {
+            List<IndexedClass> classes = packages.get(packageName);
+            URL classURL = classes.isEmpty() ? null : classLoader.getResource(classes.get(0).className.replace('.', '/') + ".class");
+            if (classURL == null) {
+                TLogger.warning("Item namespace index does not match the classes of " + packageName + ", scanning the package.");
+                return false;
+            }
+            // the build writes the index between the classes before they are packed
+            if ("jar".equals(classURL.getProtocol()) && getJar(classURL).equals(getJar(url))) {
+                return true;
+            }
+            if ("file".equals(classURL.getProtocol())
+                    && stamp(new File(classURL.toURI()).getParentFile()).equals(stamps.get(packageName))) {
+                return true;
+            }
+            TLogger.warning("Item namespace index is outdated for " + packageName + ", scanning the package.");
+        } catch (Exception e) {
+            TLogger.warning("Item namespace index does not match the classes of " + packageName + ", scanning the package: " + e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,455 @@
+/*******************************************************************************
+ * Copyright 2006-2016 TyTech B.V., Saturnusstraat 60, 2516 AH, The Hague, The Netherlands All rights reserved. This software is proprietary
+ * information of TyTech B.V..
+ ******************************************************************************/
+package nl.tytech.core.structure;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import nl.tytech.data.core.item.Item;
+
+/**
+ * ItemTrie
+ * <p>
+ * Persistent bitmapped trie keyed on the item ID. The trie is never changed, every put or remove returns a new trie that shares all
+ * untouched nodes with the old one. Copying a map is therefore free and a change only costs the path from the root to the item ID.
+ * <p>
+ * Each level uses 5 bits of the ID and the depth grows with the highest ID. Sparse nodes only store the occupied slots (bitmap + compact
+ * array). Item ID's are normally the location in the list, so most nodes are filled and those are stored as a plain 32 slot array that is
+ * indexed directly with the ID bits. A lookup in a dense map is then only a few array reads without boxing.
+ * <p>
+ * Every node also stores the highest item version below it, so the version of the whole map is known without scanning the items.
+ * <p>
+ * Like the TreeMap it replaces, a key can be put with a null item: the key is then present (counted, iterated as null) until it is
+ * removed. Keys must be 0 or higher.
+ *
+ * @author Maxim Knepfle
+ */
+final class ItemTrie<I extends Item> implements Iterable<I> {
+
+    private final static class Node {
+
+        private final int bitmap;
+
+        /**
+         * Compact array with only the occupied slots, or when dense an array of WIDTH indexed by slot.
+         */
+        private final Object[] array;
+
+        /**
+         * Highest item version in this node and its children.
+         */
+        private final int version;
+
+        private Node(int bitmap, Object[] array, int version) {
+            this.bitmap = bitmap;
+            this.array = array;
+            this.version = version;
+        }
+
+        private final Object get(int slot) {
+
+            if (array.length == WIDTH) {
+                return array[slot];
+            }
+            int bit = 1 << slot;
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            return array[index(bit)];
+        }
+
+        private final int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /**
+         * Object in the highest occupied slot.
+         */
+        private final Object last() {
+            return array.length == WIDTH ? array[lastSlot()] : array[array.length - 1];
+        }
+
+        private final int lastSlot() {
+            return 31 - Integer.numberOfLeadingZeros(bitmap);
+        }
+
+        /**
+         * Version of the node after the old value in a slot is replaced by the new one, only scans when the highest version is replaced by
+         * a lower one.
+         */
+        private final int replaceVersion(Object oldValue, Object newValue, Object[] newArray) {
+
+            int newVersion = version(newValue);
+            if (newVersion >= version) {
+                return newVersion;
+            }
+            if (oldValue == null || version(oldValue) < version) {
+                return version;
+            }
+            return version(newArray);
+        }
+
+        /**
+         * New node with the slot set to the value.
+         */
+        private final Node with(int slot, Object value) {
+
+            int bit = 1 << slot;
+            int newBitmap = bitmap | bit;
+
+            // dense, set directly
+            if (array.length == WIDTH) {
+                Object[] newArray = array.clone();
+                newArray[slot] = value;
+                return new Node(newBitmap, newArray, replaceVersion(array[slot], value, newArray));
+            }
+
+            int index = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object[] newArray = array.clone();
+                newArray[index] = value;
+                return new Node(newBitmap, newArray, replaceVersion(array[index], value, newArray));
+            }
+
+            int newVersion = Math.max(version, version(value));
+
+            // enough slots in use, switch to dense array
+            if (array.length + 1 >= DENSE_SLOTS) {
+                Object[] newArray = new Object[WIDTH];
+                for (int i = 0, j = 0; i < WIDTH; i++) {
+                    if ((bitmap & (1 << i)) != 0) {
+                        newArray[i] = array[j++];
+                    }
+                }
+                newArray[slot] = value;
+                return new Node(newBitmap, newArray, newVersion);
+            }
+
+            Object[] newArray = new Object[array.length + 1];
+            System.arraycopy(array, 0, newArray, 0, index);
+            newArray[index] = value;
+            System.arraycopy(array, index, newArray, index + 1, array.length - index);
+            return new Node(newBitmap, newArray, newVersion);
+        }
+
+        /**
+         * New node without the slot or null when nothing is left.
+         */
+        private final Node without(int slot) {
+
+            int bit = 1 << slot;
+            int newBitmap = bitmap & ~bit;
+            if (newBitmap == 0) {
+                return null;
+            }
+
+            boolean rescan = version(get(slot)) >= version;
+            if (array.length == WIDTH) {
+                int used = Integer.bitCount(newBitmap);
+                // too empty, switch back to compact array
+                if (used < SPARSE_SLOTS) {
+                    Object[] newArray = new Object[used];
+                    for (int i = 0, j = 0; i < WIDTH; i++) {
+                        if ((newBitmap & (1 << i)) != 0) {
+                            newArray[j++] = array[i];
+                        }
+                    }
+                    return new Node(newBitmap, newArray, rescan ? version(newArray) : version);
+                }
+                Object[] newArray = array.clone();
+                newArray[slot] = null;
+                return new Node(newBitmap, newArray, rescan ? version(newArray) : version);
+            }
+
+            int index = index(bit);
+            Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 1, newArray, index, newArray.length - index);
+            return new Node(newBitmap, newArray, rescan ? version(newArray) : version);
+        }
+    }
+
+    /**
+     * Walks the leaves in ascending ID order.
+     */
+    private final static class TrieIterator<I> implements Iterator<I> {
+
+        private final Node[] nodes;
+
+        private final int[] positions;
+
+        private int depth = 0;
+
+        private Object next = null;
+
+        private boolean hasNext = false;
+
+        private TrieIterator(Node root, int shift) {
+            nodes = new Node[shift / BITS + 1];
+            positions = new int[nodes.length];
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+
+            next = null;
+            hasNext = false;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int position = positions[depth];
+                if (position >= node.array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth]++;
+                Object child = node.array[position];
+                // dense nodes have empty slots
+                if (child == null) {
+                    continue;
+                }
+                if (depth == nodes.length - 1) {
+                    next = child == NULL ? null : child;
+                    hasNext = true;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) child;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public I next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            I result = (I) next;
+            advance();
+            return result;
+        }
+    }
+
+    private final static int BITS = 5;
+
+    private final static int WIDTH = 1 << BITS;
+
+    private final static int MASK = WIDTH - 1;
+
+    /**
+     * Sparse nodes become dense when this many slots are used.
+     */
+    private final static int DENSE_SLOTS = WIDTH / 2;
+
+    /**
+     * Dense nodes become sparse again below this many used slots.
+     */
+    private final static int SPARSE_SLOTS = WIDTH / 4;
+
+    /**
+     * Stored for a key that is put with a null item.
+     */
+    private final static Object NULL = new Object();
+
+    private final static Node EMPTY_NODE = new Node(0, new Object[0], 0);
+
+    @SuppressWarnings("rawtypes")
+    private final static ItemTrie EMPTY = new ItemTrie<>(EMPTY_NODE, 0, 0, Item.NONE);
+
+    @SuppressWarnings("unchecked")
+    static <I extends Item> ItemTrie<I> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Highest version of the items or nodes in the array.
+     */
+    private static int version(Object[] array) {
+
+        int version = 0;
+        for (Object value : array) {
+            version = Math.max(version, version(value));
+        }
+        return version;
+    }
+
+    /**
+     * Version of an item or of the highest item in a node.
+     */
+    private static int version(Object value) {
+
+        if (value == null || value == NULL) {
+            return 0;
+        }
+        if (value instanceof Node) {
+            return ((Node) value).version;
+        }
+        return ((Item) value).getVersion();
+    }
+
+    private static int lastKey(Node node, int shift) {
+
+        if (node.bitmap == 0) {
+            return Item.NONE;
+        }
+        int key = 0;
+        for (int level = shift; level >= 0; level -= BITS) {
+            key |= node.lastSlot() << level;
+            if (level > 0) {
+                node = (Node) node.last();
+            }
+        }
+        return key;
+    }
+
+    private static Node put(Node node, int level, int key, Object value) {
+
+        int slot = (key >>> level) & MASK;
+        if (level == 0) {
+            return node.with(slot, value);
+        }
+        Node child = (Node) node.get(slot);
+        return node.with(slot, put(child == null ? EMPTY_NODE : child, level - BITS, key, value));
+    }
+
+    /**
+     * Remove the key from the node, returns null when the node becomes empty.
+     */
+    private static Node remove(Node node, int level, int key) {
+
+        int slot = (key >>> level) & MASK;
+        if (level > 0) {
+            Node child = remove((Node) node.get(slot), level - BITS, key);
+            if (child != null) {
+                return node.with(slot, child);
+            }
+        }
+        return node.without(slot);
+    }
+
+    private final Node root;
+
+    /**
+     * Bit shift of the root level, leaves are at shift 0.
+     */
+    private final int shift;
+
+    private final int count;
+
+    private final int lastKey;
+
+    private ItemTrie(Node root, int shift, int count, int lastKey) {
+        this.root = root;
+        this.shift = shift;
+        this.count = count;
+        this.lastKey = lastKey;
+    }
+
+    /**
+     * Check if the key does not fit in a trie of this depth.
+     */
+    private final boolean exceeds(int key, int level) {
+        return (key >>> level) >>> BITS != 0;
+    }
+
+    /**
+     * True when the key is present, also when it was put with a null item.
+     */
+    final boolean containsKey(int key) {
+        return lookup(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    final I get(int key) {
+
+        Object value = lookup(key);
+        return value == NULL ? null : (I) value;
+    }
+
+    /**
+     * Highest ID in the trie or Item.NONE when empty.
+     */
+    final int getLastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public final Iterator<I> iterator() {
+        return new TrieIterator<>(root, shift);
+    }
+
+    /**
+     * Value stored for the key: the item, NULL or null when absent.
+     */
+    private final Object lookup(int key) {
+
+        if (key < 0 || key > lastKey) {
+            return null;
+        }
+
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.get((key >>> level) & MASK);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.get(key & MASK);
+    }
+
+    /**
+     * Returns a trie containing the item (which may be null) under the key, this trie is not changed. The key must be 0 or higher.
+     */
+    final ItemTrie<I> put(int key, I item) {
+
+        // add levels on top until the key fits
+        Node newRoot = root;
+        int newShift = shift;
+        while (exceeds(key, newShift)) {
+            if (newRoot.bitmap != 0) {
+                newRoot = new Node(1, new Object[] { newRoot }, newRoot.version);
+            }
+            newShift += BITS;
+        }
+        int newCount = containsKey(key) ? count : count + 1;
+        Object value = item == null ? NULL : item;
+        return new ItemTrie<>(put(newRoot, newShift, key, value), newShift, newCount, Math.max(lastKey, key));
+    }
+
+    /**
+     * Returns a trie without the item, this trie is not changed.
+     */
+    final ItemTrie<I> remove(int key) {
+
+        if (!containsKey(key)) {
+            return this;
+        }
+        Node newRoot = remove(root, shift, key);
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        int newLastKey = key == lastKey ? lastKey(newRoot, shift) : lastKey;
+        return new ItemTrie<>(newRoot, shift, count - 1, newLastKey);
+    }
+
+    /**
+     * Highest version of all items in the trie.
+     */
+    final int getVersion() {
+        return root.version;
+    }
+
+    /**
+     * Amount of items in the trie.
+     */
+    final int size() {
+        return count;
+    }
+}
@@ -16,6 +16,7 @@ import java.util.StringTokenizer;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import nl.tytech.core.event.Event.EventTypeEnum;
+import nl.tytech.core.event.EventValidationUtils;
 import nl.tytech.core.net.Network;
 import nl.tytech.core.net.Network.AppType;
 import nl.tytech.core.net.serializable.TokenPair;
@@ -825,6 +826,7 @@ public class SettingsManager {
                     + " runmode. Switching to " + targetMode);
             setRunMode(targetMode);
         }
+        EventValidationUtils.setReleaseMode(getRunMode() == RunMode.RELEASE);
 
         TLogger.setLogToFile(isLogToFile());
     }
@@ -1241,6 +1243,7 @@ public class SettingsManager {
     protected void _setRunMode(RunMode level) {
 
         setProperty(SettingsType.RUNMODE, level);
+        EventValidationUtils.setReleaseMode(level == RunMode.RELEASE);
     }
 
     private void _setScreenActualAmountModels(int drawDistance) {
@@ -16,6 +16,7 @@ import nl.tytech.core.item.annotations.ItemIDField;
 import nl.tytech.core.item.annotations.ListOfClass;
 import nl.tytech.core.net.Lord;
 import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.FieldAccessor;
 import nl.tytech.core.structure.ItemMap;
 import nl.tytech.core.structure.ItemNamespace;
 import nl.tytech.core.structure.ItemNamespace.Filter;
@@ -175,8 +176,8 @@ public abstract class Item implements Serializable, Comparable<Item> {
         if (requestMap == null) {
             return null;
         }
-        // return the item
-        return requestMap.get(id);
+        // return the item, primitive lookup
+        return requestMap.get(id.intValue());
     }
 
     public final <I extends UniqueNamedItem> I getItem(MapLink mapLink, final String uniqueName) {
@@ -351,8 +352,9 @@ public abstract class Item implements Serializable, Comparable<Item> {
     /**
      * Check for correct asset names, not strange signs are allowed.
      */
-    private String validAssetName(Field field) {
+    private String validAssetName(FieldAccessor accessor) {
 
+        Field field = accessor.getField();
         AssetDirectory assetField = field.getAnnotation(AssetDirectory.class);
         String result = StringUtils.EMPTY;
         if (assetField == null) {
@@ -360,8 +362,7 @@ public abstract class Item implements Serializable, Comparable<Item> {
         }
 
         try {
-            field.setAccessible(true);
-            Object value = field.get(this);
+            Object value = accessor.get(this);
             if (value instanceof String && !StringUtils.validFilename(value.toString().toLowerCase(), null)) {
 
                 result += "\nInvalid asset name in field: " + field.getName() + " [" + value + "] of item "
@@ -391,15 +392,17 @@ public abstract class Item implements Serializable, Comparable<Item> {
 
         // TODO: Maxim; also do this check for sub item object e.g. IndicatorScore.
         String result = StringUtils.EMPTY;
-        for (Field field : ItemNamespace.getFields(this.getClass(), Filter.ALL)) {
-            result += validIDFieldLinkage(field);
-            result += validAssetName(field);
-            result += validListValues(field);
+        for (FieldAccessor accessor : ItemNamespace.getAccessors(this.getClass(), Filter.ALL)) {
+            result += validIDFieldLinkage(accessor);
+            result += validAssetName(accessor);
+            result += validListValues(accessor);
         }
         return result;
     }
 
-    private String validIDFieldLinkage(Field field) {
+    private String validIDFieldLinkage(FieldAccessor accessor) {
+
+        Field field = accessor.getField();
         ItemIDField itemIDField = field.getAnnotation(ItemIDField.class);
 
         String result = StringUtils.EMPTY;
@@ -409,8 +412,7 @@ public abstract class Item implements Serializable, Comparable<Item> {
         MapLink controlType = MapLink.valueOf(itemIDField.value());
 
         try {
-            field.setAccessible(true);
-            Object value = field.get(this);
+            Object value = accessor.get(this);
             if (value instanceof Integer) {
                 result += validIntegerLink(field, controlType, value);
 
@@ -457,7 +459,9 @@ public abstract class Item implements Serializable, Comparable<Item> {
         return result;
     }
 
-    private String validListValues(Field field) {
+    private String validListValues(FieldAccessor accessor) {
+
+        Field field = accessor.getField();
         ListOfClass listOfClass = field.getAnnotation(ListOfClass.class);
 
         String result = StringUtils.EMPTY;
@@ -467,8 +471,7 @@ public abstract class Item implements Serializable, Comparable<Item> {
         Class<?> listClass = listOfClass.value();
 
         try {
-            field.setAccessible(true);
-            Object value = field.get(this);
+            Object value = accessor.get(this);
             if (value != null) {
                 List<?> list = (List<?>) value;
                 for (Object object : list) {
@@ -9,6 +9,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import javax.vecmath.Point3d;
 import nl.tytech.util.jts.EmptyMultiPolygon;
 import nl.tytech.util.logger.TLogger;
@@ -53,6 +55,56 @@ import com.vividsolutions.jts.triangulate.ConstraintEnforcementException;
  */
 public class JTSUtils {
 
+    /**
+     * Unions a sorted range of polygons by splitting it in two halves until the ranges are small, neighbouring polygons are merged first
+     * so each overlay stays small.
+     */
+    private static class CascadedUnion extends RecursiveTask<MultiPolygon> {
+
+        private static final long serialVersionUID = -3051783946378431725L;
+
+        private final List<Polygon> polygons;
+
+        private final boolean parallel;
+
+        private CascadedUnion(List<Polygon> polygons, boolean parallel) {
+            this.polygons = polygons;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected MultiPolygon compute() {
+
+            if (polygons.size() <= CASCADE_LEAF_SIZE) {
+                return createMP(polygons);
+            }
+            int middle = polygons.size() / 2;
+            CascadedUnion left = new CascadedUnion(polygons.subList(0, middle), parallel);
+            CascadedUnion right = new CascadedUnion(polygons.subList(middle, polygons.size()), parallel);
+            MultiPolygon leftResult;
+            MultiPolygon rightResult;
+            if (parallel) {
+                left.fork();
+                rightResult = right.compute();
+                leftResult = left.join();
+            } else {
+                leftResult = left.compute();
+                rightResult = right.compute();
+            }
+            return createMP(leftResult, rightResult);
+        }
+    }
+
+    /**
+     * Amount of polygons unioned in one overlay by the cascaded union.
+     */
+    private final static int CASCADE_LEAF_SIZE = 16;
+
+    /**
+     * Below this amount of polygons the cascaded union is not worth the parallel overhead.
+     */
+    private final static int PARALLEL_UNION_SIZE = 256;
+
     /**
      * Multi polygon size sorter
      */
@@ -355,6 +407,35 @@ public class JTSUtils {
         return createMP(result);
     }
 
+    /**
+     * Base minus all given geometries in one overlay. Only the geometries that intersect the base are unioned (cascaded) first, instead
+     * of subtracting them one by one from an ever more complex base.
+     */
+    public static MultiPolygon differenceAll(Geometry base, Collection<? extends Geometry> removes) {
+
+        if (!containsData(base)) {
+            return EMPTY;
+        }
+        Envelope envelope = base.getEnvelopeInternal();
+        PreparedGeometry prepared = null;
+        List<Geometry> intersecting = new ArrayList<>();
+        for (Geometry remove : removes) {
+            if (!containsData(remove) || !envelope.intersects(remove.getEnvelopeInternal())) {
+                continue;
+            }
+            if (prepared == null) {
+                prepared = PreparedGeometryFactory.prepare(base);
+            }
+            if (prepared.intersects(remove)) {
+                intersecting.add(remove);
+            }
+        }
+        if (intersecting.isEmpty()) {
+            return createMP(base);
+        }
+        return difference(base, intersecting.size() == 1 ? intersecting.get(0) : unionCascaded(intersecting));
+    }
+
     public static boolean equals(MultiPolygon mp, MultiPolygon other) {
         if (mp.getNumGeometries() != other.getNumGeometries()) {
             return false;
@@ -848,6 +929,35 @@ public class JTSUtils {
         return createMP(Arrays.asList(mps));
     }
 
+    /**
+     * Union of many geometries (e.g. all lands of a stakeholder) as a tree reduction instead of adding them one by one, which is
+     * quadratic in the amount of coordinates. The polygons are sorted on location so close polygons are merged first. Large sets are
+     * reduced in parallel on the common fork join pool.
+     */
+    public static MultiPolygon unionCascaded(Collection<? extends Geometry> geometries) {
+
+        if (geometries == null || geometries.isEmpty()) {
+            return EMPTY;
+        }
+        List<Polygon> polygons = new ArrayList<>();
+        for (Geometry geometry : geometries) {
+            if (!isEmpty(geometry)) {
+                for (Object polygon : PolygonExtracter.getPolygons(geometry)) {
+                    polygons.add((Polygon) polygon);
+                }
+            }
+        }
+        if (polygons.isEmpty()) {
+            return EMPTY;
+        }
+        // sort on location, neighbours end up in the same branch
+        polygons.sort(Comparator.comparingDouble((Polygon polygon) -> polygon.getEnvelopeInternal().getMinX())
+                .thenComparingDouble(polygon -> polygon.getEnvelopeInternal().getMinY()));
+
+        CascadedUnion union = new CascadedUnion(polygons, polygons.size() >= PARALLEL_UNION_SIZE);
+        return union.parallel ? ForkJoinPool.commonPool().invoke(union) : union.compute();
+    }
+
     public static Geometry validate(Geometry geometry) {
 
         try {
@@ -14,6 +14,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectMapper.DefaultTypeResolverBuilder;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.MultiLineString;
@@ -38,7 +39,7 @@ public class JsonMapper {
 
         for (Format format : Format.values()) {
 
-            ObjectMapper mapper = new ObjectMapper();
+            ObjectMapper mapper = format == Format.ZIPSMILE ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
             mapper.enable(MapperFeature.CAN_OVERRIDE_ACCESS_MODIFIERS);
             mapper.enable(SerializationFeature.WRITE_BIGDECIMAL_AS_PLAIN);
 
@@ -70,7 +70,12 @@ public class RestManager {
         /**
          * Zipped Assets binary data
          */
-        ZIPBINARY(MediaType.APPLICATION_OCTET_STREAM);
+        ZIPBINARY(MediaType.APPLICATION_OCTET_STREAM),
+
+        /**
+         * Binary zipped Typed Smile (binary JSON), only for replies. Requests are sent as Typed JSON.
+         */
+        ZIPSMILE(MediaType.APPLICATION_OCTET_STREAM);
 
         public final static String QUERY = "f";
 
@@ -91,8 +96,15 @@ public class RestManager {
             return this == TJSON || this == JSON || this == HTML;
         }
 
+        /**
+         * Format used to write the request content.
+         */
+        public Format getContentFormat() {
+            return this == ZIPSMILE ? ZIPTJSON : this;
+        }
+
         public boolean isTyped() {
-            return this == TJSON || this == ZIPTJSON;
+            return this == TJSON || this == ZIPTJSON || this == ZIPSMILE;
         }
     }
 
@@ -261,7 +273,7 @@ public class RestManager {
         } else {
             String jsonContent;
             try {
-                jsonContent = RestUtils.writeJsonString(format, content);
+                jsonContent = RestUtils.writeJsonString(format.getContentFormat(), content);
             } catch (Exception e) {
                 throw new ResponseException(BadRequestType.INVALID_JSON_CONTENT, "Invalid JSON input: " + e.getMessage());
             }
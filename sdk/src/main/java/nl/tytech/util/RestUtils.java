@@ -112,6 +112,7 @@ public class RestUtils {
                     return readJsonStream(format, inputStream, responseClass);
                 case ZIPJSON:
                 case ZIPTJSON:
+                case ZIPSMILE:
                     return readZipJsonStream(format, inputStream, responseClass);
                 case ZIPBINARY:
                     return readByteStream(inputStream, responseClass);
@@ -137,6 +138,7 @@ public class RestUtils {
         return (T) rootElement;
     }
 
+    @SuppressWarnings("unchecked")
     private static <T> T readZipJsonStream(Format format, InputStream inputStream, Class<T> responseClass) throws IOException {
 
         if (inputStream.available() == 0) {
@@ -145,6 +147,10 @@ public class RestUtils {
         }
 
         GZIPInputStream ois = new GZIPInputStream(inputStream);
+        if (responseClass == GZIPInputStream.class) {
+            // caller reads the stream itself
+            return (T) ois;
+        }
         T resultObject = JsonMapper.getMapper(format).readValue(ois, responseClass);
         ois.close();
         inputStream.close();
@@ -204,6 +210,7 @@ public class RestUtils {
                 return writeJsonString(format, object);
             case ZIPJSON:
             case ZIPTJSON:
+            case ZIPSMILE:
                 return writeJsonZipBytes(format, object);
             case ZIPBINARY:
                 return ZipUtils.compressObject(object);
@@ -4,14 +4,24 @@
  ******************************************************************************/
 package nl.tytech.util.logger;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.security.AccessControlException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.logging.FileHandler;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
 import java.util.logging.XMLFormatter;
 import nl.tytech.util.OSUtils;
 import nl.tytech.util.StringUtils;
@@ -22,6 +32,13 @@ import nl.tytech.util.ThreadUtils;
  * <p>
  * TLogger handles log and exception messages.
  * <p>
+ * The same message or exception logged more than MAX_REPEAT times in a row is truncated. Messages can be given as a Supplier, it is only
+ * called when the log is written. Exception reports are made directly. Logs given with a key (a call site or message template) are rate
+ * limited: after MAX_REPEAT logs of the key within the rate window the rest is suppressed and counted.
+ * <p>
+ * In async mode logging only adds the log to a bounded queue, a background thread formats and writes them in batches and flushes the file
+ * once per batch. When the queue is full logs are dropped and counted instead of blocking the caller, except SEVERE logs and exceptions:
+ * those wait for room in the queue.
  *
  *
  * @author Jeroen Warmerdam, Alwin Lemstra, Maxim Knepfle
@@ -32,10 +49,130 @@ public class TLogger {
         private static final TLogger INSTANCE = new TLogger();
     }
 
+    /**
+     * Log waiting to be written, thread info is taken when logging.
+     */
+    private final static class LogEntry {
+
+        private final Level level;
+
+        private final String log;
+
+        private final Supplier<String> supplier;
+
+        private final int suppressed;
+
+        private final String threadName;
+
+        private final long threadID;
+
+        private final int threadPriority;
+
+        private LogEntry(Level level, String log, Supplier<String> supplier, int suppressed) {
+            this.level = level;
+            this.log = log;
+            this.supplier = supplier;
+            this.suppressed = suppressed;
+            Thread thread = Thread.currentThread();
+            this.threadName = thread.getName();
+            this.threadID = thread.getId();
+            this.threadPriority = thread.getPriority();
+        }
+
+        private String getMessage() {
+
+            String message = log;
+            if (supplier != null) {
+                try {
+                    message = supplier.get();
+                } catch (Exception e) {
+                    message = "Failed to create log message: " + e;
+                }
+            }
+            if (suppressed > 0) {
+                message += " (" + suppressed + " duplicate logs suppressed)";
+            }
+            return "[" + threadName + ": id:" + threadID + " p:" + threadPriority + "]\t" + message;
+        }
+    }
+
+    /**
+     * Amount of logs of one key in the current rate window.
+     */
+    private final static class RateCounter {
+
+        private long windowStart = System.currentTimeMillis();
+
+        private int count = 0;
+
+        private int suppressed = 0;
+    }
+
+    /**
+     * Writes the queued logs in batches.
+     */
+    private final class Writer extends Thread {
+
+        private Writer() {
+            this.setName("TLogger-Writer");
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+
+            List<LogEntry> batch = new ArrayList<>(MAX_BATCH);
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    long dropped = droppedLogs.getAndSet(0);
+                    if (dropped > 0) {
+                        write(Level.WARNING, ".... dropped " + dropped + " logs, log queue was full.");
+                    }
+                    for (LogEntry entry : batch) {
+                        write(entry.level, entry.getMessage());
+                    }
+                    flushFile();
+                    writtenLogs.addAndGet(batch.size());
+                } catch (InterruptedException e) {
+                    // keep running, thread is daemon
+                } catch (Exception e) {
+                    System.err.println(getName() + " failed to write a batch of " + batch.size() + " logs: " + e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
     private final static Object LOCK = new Object();
 
     private static final int MAX_REPEAT = 10;
 
+    /**
+     * Time in ms in which MAX_REPEAT logs with the same key are written.
+     */
+    private static final long RATE_WINDOW = 60000;
+
+    /**
+     * Above this amount of keys the expired ones are forgotten and new keys are not limited, keeps the memory bounded.
+     */
+    private static final int MAX_RATE_KEYS = 1000;
+
+    private static final int QUEUE_SIZE = 8192;
+
+    private static final int MAX_BATCH = 512;
+
+    /**
+     * Max time in ms flush waits for the writer.
+     */
+    private static final long MAX_FLUSH_WAIT = 5000;
+
+    private static final int SUPPRESSED = -1;
+
+    private static final int TRUNCATED = -2;
+
     /**
      * Current directory.
      */
@@ -49,6 +186,10 @@ public class TLogger {
         log(TLevel.DEBUG, log);
     }
 
+    public static void debug(final Supplier<String> log) {
+        log(TLevel.DEBUG, log);
+    }
+
     /**
      * Log an exception with a message and level
      *
@@ -79,6 +220,20 @@ public class TLogger {
         exception(Level.SEVERE, exp, log);
     }
 
+    /**
+     * Wait until the async logs are written, returns directly when not async.
+     */
+    public static void flush() {
+        SingletonHolder.INSTANCE._flush();
+    }
+
+    /**
+     * Amount of logs dropped in async mode because the queue was full, SEVERE logs and exceptions are never dropped.
+     */
+    public static long getDroppedLogs() {
+        return SingletonHolder.INSTANCE.totalDroppedLogs.get();
+    }
+
     /**
      * Log an info message
      *
@@ -88,6 +243,14 @@ public class TLogger {
         log(Level.INFO, log);
     }
 
+    public static void info(final Supplier<String> log) {
+        log(Level.INFO, log);
+    }
+
+    public static boolean isAsync() {
+        return SingletonHolder.INSTANCE.async;
+    }
+
     /**
      * Log a message of level TLevel. If the system is running in debug mode, it quits the system on a >= Level.SEVERE log.
      *
@@ -95,7 +258,29 @@ public class TLogger {
      * @param log
      */
     public static void log(final Level level, final String log) {
-        SingletonHolder.INSTANCE._log(level, log);
+        SingletonHolder.INSTANCE._log(level, null, log, null);
+    }
+
+    /**
+     * Log a message that is only created when the log is written.
+     *
+     * @param level
+     * @param log
+     */
+    public static void log(final Level level, final Supplier<String> log) {
+        SingletonHolder.INSTANCE._log(level, null, null, log);
+    }
+
+    /**
+     * Log a message that is only created when the log is written, rate limited per key. Use a fixed key such as the call site or message
+     * template, not the created message.
+     *
+     * @param level
+     * @param key
+     * @param log
+     */
+    public static void log(final Level level, final String key, final Supplier<String> log) {
+        SingletonHolder.INSTANCE._log(level, key, null, log);
     }
 
     public static void notification(final String log) {
@@ -106,6 +291,17 @@ public class TLogger {
         SingletonHolder.INSTANCE._removeHandler(handler);
     }
 
+    /**
+     * When async, logging only queues the log and a background thread writes them in batches. Showstoppers are always written directly.
+     *
+     * @param async
+     */
+    public static void setAsync(boolean async) {
+        synchronized (LOCK) {
+            SingletonHolder.INSTANCE._setAsync(async);
+        }
+    }
+
     /**
      * Set the Level that this Logger should display information from
      *
@@ -138,6 +334,10 @@ public class TLogger {
         log(Level.SEVERE, log);
     }
 
+    public static void severe(final Supplier<String> log) {
+        log(Level.SEVERE, log);
+    }
+
     /**
      * Log a showstopper log
      *
@@ -156,13 +356,36 @@ public class TLogger {
         log(Level.WARNING, log);
     }
 
+    public static void warning(final Supplier<String> log) {
+        log(Level.WARNING, log);
+    }
+
     private Logger logger = Logger.getLogger("global");
 
-    private FileHandler fileHandler;
+    private Handler fileHandler;
+
+    private final Map<String, RateCounter> rateCounters = new ConcurrentHashMap<>();
+
+    private final Object repeatLock = new Object();
+
     private String lastLog = null;
 
     private int lastLogCounter = 0;
 
+    private final ArrayBlockingQueue<LogEntry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    private final AtomicLong queuedLogs = new AtomicLong();
+
+    private final AtomicLong writtenLogs = new AtomicLong();
+
+    private final AtomicLong droppedLogs = new AtomicLong();
+
+    private final AtomicLong totalDroppedLogs = new AtomicLong();
+
+    private volatile boolean async = false;
+
+    private volatile Writer writer = null;
+
     /**
      * Simple logging has no handler , just system out, handlers seem to create an issue with JET in combination with Runtime.Exe()
      */
@@ -192,43 +415,66 @@ public class TLogger {
         logger.addHandler(handler);
     }
 
-    private void _log(final Level level, String log) {
+    private void _flush() {
 
-        // already shutdown or non active?
-        if (logger.getLevel() == null && !simpleLogging) {
+        long queued = queuedLogs.get();
+        long end = System.currentTimeMillis() + MAX_FLUSH_WAIT;
+        while (writer != null && writtenLogs.get() < queued && System.currentTimeMillis() < end) {
+            ThreadUtils.sleepInterruptible(1);
+        }
+    }
+
+    private void _log(final Level level, final String key, final String log, final Supplier<String> supplier) {
+
+        if (!isActive()) {
+            return;
+        }
+        int suppressed = log != null ? countRepeat(log) : acquire(key);
+        if (suppressed == SUPPRESSED) {
             return;
         }
+        LogEntry entry = suppressed == TRUNCATED ? createTruncated(level) : new LogEntry(level, log, supplier, suppressed);
+        _log(entry, level.intValue() >= Level.SEVERE.intValue());
+    }
 
-        // ignore all below my level
-        if (logger.getLevel() != null && logger.getLevel().intValue() > Level.WARNING.intValue()) {
+    private void _log(final Level level, final Throwable exp, final String log) {
+
+        if (!isActive()) {
+            return;
+        }
+        // the report contains the date, so compare duplicates without it
+        int suppressed = countRepeat(exp + Arrays.toString(exp.getStackTrace()) + log);
+        if (suppressed == SUPPRESSED) {
             return;
         }
+        // made directly, it also prints the error on System.err
+        LogEntry entry = suppressed == TRUNCATED ? createTruncated(level) : new LogEntry(level, convertThrowableToMessage(exp, log), null,
+                0);
+        _log(entry, true);
+    }
 
-        if (log.equals(lastLog)) {
-            lastLog = log;
-            lastLogCounter++;
-            if (lastLogCounter == MAX_REPEAT) {
-                log = ".... truncated after " + MAX_REPEAT + " duplicate logs.";
-            }
-            if (lastLogCounter > MAX_REPEAT) {
-                return;
-            }
-        } else {
-            lastLog = log;
-            lastLogCounter = 0;
+    /**
+     * Write the entry or queue it when async. When keep is true the entry waits for room in a full queue instead of being dropped.
+     */
+    private void _log(final LogEntry entry, final boolean keep) {
+
+        boolean showstopper = entry.level.equals(TLevel.SHOWSTOPPER);
+        boolean onWriter = Thread.currentThread() == writer;
+
+        // the writer itself cannot wait for the queue
+        if (async && !showstopper && !onWriter && offer(entry, keep)) {
+            return;
         }
 
         // Log the message
-        if (simpleLogging) {
-            System.out.println("[" + Thread.currentThread().getName() + ": id:" + Thread.currentThread().getId() + " p:"
-                    + Thread.currentThread().getPriority() + "]\t" + log);
-        } else {
-            logger.log(level, "[" + Thread.currentThread().getName() + ": id:" + Thread.currentThread().getId() + " p:"
-                    + Thread.currentThread().getPriority() + "]\t" + log);
+        if (!onWriter) {
+            _flush();
         }
+        write(entry.level, entry.getMessage());
+        flushFile();
 
         // Possible stop of JVM
-        if (level.equals(TLevel.SHOWSTOPPER)) {
+        if (showstopper) {
             // show where it went wrong
             Thread.dumpStack();
             // let user know what going on, before directly closing the JVM
@@ -237,18 +483,88 @@ public class TLogger {
         }
     }
 
-    private void _log(final Level level, final Throwable exp, final String log) {
-        this._log(level, convertThrowableToMessage(exp, log));
-    }
-
     private void _removeHandler(Handler handler) {
         logger.removeHandler(handler);
     }
 
+    private void _setAsync(boolean async) {
+
+        if (async && writer == null) {
+            writer = new Writer();
+            writer.start();
+            // write what is left before the JVM stops
+            Runtime.getRuntime().addShutdownHook(new Thread(this::_flush));
+        }
+        this.async = async;
+        if (!async) {
+            _flush();
+        }
+    }
+
     private void _setSimpleLogger(boolean simpleLogging) {
         this.simpleLogging = simpleLogging;
     }
 
+    /**
+     * Count the log for the key, returns the amount of suppressed logs since the last written one, SUPPRESSED when this log must be
+     * suppressed or TRUNCATED for the first suppressed log.
+     */
+    private int acquire(String key) {
+
+        if (key == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        RateCounter counter = rateCounters.get(key);
+        if (counter == null) {
+            if (rateCounters.size() >= MAX_RATE_KEYS) {
+                rateCounters.values().removeIf(c -> now - c.windowStart > RATE_WINDOW && c.suppressed == 0);
+                if (rateCounters.size() >= MAX_RATE_KEYS) {
+                    return 0;
+                }
+            }
+            counter = rateCounters.computeIfAbsent(key, k -> new RateCounter());
+        }
+        synchronized (counter) {
+            if (now - counter.windowStart > RATE_WINDOW) {
+                int suppressed = counter.suppressed;
+                counter.windowStart = now;
+                counter.count = 1;
+                counter.suppressed = 0;
+                return suppressed;
+            }
+            counter.count++;
+            if (counter.count > MAX_REPEAT) {
+                counter.suppressed++;
+                return counter.suppressed == 1 ? TRUNCATED : SUPPRESSED;
+            }
+            return 0;
+        }
+    }
+
+    private LogEntry createTruncated(Level level) {
+        return new LogEntry(level, ".... truncated after " + MAX_REPEAT + " duplicate logs.", null, 0);
+    }
+
+    /**
+     * Count the same log in a row, returns TRUNCATED for the last written one and SUPPRESSED after that.
+     */
+    private int countRepeat(String log) {
+
+        synchronized (repeatLock) {
+            if (!log.equals(lastLog)) {
+                lastLog = log;
+                lastLogCounter = 0;
+                return 0;
+            }
+            lastLogCounter++;
+            if (lastLogCounter == MAX_REPEAT) {
+                return TRUNCATED;
+            }
+            return lastLogCounter > MAX_REPEAT ? SUPPRESSED : 0;
+        }
+    }
+
     /**
      * Convert the Throwable to a human readable string
      */
@@ -317,6 +633,47 @@ public class TLogger {
         return String.format("%1$tY-%1$tm-%1$te-%1$tH-%1$tM-%1$tS-%1$tL", Calendar.getInstance());
     }
 
+    private void flushFile() {
+        Handler handler = fileHandler;
+        if (handler != null) {
+            handler.flush();
+        }
+    }
+
+    private boolean isActive() {
+
+        // already shutdown or non active?
+        if (logger.getLevel() == null && !simpleLogging) {
+            return false;
+        }
+        // ignore all below my level
+        return logger.getLevel() == null || logger.getLevel().intValue() <= Level.WARNING.intValue();
+    }
+
+    /**
+     * Add the entry to the queue, returns false when it must be written directly.
+     */
+    private boolean offer(LogEntry entry, boolean keep) {
+
+        if (queue.offer(entry)) {
+            queuedLogs.incrementAndGet();
+            return true;
+        }
+        if (!keep) {
+            droppedLogs.incrementAndGet();
+            totalDroppedLogs.incrementAndGet();
+            return true;
+        }
+        try {
+            queue.put(entry);
+            queuedLogs.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     private void initLogging() {
         try {
             // remove old handlers, we don't want the console logging of java
@@ -350,9 +707,11 @@ public class TLogger {
                         file.mkdirs();
                         file.createNewFile();
                     }
-                    fileHandler = new FileHandler(WORK_DIRECTORY + "log-" + getDate() + ".xml", true);
+                    // buffered, flushed after each log or async batch
                     XMLFormatter formatter = new StyledXMLFormatter("logs.xsl");
-                    fileHandler.setFormatter(formatter);
+                    fileHandler = new StreamHandler(new BufferedOutputStream(new FileOutputStream(WORK_DIRECTORY + "log-" + getDate()
+                            + ".xml", true)), formatter);
+                    fileHandler.setLevel(Level.ALL);
                     logger.addHandler(fileHandler);
                 }
             } catch (SecurityException e) {
@@ -367,7 +726,17 @@ public class TLogger {
         } else if (fileHandler != null) {
             // remove file handler
             logger.removeHandler(fileHandler);
+            fileHandler.close();
             fileHandler = null;
         }
     }
+
+    private void write(Level level, String message) {
+
+        if (simpleLogging) {
+            System.out.println(message);
+        } else {
+            logger.log(level, message);
+        }
+    }
 }
@@ -8,13 +8,21 @@ public class TSlotConnection extends SlotConnection {
 
 	public static TSlotConnection createSlotConnection() {
 		Integer connectionID = connectionCounter.incrementAndGet();
-		return new TSlotConnection(connectionID);
+		return new TSlotConnection(connectionID, null);
+	}
+
+	/**
+	 * Create a connection that runs on the threads of the scheduler, e.g. ConnectionScheduler.getShared(), instead of its own threads.
+	 */
+	public static TSlotConnection createSlotConnection(ConnectionScheduler scheduler) {
+		Integer connectionID = connectionCounter.incrementAndGet();
+		return new TSlotConnection(connectionID, scheduler);
 	}
 
 	private Integer connectionID;
 
-	private TSlotConnection(Integer connectionID) {
-		super(connectionID);
+	private TSlotConnection(Integer connectionID, ConnectionScheduler scheduler) {
+		super(connectionID, scheduler);
 		this.connectionID = connectionID;
 	}
 
@@ -0,0 +1,125 @@
+package nl.tytech.core.client.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import nl.tytech.core.client.event.ItemChangeSet.ChangeType;
+import nl.tytech.core.client.event.ItemChangeSet.ItemChange;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ClientItemMap;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Global;
+
+/**
+ * An ItemChangeSet must give one change per ID with the type that describes the difference between the
+ * map before and after the update, also when an ID is put and deleted more than once in the same update.
+ */
+public class ItemChangeSetTest {
+
+	private static Global createGlobal(int id, int version) {
+
+		Global global = new Global();
+		global.setId(id);
+		global.setVersion(version);
+		return global;
+	}
+
+	private static ItemChangeSet<Global> createChangeSet(Global... items) {
+
+		ClientItemMap<Global> before = new ClientItemMap<>();
+		for (Global item : items) {
+			before.put(item.getID(), item);
+		}
+		return new ItemChangeSet<>(MapLink.GLOBALS, before);
+	}
+
+	private static void assertChange(ItemChange change, ChangeType type, int beforeVersion, int afterVersion) {
+
+		assertSame(type, change.getType());
+		assertEquals(beforeVersion, change.getBeforeVersion());
+		assertEquals(afterVersion, change.getAfterVersion());
+	}
+
+	@Test
+	public void addedAndDeleted() {
+
+		ItemChangeSet<Global> changeSet = createChangeSet();
+		changeSet.itemUpdated(null, createGlobal(1, 2));
+		changeSet.itemDeleted(createGlobal(1, 2), createGlobal(1, 3));
+
+		// nothing changed for the listener
+		assertTrue(changeSet.isEmpty());
+		assertNull(changeSet.getChange(1));
+	}
+
+	@Test
+	public void addedChangedDeleted() {
+
+		Global old = createGlobal(2, 1);
+		ItemChangeSet<Global> changeSet = createChangeSet(old, createGlobal(3, 1));
+		changeSet.itemUpdated(null, createGlobal(1, 4));
+		changeSet.itemUpdated(old, createGlobal(2, 4));
+		changeSet.itemDeleted(createGlobal(3, 1), createGlobal(3, 4));
+		// unknown item deleted
+		changeSet.itemDeleted(null, createGlobal(9, 4));
+
+		assertEquals(3, changeSet.size());
+		assertEquals(Arrays.asList(1), changeSet.getAddedIDs());
+		assertEquals(Arrays.asList(2), changeSet.getChangedIDs());
+		assertEquals(Arrays.asList(3), changeSet.getDeletedIDs());
+		assertChange(changeSet.getChange(1), ChangeType.ADDED, Item.NONE, 4);
+		assertChange(changeSet.getChange(2), ChangeType.CHANGED, 1, 4);
+		assertChange(changeSet.getChange(3), ChangeType.DELETED, 1, 4);
+	}
+
+	@Test
+	public void changedTwice() {
+
+		Global old = createGlobal(1, 1);
+		ItemChangeSet<Global> changeSet = createChangeSet(old);
+		Global second = createGlobal(1, 2);
+		changeSet.itemUpdated(old, second);
+		changeSet.itemUpdated(second, createGlobal(1, 3));
+
+		assertEquals(1, changeSet.size());
+		assertChange(changeSet.getChange(1), ChangeType.CHANGED, 1, 3);
+	}
+
+	@Test
+	public void changedThenDeleted() {
+
+		Global old = createGlobal(1, 1);
+		ItemChangeSet<Global> changeSet = createChangeSet(old);
+		Global changed = createGlobal(1, 2);
+		changeSet.itemUpdated(old, changed);
+		changeSet.itemDeleted(changed, createGlobal(1, 3));
+
+		assertEquals(Arrays.asList(1), changeSet.getDeletedIDs());
+		assertChange(changeSet.getChange(1), ChangeType.DELETED, 1, 3);
+	}
+
+	@Test
+	public void deletedThenPut() {
+
+		Global old = createGlobal(1, 1);
+		ItemChangeSet<Global> changeSet = createChangeSet(old);
+		changeSet.itemDeleted(old, createGlobal(1, 2));
+		changeSet.itemUpdated(null, createGlobal(1, 3));
+
+		// the item existed before and after the update
+		assertEquals(Arrays.asList(1), changeSet.getChangedIDs());
+		assertEquals(Collections.emptyList(), changeSet.getDeletedIDs());
+		assertChange(changeSet.getChange(1), ChangeType.CHANGED, 1, 3);
+
+		// deleted again
+		changeSet.itemDeleted(createGlobal(1, 3), createGlobal(1, 4));
+		assertChange(changeSet.getChange(1), ChangeType.DELETED, 1, 4);
+	}
+}
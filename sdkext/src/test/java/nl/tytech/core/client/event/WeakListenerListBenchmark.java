@@ -0,0 +1,139 @@
+package nl.tytech.core.client.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdesktop.swingx.event.WeakEventListenerList2;
+import org.junit.Test;
+
+import nl.tytech.core.client.event.WeakListenerList.ListenerReference;
+import nl.tytech.core.event.Event;
+import nl.tytech.core.event.EventListenerInterface;
+
+/**
+ * Compares registering, firing and removing 1 to 10k listeners with the WeakListenerList and with the
+ * WeakEventListenerList2 the EventManager used before, and prints the time of both. Firing checks each
+ * listener is still registered before it is called, like the deferred dispatch of the EventManager. Run
+ * with mvn test -Pbenchmark.
+ */
+public class WeakListenerListBenchmark {
+
+	private static class CountingListener implements EventListenerInterface {
+
+		private int calls = 0;
+
+		@Override
+		public void notifyListener(Event event) {
+			calls++;
+		}
+	}
+
+	private static final int[] SIZES = { 1, 10, 100, 1000, 10000 };
+
+	/**
+	 * Listener calls per measurement, the amount of fires is this divided by the amount of listeners.
+	 */
+	private static final int CALLS = 1000000;
+
+	private static List<CountingListener> createListeners(int size) {
+
+		List<CountingListener> listeners = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			listeners.add(new CountingListener());
+		}
+		return listeners;
+	}
+
+	/**
+	 * Old check of the EventManager: scan a copy of the list.
+	 */
+	private static boolean isValid(WeakEventListenerList2 list, EventListenerInterface listener) {
+
+		for (EventListenerInterface registered : list.getListeners(EventListenerInterface.class)) {
+			if (registered == listener) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long fireNew(WeakListenerList<EventListenerInterface> list, int fires) {
+
+		long start = System.nanoTime();
+		for (int i = 0; i < fires; i++) {
+			for (ListenerReference<EventListenerInterface> reference : list.getReferences()) {
+				EventListenerInterface listener = reference.get();
+				if (listener != null && reference.isValid()) {
+					listener.notifyListener(null);
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long fireOld(WeakEventListenerList2 list, int fires) {
+
+		long start = System.nanoTime();
+		for (int i = 0; i < fires; i++) {
+			for (EventListenerInterface listener : list.getListeners(EventListenerInterface.class)) {
+				if (isValid(list, listener)) {
+					listener.notifyListener(null);
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	@Test
+	public void addFireRemove() {
+
+		for (int size : SIZES) {
+			List<CountingListener> listeners = createListeners(size);
+			// the old list scans per listener, keep its amount of work bounded
+			int fires = Math.max(1, CALLS / size);
+			int oldFires = Math.max(1, CALLS / size / size);
+
+			long start = System.nanoTime();
+			WeakListenerList<EventListenerInterface> newList = new WeakListenerList<>();
+			for (CountingListener listener : listeners) {
+				newList.add(listener);
+			}
+			long newAdd = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			WeakEventListenerList2 oldList = new WeakEventListenerList2();
+			for (CountingListener listener : listeners) {
+				oldList.add(EventListenerInterface.class, listener);
+			}
+			long oldAdd = System.nanoTime() - start;
+
+			// warm up
+			fireNew(newList, fires);
+			fireOld(oldList, oldFires);
+
+			long newFire = fireNew(newList, fires) / fires;
+			long oldFire = fireOld(oldList, oldFires) / oldFires;
+			for (CountingListener listener : listeners) {
+				assertEquals(2 * (fires + oldFires), listener.calls);
+			}
+
+			start = System.nanoTime();
+			for (CountingListener listener : listeners) {
+				newList.remove(listener);
+			}
+			long newRemove = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (CountingListener listener : listeners) {
+				oldList.remove(EventListenerInterface.class, listener);
+			}
+			long oldRemove = System.nanoTime() - start;
+			assertEquals(0, newList.getReferences().length);
+
+			System.out.println(String.format("n=%d fire: new %.1f us old %.1f us, add: new %.1f us old %.1f us, remove: new %.1f us old %.1f us",
+					size, newFire / 1e3, oldFire / 1e3, newAdd / 1e3, oldAdd / 1e3, newRemove / 1e3, oldRemove / 1e3));
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package nl.tytech.core.client.event;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import nl.tytech.core.client.event.WeakListenerList.ListenerReference;
+
+/**
+ * Listeners removed from the copy on write WeakListenerList must be gone from new snapshots and invalid
+ * in old ones, while a snapshot that is being iterated never changes.
+ */
+public class WeakListenerListTest {
+
+	/**
+	 * Max time in ms to wait for the cleaner thread.
+	 */
+	private static final long CLEANER_TIMEOUT = 10000;
+
+	private static Object[] listeners(WeakListenerList<Object> list) {
+
+		List<Object> listeners = new ArrayList<>();
+		for (ListenerReference<Object> reference : list.getReferences()) {
+			listeners.add(reference.get());
+		}
+		return listeners.toArray();
+	}
+
+	@Test
+	public void addFirst() {
+
+		WeakListenerList<Object> list = new WeakListenerList<>();
+		Object a = new Object();
+		Object b = new Object();
+		Object priority = new Object();
+		list.add(a);
+		list.add(b);
+		list.add(priority, true);
+
+		assertArrayEquals(new Object[] { priority, a, b }, listeners(list));
+	}
+
+	@Test
+	public void removeKeepsSnapshot() {
+
+		WeakListenerList<Object> list = new WeakListenerList<>();
+		Object a = new Object();
+		Object b = new Object();
+		Object c = new Object();
+		list.add(a);
+		list.add(b);
+		list.add(c);
+
+		ListenerReference<Object>[] snapshot = list.getReferences();
+		list.remove(b);
+
+		// the snapshot being fired is unchanged, however knows b is removed
+		assertEquals(3, snapshot.length);
+		assertSame(b, snapshot[1].get());
+		assertFalse(snapshot[1].isValid());
+		assertTrue(snapshot[0].isValid());
+		assertTrue(snapshot[2].isValid());
+
+		assertArrayEquals(new Object[] { a, c }, listeners(list));
+	}
+
+	@Test
+	public void removeOnlyFirstRegistration() {
+
+		WeakListenerList<Object> list = new WeakListenerList<>();
+		Object a = new Object();
+		list.add(a);
+		list.add(a);
+
+		list.remove(a);
+		assertArrayEquals(new Object[] { a }, listeners(list));
+		assertTrue(list.hasListeners());
+
+		list.remove(a);
+		assertEquals(0, list.getReferences().length);
+		assertFalse(list.hasListeners());
+
+		// removing an unknown listener does nothing
+		list.remove(a);
+		list.remove(null);
+		assertEquals(0, list.getReferences().length);
+	}
+
+	@Test
+	public void collectedListenerRemoved() throws InterruptedException {
+
+		WeakListenerList<Object> list = new WeakListenerList<>();
+		Object kept = new Object();
+		list.add(kept);
+		list.add(new Object());
+
+		long end = System.currentTimeMillis() + CLEANER_TIMEOUT;
+		while (list.getReferences().length > 1 && System.currentTimeMillis() < end) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertArrayEquals(new Object[] { kept }, listeners(list));
+	}
+
+	@Test
+	public void removeWhileFiring() throws InterruptedException {
+
+		WeakListenerList<Object> list = new WeakListenerList<>();
+		List<Object> strong = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Object listener = new Object();
+			strong.add(listener);
+			list.add(listener);
+		}
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread firing = new Thread(() -> {
+			try {
+				while (running.get()) {
+					for (ListenerReference<Object> reference : list.getReferences()) {
+						reference.isValid();
+					}
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		firing.start();
+
+		for (Object listener : strong) {
+			list.remove(listener);
+		}
+		running.set(false);
+		firing.join();
+
+		assertNull(failure.get());
+		assertEquals(0, list.getReferences().length);
+	}
+}
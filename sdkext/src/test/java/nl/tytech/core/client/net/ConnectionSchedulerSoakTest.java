@@ -0,0 +1,172 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tytech.core.client.net.EventBatchingTest.StubConnection;
+import nl.tytech.core.net.Network.AppType;
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.engine.event.LogicEventType;
+import nl.tytech.util.RestManager.ResponseException;
+
+/**
+ * Soak test of the ConnectionScheduler: many connections poll a stub transport on a small pool while each
+ * keeps firing commands at a slow stub server. Every connection must keep receiving updates with a valid
+ * version request on no more polling threads than the pool size, and all commands must complete. Prints
+ * the amount of update requests and commands per second. Takes a while, run with mvn test -Psoak.
+ */
+public class ConnectionSchedulerSoakTest {
+
+	/**
+	 * Stub of the server, waits a while and reports that nothing changed.
+	 */
+	private static class StubTransport implements UpdateTransport {
+
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private final AtomicInteger invalidRequests = new AtomicInteger();
+
+		@Override
+		public UpdateResult fetchUpdate(String connectionTarget, HashMap<MapLink, Integer> versions,
+				UpdateResultReader.ItemHandler handler) throws ResponseException {
+
+			if (versions == null || !versions.containsKey(MapLink.SETTINGS)) {
+				invalidRequests.incrementAndGet();
+			}
+			requests.incrementAndGet();
+			try {
+				Thread.sleep(LATENCY);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return "Stub";
+		}
+
+		@Override
+		public boolean isUnsupported(ResponseException exp) {
+			return false;
+		}
+	}
+
+	private static final int CONNECTIONS = 250;
+
+	private static final int THREADS = 8;
+
+	/**
+	 * Time in ms the stub server takes for a request.
+	 */
+	private static final long LATENCY = 5;
+
+	/**
+	 * Time in ms the stub server takes for a command, much slower than an update so commands on the
+	 * polling threads would starve the updates.
+	 */
+	private static final long COMMAND_LATENCY = 100;
+
+	private static final long DURATION = 10000;
+
+	private static final String NAME = "Soak-Scheduler";
+
+	private ConnectionScheduler scheduler;
+
+	private final List<StubTransport> transports = new ArrayList<>();
+
+	private final AtomicInteger commands = new AtomicInteger();
+
+	private final AtomicInteger failedCommands = new AtomicInteger();
+
+	@Before
+	public void before() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS, MapLink.STAKEHOLDERS });
+		DataLord.setup(mapLinks);
+		scheduler = new ConnectionScheduler(NAME, THREADS);
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Fire a command and the next one when it is done, until the end time.
+	 */
+	private void fireCommands(StubConnection connection, long end) {
+
+		CompletableFuture<Object> future = connection.fireServerEventAsync(LogicEventType.SETTINGS_ALLOW_INTERACTION, true);
+		future.whenComplete((result, exp) -> {
+			if (exp == null) {
+				commands.incrementAndGet();
+			} else {
+				failedCommands.incrementAndGet();
+			}
+			if (System.currentTimeMillis() < end) {
+				fireCommands(connection, end);
+			}
+		});
+	}
+
+	@Test
+	public void soakManyConnections() throws InterruptedException {
+
+		long end = System.currentTimeMillis() + DURATION;
+		for (int i = 0; i < CONNECTIONS; i++) {
+			StubConnection connection = new StubConnection(i, scheduler);
+			connection.initSettings(AppType.PARTICIPANT, "localhost", i, "server" + i, "client" + i);
+			connection.latency = COMMAND_LATENCY;
+			StubTransport transport = new StubTransport();
+			transports.add(transport);
+			assertTrue(connection.connectStub(transport, SessionType.MULTI));
+			fireCommands(connection, end);
+		}
+		Thread.sleep(DURATION);
+
+		int total = 0;
+		int min = Integer.MAX_VALUE;
+		for (StubTransport transport : transports) {
+			assertEquals(0, transport.invalidRequests.get());
+			total += transport.requests.get();
+			min = Math.min(min, transport.requests.get());
+		}
+		System.out.println(CONNECTIONS + " connections on " + THREADS + " threads: " + (total * 1000 / DURATION)
+				+ " requests/s, least requests for one connection: " + min + ", " + (commands.get() * 1000 / DURATION)
+				+ " commands/s on " + scheduler.getBlockingThreads() + " blocking threads");
+
+		// one command in flight per connection
+		long commandShare = DURATION / COMMAND_LATENCY * CONNECTIONS;
+		assertEquals(0, failedCommands.get());
+		assertTrue("Commands starved: " + commands.get() + " of " + commandShare, commands.get() > commandShare / 4);
+
+		// pool is shared fairly, nobody starves
+		long fairShare = DURATION / LATENCY * THREADS / CONNECTIONS;
+		assertTrue("Connection starved: " + min + " of " + fairShare, min > fairShare / 4);
+
+		int pollingThreads = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().matches(NAME + "-\\d+")) {
+				pollingThreads++;
+			}
+		}
+		assertTrue(pollingThreads <= THREADS);
+	}
+}
@@ -0,0 +1,98 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tytech.core.client.net.EventBatchingTest.StubConnection;
+import nl.tytech.core.net.Network.AppType;
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.engine.event.LogicEventType;
+
+/**
+ * Fires a burst of server events at a stub server with a fixed latency per request, with and without
+ * batching, and prints the requests and events per second. Run with mvn test -Pbenchmark.
+ */
+public class EventBatchingBenchmark {
+
+	private static final int EVENTS = 500;
+
+	/**
+	 * Time in ms the stub server takes for a request.
+	 */
+	private static final long LATENCY = 5;
+
+	private static final long WINDOW = 5;
+
+	private static final int MAX_EVENTS = 50;
+
+	private static final int THREADS = 4;
+
+	private static final long TIMEOUT = 60;
+
+	private ConnectionScheduler scheduler;
+
+	@Before
+	public void before() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS });
+		DataLord.setup(mapLinks);
+		scheduler = new ConnectionScheduler("Batch-Benchmark", THREADS);
+	}
+
+	@After
+	public void after() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Fire the events and return the events per second.
+	 */
+	private double run(int connectionID, long window, String name) throws Exception {
+
+		StubConnection connection = new StubConnection(connectionID, scheduler);
+		connection.initSettings(AppType.PARTICIPANT, "localhost", 0, "server", "client");
+		connection.setEventBatching(window, MAX_EVENTS);
+		connection.latency = LATENCY;
+		try {
+			long start = System.nanoTime();
+			List<CompletableFuture<Object>> futures = new ArrayList<>();
+			for (int i = 0; i < EVENTS; i++) {
+				futures.add(connection.fireServerEventAsync(LogicEventType.SETTINGS_ALLOW_INTERACTION, i % 2 == 0));
+			}
+			for (CompletableFuture<Object> future : futures) {
+				future.get(TIMEOUT, TimeUnit.SECONDS);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			int requests = connection.paths.size();
+			System.out.println(name + ": " + EVENTS + " events in " + requests + " requests, " + Math.round(requests / seconds)
+					+ " requests/s, " + Math.round(EVENTS / seconds) + " events/s");
+			return EVENTS / seconds;
+		} finally {
+			connection.setEventBatching(0, 0);
+		}
+	}
+
+	@Test
+	public void requestsPerSecond() throws Exception {
+
+		// warm up
+		run(9100, 0, "Warm up");
+
+		double separate = run(9101, 0, "Separate");
+		double batched = run(9102, WINDOW, "Batched (" + WINDOW + " ms, max " + MAX_EVENTS + ")");
+		assertTrue("Batching is slower: " + batched + " < " + separate + " events/s", batched > separate);
+	}
+}
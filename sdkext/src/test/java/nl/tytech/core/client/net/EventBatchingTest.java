@@ -0,0 +1,280 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tytech.core.net.Network.AppType;
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.EventBatch;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.engine.event.LogicEventType;
+import nl.tytech.util.RestManager.ResponseException;
+import nl.tytech.util.RestUtils.BadRequestType;
+
+/**
+ * Server events fired within the batching window must reach the server in one batch request, each
+ * future must complete with its own result and a server without the batch call gets them one by one.
+ * Batches are commands: they keep the order of their keys and the max amount of commands in flight.
+ */
+public class EventBatchingTest {
+
+	/**
+	 * Connection that answers its posts itself instead of the server, after the latency.
+	 */
+	static class StubConnection extends SlotConnection {
+
+		final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+		private final AtomicInteger answers = new AtomicInteger();
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		final AtomicInteger maxInFlight = new AtomicInteger();
+
+		volatile boolean batchSupported = true;
+
+		/**
+		 * Time in ms the stub server takes for a request.
+		 */
+		volatile long latency = 0;
+
+		/**
+		 * When set single events wait for it.
+		 */
+		volatile CountDownLatch singleGate = null;
+
+		StubConnection(Integer connectionID, ConnectionScheduler scheduler) {
+			super(connectionID, scheduler);
+		}
+
+		@Override
+		<T> T post(String restPath, Object content, Class<T> responseClass) throws ResponseException {
+
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				if (latency > 0) {
+					Thread.sleep(latency);
+				}
+				CountDownLatch gate = singleGate;
+				if (gate != null && !(content instanceof EventBatch)) {
+					gate.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				return answer(restPath, content);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> T answer(String restPath, Object content) throws ResponseException {
+
+			paths.add(restPath);
+			if (content instanceof EventBatch) {
+				if (!batchSupported) {
+					throw new ResponseException(BadRequestType.INVALID_REQUEST, "Unknown call");
+				}
+				EventBatch batch = (EventBatch) content;
+				batchSizes.add(batch.events.size());
+				Object[] results = new Object[batch.events.size()];
+				for (int i = 0; i < results.length; i++) {
+					results[i] = answers.incrementAndGet();
+				}
+				return (T) results;
+			}
+			return (T) Integer.valueOf(answers.incrementAndGet());
+		}
+
+		int batchPosts() {
+			synchronized (paths) {
+				return (int) paths.stream().filter(path -> path.equals(BATCH_PATH)).count();
+			}
+		}
+
+		int singlePosts() {
+			return paths.size() - batchPosts();
+		}
+	}
+
+	static final String BATCH_PATH = "event/batch/";
+
+	private static final int CONNECTION_ID = 9000;
+
+	/**
+	 * Time in seconds to wait for a result, much longer than the windows below.
+	 */
+	private static final long TIMEOUT = 5;
+
+	private static final int THREADS = 4;
+
+	private ConnectionScheduler scheduler;
+
+	private StubConnection connection;
+
+	private static List<Object> join(List<CompletableFuture<Object>> futures) throws Exception {
+
+		List<Object> results = new ArrayList<>();
+		for (CompletableFuture<Object> future : futures) {
+			results.add(future.get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		return results;
+	}
+
+	@Before
+	public void before() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS });
+		DataLord.setup(mapLinks);
+		scheduler = new ConnectionScheduler("Batch-Test", THREADS);
+		connection = new StubConnection(CONNECTION_ID, scheduler);
+		connection.initSettings(AppType.PARTICIPANT, "localhost", 0, "server", "client");
+	}
+
+	@After
+	public void after() {
+		connection.setEventBatching(0, 0);
+		scheduler.shutdown();
+	}
+
+	private static void assertIncreasing(List<Object> results) {
+
+		for (int i = 1; i < results.size(); i++) {
+			assertTrue("Out of order: " + results, (Integer) results.get(i - 1) < (Integer) results.get(i));
+		}
+	}
+
+	private List<CompletableFuture<Object>> fire(int amount) {
+
+		List<CompletableFuture<Object>> futures = new ArrayList<>();
+		for (int i = 0; i < amount; i++) {
+			futures.add(connection.fireServerEventAsync(LogicEventType.SETTINGS_ALLOW_INTERACTION, i % 2 == 0));
+		}
+		return futures;
+	}
+
+	@Test
+	public void eventsInWindowShareOneRequest() throws Exception {
+
+		connection.setEventBatching(500, 100);
+		List<Object> results = join(fire(5));
+
+		assertEquals(Collections.singletonList(5), connection.batchSizes);
+		assertEquals(0, connection.singlePosts());
+		// results are given back in the order of the events
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), results);
+	}
+
+	@Test
+	public void maxEventsSendsBeforeWindow() throws Exception {
+
+		long start = System.currentTimeMillis();
+		connection.setEventBatching(60000, 3);
+		join(fire(6));
+
+		assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(TIMEOUT));
+		assertEquals(Arrays.asList(3, 3), connection.batchSizes);
+	}
+
+	@Test
+	public void singleEventIsPostedNormally() throws Exception {
+
+		connection.setEventBatching(20, 100);
+		join(fire(1));
+		join(fire(1));
+
+		assertTrue(connection.batchSizes.isEmpty());
+		assertEquals(2, connection.singlePosts());
+		assertEquals("event/" + LogicEventType.class.getSimpleName() + "/" + LogicEventType.SETTINGS_ALLOW_INTERACTION,
+				connection.paths.get(0));
+	}
+
+	@Test
+	public void unsupportedBatchFallsBack() throws Exception {
+
+		connection.batchSupported = false;
+		connection.setEventBatching(200, 100);
+		assertEquals(Arrays.asList(1, 2, 3), join(fire(3)));
+		assertEquals(1, connection.batchPosts());
+		assertEquals(3, connection.singlePosts());
+
+		// the batch call is not tried again
+		join(fire(3));
+		assertEquals(1, connection.batchPosts());
+		assertEquals(6, connection.singlePosts());
+	}
+
+	@Test
+	public void batchesKeepOrderOfKey() throws Exception {
+
+		// more commands in flight, however all events have the same key
+		connection.setMaxCommandsInFlight(THREADS);
+		connection.setEventBatching(60000, 2);
+		connection.latency = 10;
+		List<Object> results = join(fire(20));
+
+		assertEquals(10, connection.batchPosts());
+		assertEquals(1, connection.maxInFlight.get());
+		assertIncreasing(results);
+	}
+
+	@Test
+	public void batchWaitsForEarlierCommand() throws Exception {
+
+		// fired before batching is turned on and still busy
+		connection.singleGate = new CountDownLatch(1);
+		CompletableFuture<Object> single = connection.fireServerEventAsync(LogicEventType.SETTINGS_ALLOW_INTERACTION, true);
+
+		connection.setEventBatching(60000, 2);
+		List<CompletableFuture<Object>> batched = fire(2);
+		Thread.sleep(200);
+		assertEquals(0, connection.batchPosts());
+
+		connection.singleGate.countDown();
+		List<Object> results = new ArrayList<>();
+		results.add(single.get(TIMEOUT, TimeUnit.SECONDS));
+		results.addAll(join(batched));
+		assertIncreasing(results);
+		assertTrue(connection.paths.get(0).startsWith("event/" + LogicEventType.class.getSimpleName()));
+		assertEquals(BATCH_PATH, connection.paths.get(1));
+	}
+
+	@Test
+	public void batchesLimitedByCommandsInFlight() throws Exception {
+
+		connection.setMaxCommandsInFlight(2);
+		connection.setEventBatching(60000, 2);
+		connection.latency = 20;
+
+		// each batch gets its own key, so only the limit keeps them apart
+		List<CompletableFuture<Object>> futures = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(connection.fireServerEventAsyncOrdered(i / 2, LogicEventType.SETTINGS_ALLOW_INTERACTION, true));
+		}
+		join(futures);
+
+		assertEquals(10, connection.batchPosts());
+		assertTrue(connection.maxInFlight.get() <= 2);
+	}
+}
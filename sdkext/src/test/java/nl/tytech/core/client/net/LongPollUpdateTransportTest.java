@@ -0,0 +1,244 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.util.RestManager.Format;
+import nl.tytech.util.RestManager.ResponseException;
+import nl.tytech.util.RestUtils;
+
+/**
+ * The long poll transport against a small HTTP server that behaves like the update/wait/ call: the
+ * request is held until something changed or the wait time passed, then answered with no content.
+ */
+public class LongPollUpdateTransportTest {
+
+	private static final long CHANGE_TIME = 123456L;
+
+	/**
+	 * Time in ms the server holds a request in the tests that wait for a change.
+	 */
+	private static final long LONG_WAIT = 10000;
+
+	private static final long SHORT_WAIT = 200;
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	private String target;
+
+	private final Object changeLock = new Object();
+
+	private boolean changed = false;
+
+	private volatile boolean waitSupported = true;
+
+	private volatile String lastQuery = null;
+
+	private volatile String lastPath = null;
+
+	@Before
+	public void before() throws IOException {
+
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		target = "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	@After
+	public void after() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void change() {
+		synchronized (changeLock) {
+			changed = true;
+			changeLock.notifyAll();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+
+		lastPath = exchange.getRequestURI().getPath();
+		lastQuery = exchange.getRequestURI().getQuery();
+		while (exchange.getRequestBody().read() >= 0) {
+			// read the versions
+		}
+
+		if (!lastPath.equals("/update/wait/")) {
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+			return;
+		}
+		if (!waitSupported) {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+
+		long maxWait = Long.parseLong(getQueryParam(LongPollUpdateTransport.WAIT_PARAM));
+		boolean answer;
+		synchronized (changeLock) {
+			long end = System.currentTimeMillis() + maxWait;
+			while (!changed && System.currentTimeMillis() < end) {
+				try {
+					changeLock.wait(Math.max(1, end - System.currentTimeMillis()));
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			answer = changed;
+		}
+		if (!answer) {
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+			return;
+		}
+
+		UpdateResult result = new UpdateResult();
+		result.setTimeStamp(CHANGE_TIME);
+		byte[] bytes = (byte[]) RestUtils.writeObject(result, Format.ZIPTJSON);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private String getQueryParam(String name) {
+		for (String param : lastQuery.split("&")) {
+			if (param.startsWith(name + "=")) {
+				return param.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private static HashMap<MapLink, Integer> versions() {
+		HashMap<MapLink, Integer> versions = new HashMap<>();
+		versions.put(MapLink.SETTINGS, 4);
+		return versions;
+	}
+
+	private CompletableFuture<UpdateResult> fetchAsync(UpdateTransport transport) {
+
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return transport.fetchUpdate(target, versions(), null);
+			} catch (ResponseException e) {
+				throw new IllegalStateException(e);
+			}
+		}, executor);
+	}
+
+	@Test
+	public void heldUntilChange() throws Exception {
+
+		CompletableFuture<UpdateResult> future = fetchAsync(new LongPollUpdateTransport(LONG_WAIT, false));
+		try {
+			future.get(SHORT_WAIT * 2, TimeUnit.MILLISECONDS);
+			fail("Request must be held until something changed.");
+		} catch (TimeoutException e) {
+			// still waiting
+		}
+		assertEquals("/update/wait/", lastPath);
+		assertEquals(Long.toString(LONG_WAIT), getQueryParam(LongPollUpdateTransport.WAIT_PARAM));
+
+		long start = System.currentTimeMillis();
+		change();
+		UpdateResult result = future.get(LONG_WAIT / 2, TimeUnit.MILLISECONDS);
+		assertNotNull(result);
+		assertEquals(CHANGE_TIME, result.getTimeStamp());
+		assertTrue(System.currentTimeMillis() - start < LONG_WAIT / 2);
+	}
+
+	@Test
+	public void noContentAfterWait() throws Exception {
+
+		long start = System.currentTimeMillis();
+		assertNull(new LongPollUpdateTransport(SHORT_WAIT, false).fetchUpdate(target, versions(), null));
+		assertTrue(System.currentTimeMillis() - start >= SHORT_WAIT);
+	}
+
+	@Test
+	public void changeAnsweredDirectly() throws Exception {
+
+		change();
+		long start = System.currentTimeMillis();
+		UpdateResult result = new LongPollUpdateTransport(LONG_WAIT, false).fetchUpdate(target, versions(), null);
+		assertEquals(CHANGE_TIME, result.getTimeStamp());
+		assertTrue(System.currentTimeMillis() - start < LONG_WAIT / 2);
+	}
+
+	@Test
+	public void unsupportedServer() {
+
+		waitSupported = false;
+		try {
+			new LongPollUpdateTransport(SHORT_WAIT, false).fetchUpdate(target, versions(), null);
+			fail("Server without update/wait/ must give an exception.");
+		} catch (ResponseException exp) {
+			assertTrue(new LongPollUpdateTransport().isUnsupported(exp));
+			// the plain polling call is always supported
+			assertFalse(new PollingUpdateTransport().isUnsupported(exp));
+		}
+	}
+
+	@Test
+	public void fallbackKeepsSettings() throws Exception {
+
+		waitSupported = false;
+		PollingUpdateTransport fallback = new LongPollUpdateTransport(SHORT_WAIT, true).getFallback();
+		assertSame(PollingUpdateTransport.class, fallback.getClass());
+		assertTrue(fallback.isCompact());
+		assertEquals(Format.ZIPTJSON, fallback.getFormat());
+
+		// the fallback polls the plain update call, nothing changed
+		assertNull(fallback.fetchUpdate(target, versions(), null));
+		assertEquals("/update/vector/", lastPath);
+		assertNull(lastQuery);
+	}
+
+	@Test
+	public void fallbackSteps() {
+
+		// format is dropped first, then compact
+		PollingUpdateTransport smile = new PollingUpdateTransport(true, Format.ZIPSMILE);
+		PollingUpdateTransport compact = smile.getFallback();
+		assertTrue(compact.isCompact());
+		assertEquals(Format.ZIPTJSON, compact.getFormat());
+
+		PollingUpdateTransport plain = compact.getFallback();
+		assertFalse(plain.isCompact());
+		assertEquals(Format.ZIPTJSON, plain.getFormat());
+		assertFalse(plain.getFallback().isCompact());
+	}
+}
@@ -0,0 +1,158 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.event.EventManager.ItemManipulationEventType;
+import nl.tytech.core.client.event.ItemChangeSet;
+import nl.tytech.core.event.Event;
+import nl.tytech.core.event.EventListenerInterface;
+import nl.tytech.core.net.Network.AppType;
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Global;
+
+/**
+ * Status must fire CHANGED_ITEMS with the delta of each map of a server update, with the map snapshots
+ * before and after the update.
+ */
+public class StatusChangeSetTest {
+
+	/**
+	 * Collects the fired change sets.
+	 */
+	private static class ChangeSetListener implements EventListenerInterface {
+
+		private final BlockingQueue<ItemChangeSet<?>> changeSets = new LinkedBlockingQueue<>();
+
+		@Override
+		public void notifyListener(Event event) {
+			if (event.getType() == ItemManipulationEventType.CHANGED_ITEMS) {
+				assertSame(MapLink.GLOBALS, event.getContent(0));
+				changeSets.add(event.<ItemChangeSet<?>> getContent(1));
+			}
+		}
+	}
+
+	/**
+	 * Max time in ms to wait for the event.
+	 */
+	private static final long EVENT_TIMEOUT = 10000;
+
+	private final ChangeSetListener listener = new ChangeSetListener();
+
+	private TSlotConnection connection;
+
+	private Status status;
+
+	private static Global createGlobal(int id, int version) {
+
+		Global global = new Global();
+		global.setId(id);
+		global.setVersion(version);
+		global.setName("GLOBAL_" + id);
+		return global;
+	}
+
+	private static UpdateResult createResult(Item[] items, Item[] deletes) {
+
+		UpdateResult result = new UpdateResult();
+		if (items != null) {
+			result.getItems().put(MapLink.GLOBALS.name(), items);
+		}
+		if (deletes != null) {
+			result.getDeletes().put(MapLink.GLOBALS.name(), deletes);
+		}
+		return result;
+	}
+
+	@Before
+	public void before() {
+
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS, MapLink.GLOBALS });
+		DataLord.setup(mapLinks);
+
+		connection = TSlotConnection.createSlotConnection();
+		status = new Status(AppType.PARTICIPANT);
+		status.setSessionType(SessionType.MULTI, "test");
+		EventManager.addListener(listener, ItemManipulationEventType.CHANGED_ITEMS);
+	}
+
+	@After
+	public void after() {
+		EventManager.removeListener(listener);
+		status.deactivate();
+	}
+
+	private ItemChangeSet<?> update(UpdateResult result) throws InterruptedException {
+
+		status.updateVersions(connection, result);
+		ItemChangeSet<?> changeSet = listener.changeSets.poll(EVENT_TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull("No CHANGED_ITEMS event fired", changeSet);
+		return changeSet;
+	}
+
+	@Test
+	public void changedItemsFired() throws InterruptedException {
+
+		ItemChangeSet<?> added = update(createResult(new Item[] { createGlobal(0, 1), createGlobal(1, 1), createGlobal(2, 1) }, null));
+		assertSame(MapLink.GLOBALS, added.getMapLink());
+		assertEquals(Arrays.asList(0, 1, 2), added.getAddedIDs());
+		assertEquals(0, added.getBefore().size());
+		assertEquals(3, added.getAfter().size());
+
+		Global changed = createGlobal(1, 2);
+		ItemChangeSet<?> delta = update(createResult(new Item[] { changed }, new Item[] { createGlobal(2, 2) }));
+		assertEquals(Arrays.asList(1), delta.getChangedIDs());
+		assertEquals(Arrays.asList(2), delta.getDeletedIDs());
+		assertEquals(0, delta.getAddedIDs().size());
+
+		// snapshots stay as they were
+		assertEquals(1, delta.getBefore().get(1).getVersion());
+		assertNotNull(delta.getBefore().get(2));
+		assertSame(changed, delta.getAfter().get(1));
+		assertNull(delta.getAfter().get(2));
+		assertEquals(3, added.getAfter().size());
+	}
+
+	@Test
+	public void deletedAndPutAgain() throws InterruptedException {
+
+		Global old = createGlobal(4, 1);
+		update(createResult(new Item[] { old }, null));
+
+		// streamed order can give the delete before the put of the same ID
+		UpdateResult result = new UpdateResult();
+		UpdateResultReader.ItemHandler handler = status.getStreamHandler();
+		handler.startMap(MapLink.GLOBALS, true);
+		handler.item(createGlobal(4, 2));
+		handler.endMap();
+		handler.startMap(MapLink.GLOBALS, false);
+		handler.item(createGlobal(4, 3));
+		handler.endMap();
+
+		ItemChangeSet<?> delta = update(result);
+		assertEquals(Arrays.asList(4), delta.getChangedIDs());
+		assertEquals(0, delta.getDeletedIDs().size());
+		assertEquals(1, delta.getChange(4).getBeforeVersion());
+		assertEquals(3, delta.getChange(4).getAfterVersion());
+	}
+}
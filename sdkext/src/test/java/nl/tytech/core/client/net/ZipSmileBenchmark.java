@@ -0,0 +1,113 @@
+package nl.tytech.core.client.net;
+
+import static nl.tytech.core.client.net.ZipSmileUpdateTest.createGlobal;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Global;
+import nl.tytech.util.RestManager.Format;
+import nl.tytech.util.RestUtils;
+
+/**
+ * Compares the size of an update written as zipped typed JSON and as zipped Smile, and the time the
+ * UpdateResultReader takes to decode it, and prints both. Run with mvn test -Pbenchmark.
+ */
+public class ZipSmileBenchmark {
+
+	/**
+	 * Counts the items given to the handler while reading.
+	 */
+	private static class CountingHandler implements UpdateResultReader.ItemHandler {
+
+		private int items = 0;
+
+		@Override
+		public void endMap() {
+		}
+
+		@Override
+		public void item(Item item) {
+			items++;
+		}
+
+		@Override
+		public void startMap(MapLink mapLink, boolean deletes) {
+		}
+	}
+
+	private static final int[] SIZES = { 1000, 10000 };
+
+	private static final int ROUNDS = 50;
+
+	private static final int WARMUP = 10;
+
+	@BeforeClass
+	public static void setup() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS, MapLink.GLOBALS });
+		DataLord.setup(mapLinks);
+	}
+
+	private static UpdateResult createResult(int size) {
+
+		UpdateResult result = new UpdateResult();
+		Global[] globals = new Global[size];
+		for (int i = 0; i < globals.length; i++) {
+			globals[i] = createGlobal(i);
+		}
+		result.getItems().put(MapLink.GLOBALS.name(), globals);
+		return result;
+	}
+
+	private static int decode(Format format, byte[] bytes) throws IOException {
+
+		CountingHandler handler = new CountingHandler();
+		try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			UpdateResultReader.read(format, inputStream, handler);
+		}
+		return handler.items;
+	}
+
+	/**
+	 * Average decode time in ms.
+	 */
+	private static double decodeMillis(Format format, byte[] bytes, int size) throws IOException {
+
+		for (int i = 0; i < WARMUP; i++) {
+			decode(format, bytes);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			assertEquals(size, decode(format, bytes));
+		}
+		return (System.nanoTime() - start) / 1e6 / ROUNDS;
+	}
+
+	@Test
+	public void sizeAndDecodeTime() throws IOException {
+
+		for (int size : SIZES) {
+			UpdateResult result = createResult(size);
+			byte[] json = (byte[]) RestUtils.writeObject(result, Format.ZIPTJSON);
+			byte[] smile = (byte[]) RestUtils.writeObject(result, Format.ZIPSMILE);
+
+			double jsonMillis = decodeMillis(Format.ZIPTJSON, json, size);
+			double smileMillis = decodeMillis(Format.ZIPSMILE, smile, size);
+			System.out.println(String.format("n=%d ZIPTJSON %d bytes %.2f ms, ZIPSMILE %d bytes %.2f ms", size, json.length, jsonMillis,
+					smile.length, smileMillis));
+		}
+	}
+}
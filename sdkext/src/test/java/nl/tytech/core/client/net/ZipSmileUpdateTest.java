@@ -0,0 +1,166 @@
+package nl.tytech.core.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.net.serializable.UpdateResult;
+import nl.tytech.core.structure.DataLord;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.Global;
+import nl.tytech.util.JsonMapper;
+import nl.tytech.util.RestManager.Format;
+import nl.tytech.util.RestUtils;
+
+/**
+ * An update written as zipped Smile by the server must be read back by the UpdateResultReader with the
+ * same items as zipped typed JSON.
+ */
+public class ZipSmileUpdateTest {
+
+	/**
+	 * Collects the items given to the handler while reading.
+	 */
+	private static class CollectingHandler implements UpdateResultReader.ItemHandler {
+
+		private final List<Item> items = new ArrayList<>();
+
+		private int maps = 0;
+
+		@Override
+		public void endMap() {
+			maps++;
+		}
+
+		@Override
+		public void item(Item item) {
+			items.add(item);
+		}
+
+		@Override
+		public void startMap(MapLink mapLink, boolean deletes) {
+			assertEquals(MapLink.GLOBALS, mapLink);
+		}
+	}
+
+	private static final int GLOBALS = 50;
+
+	private static final long TIME_STAMP = 1234567L;
+
+	@BeforeClass
+	public static void setup() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS, MapLink.GLOBALS });
+		DataLord.setup(mapLinks);
+	}
+
+	private static void assertSameResult(UpdateResult expected, UpdateResult actual) {
+
+		assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+		assertSameItems(expected.getItems().get(MapLink.GLOBALS.name()), actual.getItems().get(MapLink.GLOBALS.name()));
+		assertSameItems(expected.getDeletes().get(MapLink.GLOBALS.name()), actual.getDeletes().get(MapLink.GLOBALS.name()));
+	}
+
+	private static void assertSameItems(Item[] expected, Item[] actual) {
+
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			Global expectedGlobal = (Global) expected[i];
+			Global actualGlobal = (Global) actual[i];
+			assertSame(Global.class, actualGlobal.getClass());
+			assertEquals(expectedGlobal.getID(), actualGlobal.getID());
+			assertEquals(expectedGlobal.getVersion(), actualGlobal.getVersion());
+			assertEquals(expectedGlobal.getName(), actualGlobal.getName());
+			assertEquals(expectedGlobal.getStartValue(), actualGlobal.getStartValue(), 0);
+			assertEquals(expectedGlobal.getActualValue(), actualGlobal.getActualValue(), 0);
+		}
+	}
+
+	static Global createGlobal(int id) {
+
+		Global global = new Global();
+		global.setId(id);
+		global.setVersion(1 + id % 5);
+		global.setName("GLOBAL_" + id);
+		global.setStartValue(id * 1.5);
+		global.setActualValue(id / 3.0);
+		return global;
+	}
+
+	private static UpdateResult createResult() {
+
+		UpdateResult result = new UpdateResult();
+		Global[] globals = new Global[GLOBALS];
+		for (int i = 0; i < globals.length; i++) {
+			globals[i] = createGlobal(i);
+		}
+		result.getItems().put(MapLink.GLOBALS.name(), globals);
+		result.getDeletes().put(MapLink.GLOBALS.name(), new Global[] { createGlobal(GLOBALS) });
+		result.setTimeStamp(TIME_STAMP);
+		return result;
+	}
+
+	/**
+	 * Write the result like the server does and read it back like the Updater does.
+	 */
+	private static UpdateResult roundTrip(Format format, UpdateResult result, CollectingHandler handler) throws IOException {
+
+		byte[] bytes = (byte[]) RestUtils.writeObject(result, format);
+		try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			return UpdateResultReader.read(format, inputStream, handler);
+		}
+	}
+
+	@Test
+	public void contentIsTypedJson() {
+
+		// requests stay typed JSON, only the reply is Smile
+		assertEquals(Format.ZIPTJSON, Format.ZIPSMILE.getContentFormat());
+
+		assertEquals(Format.ZIPSMILE, new PollingUpdateTransport(false, Format.ZIPSMILE).getFormat());
+		assertNotNull(JsonMapper.getMapper(Format.ZIPSMILE));
+	}
+
+	@Test
+	public void zipSmileMatchesZipTJson() throws IOException {
+
+		UpdateResult result = createResult();
+		UpdateResult smile = roundTrip(Format.ZIPSMILE, result, new CollectingHandler());
+		UpdateResult json = roundTrip(Format.ZIPTJSON, result, new CollectingHandler());
+		assertSameResult(json, smile);
+	}
+
+	@Test
+	public void zipSmileRoundTrip() throws IOException {
+
+		UpdateResult result = createResult();
+		CollectingHandler handler = new CollectingHandler();
+		assertSameResult(result, roundTrip(Format.ZIPSMILE, result, handler));
+
+		// items and deletes are both streamed to the handler
+		assertEquals(2, handler.maps);
+		assertEquals(GLOBALS + 1, handler.items.size());
+	}
+
+	@Test
+	public void zipTJsonRoundTrip() throws IOException {
+
+		UpdateResult result = createResult();
+		CollectingHandler handler = new CollectingHandler();
+		assertSameResult(result, roundTrip(Format.ZIPTJSON, result, handler));
+		assertEquals(GLOBALS + 1, handler.items.size());
+	}
+}
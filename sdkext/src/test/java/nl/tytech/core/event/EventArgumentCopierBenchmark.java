@@ -0,0 +1,75 @@
+package nl.tytech.core.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.MultiPolygon;
+
+import nl.tytech.data.core.item.CodedEvent;
+import nl.tytech.data.engine.event.LogicEventType;
+import nl.tytech.util.JTSUtils;
+import nl.tytech.util.ObjectUtils;
+
+/**
+ * Compares copying the arguments of a server event with a MultiPolygon of 10 to 10k squares by
+ * serialization, as fireServerEventAsync did before, and with the EventArgumentCopier, and prints the time
+ * of both. Run with mvn test -Pbenchmark.
+ */
+public class EventArgumentCopierBenchmark {
+
+	private static final int[] SIZES = { 10, 1000, 10000 };
+
+	private static final int ROUNDS = 20;
+
+	private static final int WARMUP = 5;
+
+	private static final double SIZE = 10;
+
+	private static Object[] createArguments(int squares) {
+
+		List<MultiPolygon> polygons = new ArrayList<>();
+		for (int i = 0; i < squares; i++) {
+			// disjoint, so each square stays a polygon
+			polygons.add(JTSUtils.createSquare(i * SIZE * 2, 0, SIZE, SIZE));
+		}
+		MultiPolygon multiPolygon = JTSUtils.unionCascaded(polygons);
+		assertEquals(squares, multiPolygon.getNumGeometries());
+		CodedEvent event = new CodedEvent(LogicEventType.SETTINGS_ALLOW_INTERACTION, true, "text", new int[] { 1, 2, 3 });
+		return new Object[] { Integer.valueOf(1), multiPolygon, event };
+	}
+
+	/**
+	 * Average time in ms of a copy.
+	 */
+	private static double copyMillis(Object[] arguments, boolean serialize) {
+
+		for (int i = 0; i < WARMUP; i++) {
+			copy(arguments, serialize);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			copy(arguments, serialize);
+		}
+		return (System.nanoTime() - start) / 1e6 / ROUNDS;
+	}
+
+	private static Object[] copy(Object[] arguments, boolean serialize) {
+		return serialize ? ObjectUtils.deepCopy(arguments) : EventArgumentCopier.copyArray(arguments);
+	}
+
+	@Test
+	public void copyArguments() {
+
+		for (int size : SIZES) {
+			Object[] arguments = createArguments(size);
+			double serializedMillis = copyMillis(arguments, true);
+			double copierMillis = copyMillis(arguments, false);
+			System.out.println(String.format("%d squares: serialization %.3f ms, EventArgumentCopier %.3f ms", size,
+					serializedMillis, copierMillis));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package nl.tytech.core.event;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import nl.tytech.data.core.item.CodedEvent;
+import nl.tytech.data.engine.event.LogicEventType;
+
+/**
+ * Arguments copied by the EventArgumentCopier must be equal to the originals and not change when the
+ * caller changes its own objects afterwards. Immutable arguments are passed as they are.
+ */
+public class EventArgumentCopierTest {
+
+	private static CodedEvent createCodedEvent(int[] values) {
+
+		CodedEvent event = new CodedEvent(LogicEventType.SETTINGS_ALLOW_INTERACTION, true, "text", values);
+		event.setID(7);
+		return event;
+	}
+
+	@Test
+	public void arrayKeepsComponentType() {
+
+		String[] strings = { "a", null, "c" };
+		String[] copy = EventArgumentCopier.copyArray(strings);
+
+		assertNotSame(strings, copy);
+		assertSame(String[].class, copy.getClass());
+		assertArrayEquals(strings, copy);
+		assertNull(EventArgumentCopier.copyArray(null));
+	}
+
+	@Test
+	public void codedEvent() {
+
+		int[] values = { 1, 2, 3 };
+		CodedEvent event = createCodedEvent(values);
+		CodedEvent copy = EventArgumentCopier.copy(event);
+
+		assertNotSame(event, copy);
+		assertEquals(event.getID(), copy.getID());
+		assertSame(LogicEventType.SETTINGS_ALLOW_INTERACTION, copy.getType());
+		assertEquals(event.getParameters().size(), copy.getParameters().size());
+		assertSame(event.getParameter(2), copy.getParameter(2));
+
+		// the parameter list and its mutable parameters are copied
+		assertNotSame(event.getParameters(), copy.getParameters());
+		int[] copiedValues = copy.getParameter(3);
+		assertNotSame(values, copiedValues);
+		assertArrayEquals(values, copiedValues);
+
+		values[0] = 10;
+		event.getParameters().add("later");
+		assertEquals(1, ((int[]) copy.getParameter(3))[0]);
+		assertEquals(4, copy.getParameters().size());
+	}
+
+	@Test
+	public void codedEventArray() {
+
+		CodedEvent[] events = { createCodedEvent(new int[] { 1 }), createCodedEvent(new int[] { 2 }) };
+		CodedEvent[] copy = EventArgumentCopier.copy(events);
+
+		assertNotSame(events, copy);
+		assertSame(CodedEvent[].class, copy.getClass());
+		for (int i = 0; i < events.length; i++) {
+			assertNotSame(events[i], copy[i]);
+			assertEquals(events[i].getID(), copy[i].getID());
+			assertArrayEquals((int[]) events[i].getParameter(3), (int[]) copy[i].getParameter(3));
+		}
+	}
+
+	@Test
+	public void immutablePassed() {
+
+		String text = "text";
+		Integer number = Integer.valueOf(1000);
+		Double fraction = Double.valueOf(0.5);
+		assertSame(text, EventArgumentCopier.copy(text));
+		assertSame(number, EventArgumentCopier.copy(number));
+		assertSame(fraction, EventArgumentCopier.copy(fraction));
+		assertSame(Boolean.TRUE, EventArgumentCopier.copy(Boolean.TRUE));
+		assertSame(LogicEventType.SETTINGS_ALLOW_INTERACTION, EventArgumentCopier.copy(LogicEventType.SETTINGS_ALLOW_INTERACTION));
+		assertNull(EventArgumentCopier.copy(null));
+	}
+
+	@Test
+	public void nestedArrays() {
+
+		double[][] matrix = { { 1, 2 }, { 3, 4 } };
+		double[][] copy = EventArgumentCopier.copy(matrix);
+
+		assertNotSame(matrix, copy);
+		assertNotSame(matrix[0], copy[0]);
+		matrix[0][0] = 10;
+		assertEquals(1, copy[0][0], 0);
+		assertEquals(4, copy[1][1], 0);
+	}
+
+	@Test
+	public void otherClassesSerialized() {
+
+		ArrayList<Integer> list = new ArrayList<>(Arrays.asList(1, 2, 3));
+		ArrayList<Integer> copy = EventArgumentCopier.copy(list);
+
+		assertNotSame(list, copy);
+		assertEquals(list, copy);
+		list.add(4);
+		assertEquals(3, copy.size());
+	}
+
+	@Test
+	public void primitiveArray() {
+
+		int[] values = { 1, 2, 3 };
+		int[] copy = EventArgumentCopier.copy(values);
+
+		assertNotSame(values, copy);
+		assertArrayEquals(values, copy);
+		values[1] = 20;
+		assertEquals(2, copy[1]);
+	}
+}
@@ -0,0 +1,74 @@
+package nl.tytech.core.structure;
+
+import static nl.tytech.core.structure.ClientItemMapVersionTest.createMap;
+import static nl.tytech.core.structure.ClientItemMapVersionTest.scanVersion;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tytech.core.structure.ClientItemMapVersionTest.VersionItem;
+
+/**
+ * Compares copy + version of a ClientItemMap after a small update with a copied TreeMap that is scanned for
+ * the highest version, like the map did before, and prints the average time of both. Run with mvn test
+ * -Pbenchmark.
+ */
+public class ClientItemMapBenchmark {
+
+	/**
+	 * Items in each update.
+	 */
+	private static final int UPDATE = 10;
+
+	private static final int ROUNDS = 500;
+
+	private static final int[] SIZES = { 1000, 10000, 50000 };
+
+	@Test
+	public void copyAndVersion() {
+
+		for (int size : SIZES) {
+			ClientItemMap<VersionItem> map = createMap(size);
+			TreeMap<Integer, VersionItem> treeMap = new TreeMap<>();
+			for (VersionItem item : map) {
+				treeMap.put(item.getID(), item);
+			}
+
+			Random random = new Random(size);
+			long trieNanos = 0;
+			long treeNanos = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				VersionItem[] update = new VersionItem[UPDATE];
+				for (int i = 0; i < UPDATE; i++) {
+					int id = random.nextInt(size);
+					update[i] = new VersionItem(id, 8 + round);
+				}
+
+				long start = System.nanoTime();
+				TreeMap<Integer, VersionItem> treeCopy = new TreeMap<>(treeMap);
+				for (VersionItem item : update) {
+					treeCopy.put(item.getID(), item);
+				}
+				int treeVersion = scanVersion(treeCopy.values());
+				treeNanos += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				ClientItemMap<VersionItem> copy = new ClientItemMap<>(map);
+				for (VersionItem item : update) {
+					copy.put(item.getID(), item);
+				}
+				int trieVersion = copy.getVersion();
+				trieNanos += System.nanoTime() - start;
+
+				assertEquals(treeVersion, trieVersion);
+				treeMap = treeCopy;
+				map = copy;
+			}
+			System.out.println("n=" + size + " TreeMap copy+scan " + (treeNanos / ROUNDS / 1000) + " us, trie "
+					+ (trieNanos / ROUNDS / 1000.0) + " us");
+		}
+	}
+}
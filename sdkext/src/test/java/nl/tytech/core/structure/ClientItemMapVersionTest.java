@@ -0,0 +1,106 @@
+package nl.tytech.core.structure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.tytech.data.core.item.Item;
+
+/**
+ * The version of a ClientItemMap is kept up to date on put and remove and must always be the highest
+ * version of its items.
+ */
+public class ClientItemMapVersionTest {
+
+	static class VersionItem extends Item {
+
+		private static final long serialVersionUID = 1L;
+
+		VersionItem(int id, int version) {
+			setId(id);
+			setVersion(version);
+		}
+
+		@Override
+		public String toString() {
+			return getID() + "@" + getVersion();
+		}
+	}
+
+	static ClientItemMap<VersionItem> createMap(int size) {
+
+		ClientItemMap<VersionItem> map = new ClientItemMap<>();
+		for (int id = 0; id < size; id++) {
+			map.put(id, new VersionItem(id, 1 + id % 7));
+		}
+		return map;
+	}
+
+	static int scanVersion(Iterable<VersionItem> items) {
+
+		int version = 0;
+		for (VersionItem item : items) {
+			if (item != null) {
+				version = Math.max(version, item.getVersion());
+			}
+		}
+		return version;
+	}
+
+	@Test
+	public void copyKeepsVersion() {
+
+		ClientItemMap<VersionItem> map = createMap(100);
+		ClientItemMap<VersionItem> copy = new ClientItemMap<>(map);
+		copy.put(5, new VersionItem(5, 20));
+
+		assertEquals(7, map.getVersion());
+		assertEquals(20, copy.getVersion());
+	}
+
+	@Test
+	public void emptyMapVersion() {
+
+		ClientItemMap<VersionItem> map = new ClientItemMap<>();
+		assertEquals(0, map.getVersion());
+
+		map.put(3, new VersionItem(3, 4));
+		map.remove(3);
+		assertEquals(0, map.getVersion());
+	}
+
+	@Test
+	public void highestVersionLowered() {
+
+		ClientItemMap<VersionItem> map = createMap(100);
+		map.put(40, new VersionItem(40, 12));
+		map.put(80, new VersionItem(80, 10));
+		assertEquals(12, map.getVersion());
+
+		// replace the highest item with a lower version, the next highest remains
+		map.put(40, new VersionItem(40, 2));
+		assertEquals(10, map.getVersion());
+
+		// remove the highest item
+		map.remove(80);
+		assertEquals(7, map.getVersion());
+	}
+
+	@Test
+	public void versionMatchesScan() {
+
+		Random random = new Random(3);
+		ClientItemMap<VersionItem> map = new ClientItemMap<>();
+		for (int i = 0; i < 20000; i++) {
+			int id = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				map.remove(id);
+			} else {
+				map.put(id, new VersionItem(id, random.nextInt(1000)));
+			}
+			assertEquals(scanVersion(map), map.getVersion());
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package nl.tytech.core.structure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemNamespace.Filter;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.util.PackageUtils;
+
+/**
+ * Walks all fields of a large item set, a number of new instances of every item class in the namespace,
+ * with the FieldAccessors and with reflective Field access, and prints the time per field of both. Run
+ * with mvn test -Pbenchmark.
+ */
+public class FieldAccessorBenchmark {
+
+	/**
+	 * Instances per item class.
+	 */
+	private static final int INSTANCES = 200;
+
+	private static final int ROUNDS = 20;
+
+	private static final int WARMUP = 10;
+
+	private static final List<Item> items = new ArrayList<>();
+
+	private static int fieldCount = 0;
+
+	@BeforeClass
+	public static void setup() throws ReflectiveOperationException {
+
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS });
+		DataLord.setup(mapLinks);
+
+		for (String packageName : DataLord.getNamespacePackages()) {
+			for (String className : PackageUtils.getPackageClassNames(packageName)) {
+				Class<?> classz = Class.forName(className);
+				if (!Item.class.isAssignableFrom(classz) || Modifier.isAbstract(classz.getModifiers())
+						|| !ItemNamespace.containsClass(classz)) {
+					continue;
+				}
+				for (int i = 0; i < INSTANCES; i++) {
+					items.add((Item) classz.newInstance());
+				}
+				fieldCount += INSTANCES * ItemNamespace.getAccessors(classz, Filter.ALL).size();
+			}
+		}
+	}
+
+	private static int walkAccessors() {
+
+		int values = 0;
+		for (Item item : items) {
+			for (FieldAccessor accessor : ItemNamespace.getAccessors(item.getClass(), Filter.ALL)) {
+				if (accessor.get(item) != null) {
+					values++;
+				}
+			}
+		}
+		return values;
+	}
+
+	private static int walkFields() throws IllegalAccessException {
+
+		int values = 0;
+		for (Item item : items) {
+			for (Field field : ItemNamespace.getFields(item.getClass(), Filter.ALL)) {
+				if (field.get(item) != null) {
+					values++;
+				}
+			}
+		}
+		return values;
+	}
+
+	@Test
+	public void walkAllFields() throws IllegalAccessException {
+
+		int values = walkAccessors();
+		assertEquals(values, walkFields());
+		for (int i = 0; i < WARMUP; i++) {
+			walkAccessors();
+			walkFields();
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			walkAccessors();
+		}
+		double accessorNanos = (System.nanoTime() - start) / (double) ROUNDS / fieldCount;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			walkFields();
+		}
+		double fieldNanos = (System.nanoTime() - start) / (double) ROUNDS / fieldCount;
+
+		System.out.println(String.format("%d items, %d fields: FieldAccessor %.1f ns, Field %.1f ns per field", items.size(), fieldCount,
+				accessorNanos, fieldNanos));
+	}
+}
@@ -0,0 +1,123 @@
+package nl.tytech.core.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemNamespace.Filter;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.item.ActionMenu;
+import nl.tytech.data.engine.item.Global;
+
+/**
+ * FieldAccessors must read and write private and final fields like reflective Field access does. Final
+ * fields have no setter handle and are set reflectively.
+ */
+public class FieldAccessorTest {
+
+	private static class Fields {
+
+		private int number = 3;
+
+		private final String name;
+
+		private final int finalNumber;
+
+		private Fields(String name, int finalNumber) {
+			this.name = name;
+			this.finalNumber = finalNumber;
+		}
+	}
+
+	@BeforeClass
+	public static void setup() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS });
+		DataLord.setup(mapLinks);
+	}
+
+	private static FieldAccessor accessor(String name) throws ReflectiveOperationException {
+		return new FieldAccessor(Fields.class.getDeclaredField(name));
+	}
+
+	@Test
+	public void finalFields() throws ReflectiveOperationException {
+
+		Fields fields = new Fields("first", 1);
+		FieldAccessor name = accessor("name");
+		FieldAccessor finalNumber = accessor("finalNumber");
+		assertEquals("first", name.get(fields));
+		assertEquals(1, finalNumber.get(fields));
+
+		name.set(fields, "second");
+		finalNumber.set(fields, 2);
+		assertEquals("second", name.get(fields));
+		assertEquals(2, finalNumber.get(fields));
+		assertEquals("second", name.getField().get(fields));
+		assertEquals(2, finalNumber.getField().get(fields));
+	}
+
+	@Test
+	public void finalItemField() {
+
+		FieldAccessor accessor = ItemNamespace.getAccessor(ActionMenu.class, "videoID");
+		assertNotNull(accessor);
+
+		ActionMenu menu = new ActionMenu();
+		assertEquals(Item.NONE, accessor.get(menu));
+		accessor.set(menu, 5);
+		assertEquals(5, accessor.get(menu));
+	}
+
+	@Test
+	public void itemFieldsMatchReflection() throws IllegalAccessException {
+
+		Global global = new Global();
+		global.setName("GLOBAL");
+		global.setStartValue(2.5);
+		for (FieldAccessor accessor : ItemNamespace.getAccessors(Global.class, Filter.ALL)) {
+			Field field = accessor.getField();
+			assertEquals(accessor.toString(), field.get(global), accessor.get(global));
+		}
+	}
+
+	@Test
+	public void privateField() throws ReflectiveOperationException {
+
+		Fields fields = new Fields("first", 1);
+		FieldAccessor number = accessor("number");
+		assertEquals(3, number.get(fields));
+		number.set(fields, 4);
+		assertEquals(4, fields.number);
+		assertEquals(int.class, number.getType());
+	}
+
+	@Test
+	public void wrongType() throws ReflectiveOperationException {
+
+		Fields fields = new Fields("first", 1);
+		try {
+			accessor("number").set(fields, "text");
+			fail("A String must not fit in an int field.");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		try {
+			accessor("finalNumber").set(fields, "text");
+			fail("A String must not fit in a final int field.");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		assertEquals(3, fields.number);
+		assertEquals(1, fields.finalNumber);
+	}
+}
@@ -0,0 +1,119 @@
+package nl.tytech.core.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.tytech.core.item.annotations.XMLValue;
+import nl.tytech.core.net.Network.SessionType;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemNamespace.Filter;
+import nl.tytech.core.structure.ItemNamespaceIndex.IndexedClass;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.util.PackageUtils;
+
+/**
+ * The item namespace index written by the sdk build must be on the classpath, match the classes and
+ * give the same names and fields as scanning the packages. Its build stamp must change when the classes do.
+ */
+public class ItemNamespaceIndexTest {
+
+	@BeforeClass
+	public static void setup() {
+		Map<SessionType, MapLink[]> mapLinks = new EnumMap<>(SessionType.class);
+		mapLinks.put(SessionType.MULTI, new MapLink[] { MapLink.SETTINGS });
+		DataLord.setup(mapLinks);
+	}
+
+	/**
+	 * XML fields of the class as found by scanning, null for enums.
+	 */
+	private static List<Field> scanFields(Class<?> classz) {
+
+		if (classz.isEnum()) {
+			return null;
+		}
+		List<Field> fields = new ArrayList<>();
+		Class<?> walkClassz = classz;
+		while (walkClassz != null && walkClassz != Item.class && walkClassz != Object.class) {
+			for (Field field : walkClassz.getDeclaredFields()) {
+				if (field.isAnnotationPresent(XMLValue.class)) {
+					fields.add(field);
+				}
+			}
+			walkClassz = walkClassz.getSuperclass();
+		}
+		return fields;
+	}
+
+	@Test
+	public void stampChangesWithClasses() throws IOException {
+
+		File directory = Files.createTempDirectory("namespace").toFile();
+		try {
+			File first = new File(directory, "First.class");
+			File second = new File(directory, "Second.class");
+			assertTrue(first.createNewFile() && second.createNewFile());
+			first.setLastModified(1000000);
+			second.setLastModified(2000000);
+			String stamp = ItemNamespaceIndex.stamp(directory);
+
+			// other files do not matter
+			assertTrue(new File(directory, "notes.txt").createNewFile());
+			assertEquals(stamp, ItemNamespaceIndex.stamp(directory));
+
+			// compiled again
+			first.setLastModified(3000000);
+			String compiled = ItemNamespaceIndex.stamp(directory);
+			assertNotEquals(stamp, compiled);
+
+			// removed
+			assertTrue(second.delete());
+			assertNotEquals(compiled, ItemNamespaceIndex.stamp(directory));
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void indexedClassesMatchScan() {
+
+		for (String packageName : DataLord.getNamespacePackages()) {
+			List<String> indexed = ItemNamespaceIndex.getClassNames(packageName);
+			assertNotNull("Package missing or outdated in index: " + packageName, indexed);
+			assertEquals(new HashSet<>(PackageUtils.getPackageClassNames(packageName)), new HashSet<>(indexed));
+		}
+	}
+
+	@Test
+	public void indexedFieldsMatchScan() throws ClassNotFoundException {
+
+		for (String packageName : DataLord.getNamespacePackages()) {
+			for (IndexedClass indexedClass : ItemNamespaceIndex.getClasses(packageName)) {
+				if (indexedClass.simpleName.isEmpty()) {
+					continue;
+				}
+				Class<?> classz = Class.forName(indexedClass.className);
+				assertEquals(indexedClass.simpleName, ItemNamespace.getSimpleName(classz));
+				assertEquals(indexedClass.className, scanFields(classz), ItemNamespace.getFields(classz, Filter.ALL));
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package nl.tytech.core.structure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import nl.tytech.data.core.item.Item;
+
+/**
+ * The persistent ItemTrie must behave like the TreeMap it replaced: same values, iteration in key order,
+ * same size and last key, also for keys put with a null item. Nodes switch between sparse and dense at 16
+ * and 8 used slots, which is crossed in both directions.
+ */
+public class ItemTrieTest {
+
+	private static class TrieItem extends Item {
+
+		private static final long serialVersionUID = 1L;
+
+		private TrieItem(int id, int version) {
+			setId(id);
+			setVersion(version);
+		}
+
+		@Override
+		public String toString() {
+			return getID() + "@" + getVersion();
+		}
+	}
+
+	private static final int OPERATIONS = 20000;
+
+	private static void assertSameContent(TreeMap<Integer, TrieItem> expected, ItemTrie<TrieItem> trie) {
+
+		assertEquals(expected.size(), trie.size());
+		assertEquals(expected.isEmpty() ? Item.NONE : expected.lastKey().intValue(), trie.getLastKey());
+
+		int version = 0;
+		Iterator<TrieItem> iterator = trie.iterator();
+		for (Entry<Integer, TrieItem> entry : expected.entrySet()) {
+			assertTrue(iterator.hasNext());
+			assertSame(entry.getValue(), iterator.next());
+			assertTrue(trie.containsKey(entry.getKey()));
+			assertSame(entry.getValue(), trie.get(entry.getKey()));
+			if (entry.getValue() != null) {
+				version = Math.max(version, entry.getValue().getVersion());
+			}
+		}
+		assertFalse(iterator.hasNext());
+		assertEquals(version, trie.getVersion());
+	}
+
+	private static List<TrieItem> values(ItemTrie<TrieItem> trie) {
+
+		List<TrieItem> values = new ArrayList<>();
+		for (TrieItem item : trie) {
+			values.add(item);
+		}
+		return values;
+	}
+
+	@Test
+	public void denseAndSparse() {
+
+		TreeMap<Integer, TrieItem> expected = new TreeMap<>();
+		ItemTrie<TrieItem> trie = ItemTrie.empty();
+
+		// fill one leaf past 16 slots in a scattered order, then empty it below 8 slots
+		for (int i = 0; i < 32; i++) {
+			int key = i * 7 % 32;
+			TrieItem item = new TrieItem(key, 1 + i);
+			expected.put(key, item);
+			trie = trie.put(key, item);
+			assertSameContent(expected, trie);
+		}
+		for (int i = 0; i < 32; i++) {
+			int key = i * 11 % 32;
+			expected.remove(key);
+			trie = trie.remove(key);
+			assertSameContent(expected, trie);
+		}
+		assertNull(trie.get(0));
+		assertEquals(Item.NONE.intValue(), trie.getLastKey());
+	}
+
+	@Test
+	public void negativeKey() {
+
+		ItemTrie<TrieItem> trie = ItemTrie.<TrieItem> empty().put(3, new TrieItem(3, 1));
+		assertNull(trie.get(Item.NONE));
+		assertFalse(trie.containsKey(Item.NONE));
+		assertSame(trie, trie.remove(Item.NONE));
+	}
+
+	@Test
+	public void nullItem() {
+
+		ItemTrie<TrieItem> trie = ItemTrie.empty();
+		TrieItem item = new TrieItem(1, 4);
+		trie = trie.put(1, item).put(5, null);
+
+		assertTrue(trie.containsKey(5));
+		assertNull(trie.get(5));
+		assertEquals(2, trie.size());
+		assertEquals(5, trie.getLastKey());
+		assertEquals(4, trie.getVersion());
+		assertEquals(2, values(trie).size());
+		assertNull(values(trie).get(1));
+
+		trie = trie.remove(5);
+		assertFalse(trie.containsKey(5));
+		assertEquals(1, trie.size());
+		assertEquals(1, trie.getLastKey());
+	}
+
+	@Test
+	public void persistent() {
+
+		ItemTrie<TrieItem> empty = ItemTrie.empty();
+		ItemTrie<TrieItem> first = empty.put(1, new TrieItem(1, 1));
+		ItemTrie<TrieItem> second = first.put(1, new TrieItem(1, 2)).put(40000, new TrieItem(40000, 3));
+		ItemTrie<TrieItem> third = second.remove(1);
+
+		assertEquals(0, empty.size());
+		assertEquals(1, first.size());
+		assertEquals(1, first.get(1).getVersion());
+		assertEquals(1, first.getVersion());
+		assertEquals(2, second.get(1).getVersion());
+		assertEquals(40000, second.getLastKey());
+		assertNull(third.get(1));
+		assertEquals(2, second.size());
+		assertEquals(1, third.size());
+	}
+
+	@Test
+	public void randomAgainstTreeMap() {
+
+		Random random = new Random(OPERATIONS);
+		TreeMap<Integer, TrieItem> expected = new TreeMap<>();
+		ItemTrie<TrieItem> trie = ItemTrie.empty();
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			// mostly keys near each other like item ID's, some far away to grow and shrink the depth
+			int key = random.nextInt(10) == 0 ? random.nextInt(1 << 20) : random.nextInt(200);
+			int operation = random.nextInt(10);
+			if (operation < 5) {
+				TrieItem item = new TrieItem(key, random.nextInt(1000));
+				assertSame(expected.put(key, item), trie.get(key));
+				trie = trie.put(key, item);
+			} else if (operation == 5) {
+				expected.put(key, null);
+				trie = trie.put(key, null);
+			} else {
+				assertSame(expected.remove(key), trie.get(key));
+				trie = trie.remove(key);
+			}
+			assertEquals(expected.containsKey(key), trie.containsKey(key));
+			assertSame(expected.get(key), trie.get(key));
+			if (i % 100 == 0) {
+				assertSameContent(expected, trie);
+			}
+		}
+		assertSameContent(expected, trie);
+
+		// remove all in random order
+		List<Integer> keys = new ArrayList<>(expected.keySet());
+		while (!keys.isEmpty()) {
+			Integer key = keys.remove(random.nextInt(keys.size()));
+			expected.remove(key);
+			trie = trie.remove(key);
+			assertSameContent(expected, trie);
+		}
+		assertEquals(0, trie.size());
+	}
+}
@@ -8,6 +8,7 @@ import javax.security.auth.login.LoginException;
 import login.Login;
 import login.ProjectException;
 import login.ProjectFactory;
+import nl.tytech.core.client.net.ConnectionScheduler;
 import nl.tytech.core.client.net.ServicesManager;
 import nl.tytech.core.client.net.TSlotConnection;
 import nl.tytech.core.net.Network.AppType;
@@ -85,7 +86,14 @@ public class GameField {
 	 *
 	 */
 	public MyStakeholder addStakeholder(Stakeholder.Type type) {
-		MyStakeholder stakeholder = new MyStakeholder(type, slotID);
+		return addStakeholder(type, null);
+	}
+
+	/**
+	 * Add a stakeholder whose connection runs on the threads of the scheduler, or its own threads when null.
+	 */
+	public MyStakeholder addStakeholder(Stakeholder.Type type, ConnectionScheduler scheduler) {
+		MyStakeholder stakeholder = new MyStakeholder(type, slotID, scheduler);
 		stakeholders.put(type, stakeholder);
 		return stakeholder;
 	}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import com.vividsolutions.jts.geom.MultiPolygon;
 
 import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.ConnectionScheduler;
 import nl.tytech.core.client.net.ServicesManager;
 import nl.tytech.core.client.net.TSlotConnection;
 import nl.tytech.core.net.Network.AppType;
@@ -42,11 +43,18 @@ public class MyStakeholder {
 	final static int TIMEOUT = 5000;
 
 	public MyStakeholder(Stakeholder.Type type, Integer slotID) {
+		this(type, slotID, null);
+	}
+
+	/**
+	 * Stakeholder with a connection that runs on the threads of the scheduler, or its own threads when null.
+	 */
+	public MyStakeholder(Stakeholder.Type type, Integer slotID, ConnectionScheduler scheduler) {
 		if (Item.NONE.equals(slotID)) {
 			throw new NullPointerException("project=null");
 		}
 		this.type = type;
-		participate(slotID);
+		participate(slotID, scheduler);
 		events = new ExampleEventHandler(connection);
 	}
 
@@ -92,14 +100,18 @@ public class MyStakeholder {
 	 *
 	 * @return slotconnection on which to
 	 */
-	private TSlotConnection participate(Integer slotID) {
+	private TSlotConnection participate(Integer slotID, ConnectionScheduler scheduler) {
 		assertTrue(slotID != null && slotID >= 0);
 
 		JoinReply reply = ServicesManager.fireServiceEvent(IOServiceEventType.JOIN_SESSION, slotID,
 				AppType.PARTICIPANT);
 		assertNotNull(reply);
 
-		connection = TSlotConnection.createSlotConnection();
+		if (scheduler == null) {
+			connection = TSlotConnection.createSlotConnection();
+		} else {
+			connection = TSlotConnection.createSlotConnection(scheduler);
+		}
 		connection.initSettings(AppType.PARTICIPANT, SettingsManager.getServerIP(), slotID, reply.serverToken,
 				reply.client.getClientToken());
 		assertTrue(connection.connect());
@@ -0,0 +1,65 @@
+package nl.tytech.sdk.e2eTests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.security.auth.login.LoginException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import login.ProjectException;
+import nl.tytech.core.client.event.EventManager;
+import nl.tytech.core.client.net.ConnectionScheduler;
+import nl.tytech.core.net.serializable.MapLink;
+import nl.tytech.core.structure.ItemMap;
+import nl.tytech.data.core.item.Item;
+import nl.tytech.data.engine.event.LogicEventType;
+import nl.tytech.data.engine.item.Stakeholder;
+
+/**
+ * Stakeholders whose connections run on the shared ConnectionScheduler, like the agents of the
+ * environment, must receive their first update and the updates after it.
+ */
+public class SharedSchedulerTest {
+
+	private GameField gameField;
+
+	@Before
+	public void before() throws LoginException, ProjectException {
+		gameField = new GameField();
+	}
+
+	@After
+	public void after() throws InterruptedException, ProjectException {
+		gameField.close();
+	}
+
+	@Test
+	public void updatesOnSharedScheduler() throws InterruptedException {
+
+		MyStakeholder municipality = gameField.addStakeholder(Stakeholder.Type.MUNICIPALITY,
+				ConnectionScheduler.getShared());
+		MyStakeholder civilian = gameField.addStakeholder(Stakeholder.Type.CIVILIAN, ConnectionScheduler.getShared());
+
+		municipality.getEventHandler().waitForFirstUpdate(5000);
+		civilian.getEventHandler().waitForFirstUpdate(5000);
+		assertEquals(1, municipality.getEventHandler().getNumberOfFirstUpdates());
+		assertEquals(1, civilian.getEventHandler().getNumberOfFirstUpdates());
+
+		ItemMap<Item> map = EventManager.getItemMap(gameField.getSlotConnection().getConnectionID(),
+				MapLink.STAKEHOLDERS);
+		assertTrue(map.size() >= 2);
+
+		// a change after the first update must reach both connections
+		municipality.getEventHandler().resetUpdate(MapLink.SETTINGS);
+		civilian.getEventHandler().resetUpdate(MapLink.SETTINGS);
+		gameField.getSlotConnection().fireServerEvent(true, LogicEventType.SETTINGS_ALLOW_INTERACTION, false);
+		municipality.getEventHandler().waitFor(MapLink.SETTINGS);
+		civilian.getEventHandler().waitFor(MapLink.SETTINGS);
+
+		municipality.close();
+		civilian.close();
+	}
+}
@@ -0,0 +1,173 @@
+package nl.tytech.util.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TLogger must rate limit the logs of a key, truncate duplicate exceptions and write all async logs
+ * before flush returns. SEVERE logs and exceptions wait for room in a full queue instead of being dropped.
+ */
+public class TLoggerTest {
+
+	/**
+	 * Collects the written messages, can block the writer on a message.
+	 */
+	private static class CollectingHandler extends Handler {
+
+		private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+		private volatile String blockOn = null;
+
+		private final CountDownLatch blocked = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void close() {
+		}
+
+		private int count(String text) {
+			synchronized (messages) {
+				return (int) messages.stream().filter(message -> message.contains(text)).count();
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void publish(LogRecord record) {
+
+			String block = blockOn;
+			if (block != null && record.getMessage().contains(block)) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			messages.add(record.getMessage());
+		}
+	}
+
+	/**
+	 * Same as the limit of TLogger.
+	 */
+	private static final int MAX_REPEAT = 10;
+
+	private static final int QUEUE_SIZE = 8192;
+
+	private static final long TIMEOUT = 10;
+
+	private final CollectingHandler handler = new CollectingHandler();
+
+	/**
+	 * Unique text of this test, the logs of other tests do not match it.
+	 */
+	private final String id = "TLoggerTest-" + System.nanoTime();
+
+	@Before
+	public void before() {
+		// keep the console quiet
+		Logger.getLogger("global").setUseParentHandlers(false);
+		TLogger.addHandler(handler);
+	}
+
+	@After
+	public void after() {
+		handler.release.countDown();
+		TLogger.setAsync(false);
+		TLogger.removeHandler(handler);
+		Logger.getLogger("global").setUseParentHandlers(true);
+	}
+
+	@Test
+	public void asyncFlush() {
+
+		TLogger.setAsync(true);
+		for (int i = 0; i < 1000; i++) {
+			TLogger.info(id + " " + i);
+		}
+		TLogger.flush();
+		assertEquals(1000, handler.count(id));
+	}
+
+	@Test
+	public void duplicateExceptionsTruncated() {
+
+		Exception exp = new Exception(id);
+		for (int i = 0; i < MAX_REPEAT + 5; i++) {
+			TLogger.exception(exp);
+		}
+		assertEquals(MAX_REPEAT, handler.count(id));
+		assertTrue(handler.count("truncated after") >= 1);
+
+		// another exception is written again
+		TLogger.exception(new Exception(id + " other"));
+		assertEquals(1, handler.count(id + " other"));
+	}
+
+	@Test
+	public void rateLimitedPerKey() {
+
+		AtomicInteger created = new AtomicInteger();
+		for (int i = 0; i < MAX_REPEAT + 15; i++) {
+			TLogger.log(Level.WARNING, id, () -> id + " " + created.incrementAndGet());
+		}
+		// suppressed messages are not created
+		assertEquals(MAX_REPEAT, created.get());
+		assertEquals(MAX_REPEAT, handler.count(id));
+		assertTrue(handler.count("truncated after") >= 1);
+
+		// other keys are not limited
+		TLogger.log(Level.WARNING, id + "-other", () -> id + " other");
+		assertEquals(1, handler.count(id + " other"));
+	}
+
+	@Test
+	public void severeNotDropped() throws InterruptedException {
+
+		TLogger.setAsync(true);
+		handler.blockOn = id + " block";
+		TLogger.info(id + " block");
+		assertTrue(handler.blocked.await(TIMEOUT, TimeUnit.SECONDS));
+
+		// writer is blocked, fill the queue
+		long dropped = TLogger.getDroppedLogs();
+		for (int i = 0; i < QUEUE_SIZE + 100; i++) {
+			TLogger.debug(id + " " + i);
+		}
+		assertTrue(TLogger.getDroppedLogs() >= dropped + 100);
+
+		Thread severe = new Thread(() -> {
+			TLogger.severe(id + " severe");
+			TLogger.exception(new Exception(id + " exception"));
+		});
+		severe.start();
+		severe.join(100);
+		assertTrue("Severe log must wait for room", severe.isAlive());
+
+		handler.release.countDown();
+		severe.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+		TLogger.flush();
+		assertEquals(1, handler.count(id + " severe"));
+		assertEquals(1, handler.count(id + " exception"));
+	}
+}